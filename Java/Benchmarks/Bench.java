@@ -0,0 +1,427 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ *  The Bench class gathers the measuring tools shared by the benchmarks.
+ *  A Workload is prepared by an untimed setup() and measured through run(),
+ *  which returns the number of operations it performed.
+ *  Each measurement reports the throughput, the number of bytes allocated
+ *  per operation, the allocation rate and the garbage collections
+ *  which happened while the workload was running.
+ *
+ *  The benchmarks do not depend on any library : allocations are read from
+ *  the com.sun.management extension of the ThreadMXBean, and collections
+ *  from the GarbageCollectorMXBeans, which is what the GC profiler of JMH does.
+ *
+ *  The key generators produce uniform, sorted, reverse-sorted and Zipf
+ *  distributed keys, always from a fixed seed so that runs can be compared.
+ *
+ *  @author Tristan Claverie
+ */
+public final class Bench {
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	//Prevents the JIT from removing the results of a workload
+	public static volatile long sink;
+
+	private Bench() {}
+
+	/**
+	 * A piece of work to measure
+	 */
+	public static abstract class Workload {
+		/**
+		 * Prepares the workload, this is not measured
+		 */
+		public void setup() {}
+
+		/**
+		 * Runs the workload
+		 * @return the number of operations performed
+		 */
+		public abstract long run();
+	}
+
+	/**
+	 * A piece of work shared by several threads
+	 */
+	public static abstract class ParallelWorkload {
+		/**
+		 * Prepares the workload, this is not measured
+		 */
+		public void setup() {}
+
+		/**
+		 * Runs the share of the workload of one thread
+		 * @param thread the number of the thread, between 0 and the number of threads-1
+		 * @return the number of operations performed
+		 */
+		public abstract long run(int thread);
+	}
+
+	/**
+	 * The outcome of a measurement
+	 */
+	public static final class Result {
+		long ops;				//Number of operations performed
+		long nanos;				//Time spent in run()
+		long bytes;				//Bytes allocated in run()
+		long gcCount;			//Number of collections during run()
+		long gcMillis;			//Time spent in collections during run()
+
+		public double opsPerSecond() {
+			return nanos == 0 ? 0 : ops * 1e9 / nanos;
+		}
+
+		public double bytesPerOp() {
+			return ops == 0 ? 0 : (double) bytes / ops;
+		}
+
+		public double megabytesPerSecond() {
+			return nanos == 0 ? 0 : bytes * 1e9 / nanos / (1 << 20);
+		}
+	}
+
+	/*******************************
+	 * Measurement
+	 ******************************/
+
+	/**
+	 * Measures a workload
+	 * Each iteration repeats setup() and run() until run() has been
+	 * running for at least minMillis, the best iteration is kept.
+	 * @param w the workload
+	 * @param warmups number of iterations thrown away
+	 * @param iterations number of measured iterations
+	 * @param minMillis minimum running time of an iteration
+	 * @return the best result among the measured iterations
+	 */
+	public static Result measure(Workload w, int warmups, int iterations, long minMillis) {
+		for (int i = 0; i < warmups; i++) iteration(w, minMillis);
+		Result best = null;
+		for (int i = 0; i < iterations; i++) {
+			Result r = iteration(w, minMillis);
+			if (best == null || r.opsPerSecond() > best.opsPerSecond()) best = r;
+		}
+		return best;
+	}
+
+	//Runs the workload until it has been running for minMillis
+	private static Result iteration(Workload w, long minMillis) {
+		Result r = new Result();
+		long tid = Thread.currentThread().getId();
+		long minNanos = minMillis * 1000000L;
+		do {
+			w.setup();
+			long gcCount = gcCount(), gcMillis = gcMillis();
+			long bytes = THREADS.getThreadAllocatedBytes(tid);
+			long start = System.nanoTime();
+			r.ops += w.run();
+			r.nanos += System.nanoTime() - start;
+			r.bytes += THREADS.getThreadAllocatedBytes(tid) - bytes;
+			r.gcCount += gcCount() - gcCount;
+			r.gcMillis += gcMillis() - gcMillis;
+		} while (r.nanos < minNanos);
+		return r;
+	}
+
+	/**
+	 * Measures a workload run by several threads at the same time
+	 * Each iteration repeats setup() and run() until the threads have been
+	 * running for at least minMillis, the best iteration is kept.
+	 * The time of an iteration goes from the start of the threads to the end of the last one,
+	 * the bytes allocated are summed over the threads.
+	 * @param w the workload
+	 * @param threads number of threads
+	 * @param warmups number of iterations thrown away
+	 * @param iterations number of measured iterations
+	 * @param minMillis minimum running time of an iteration
+	 * @return the best result among the measured iterations
+	 */
+	public static Result measure(ParallelWorkload w, int threads, int warmups, int iterations, long minMillis) {
+		for (int i = 0; i < warmups; i++) iteration(w, threads, minMillis);
+		Result best = null;
+		for (int i = 0; i < iterations; i++) {
+			Result r = iteration(w, threads, minMillis);
+			if (best == null || r.opsPerSecond() > best.opsPerSecond()) best = r;
+		}
+		return best;
+	}
+
+	//Runs the workload on several threads until they have been running for minMillis
+	private static Result iteration(final ParallelWorkload w, int threads, long minMillis) {
+		Result r = new Result();
+		long minNanos = minMillis * 1000000L;
+		do {
+			w.setup();
+			final CountDownLatch start = new CountDownLatch(1);
+			final long[] ops = new long[threads], bytes = new long[threads];
+			final Throwable[] failure = new Throwable[1];
+			Thread[] workers = new Thread[threads];
+			for (int t = 0; t < threads; t++) {
+				final int id = t;
+				workers[t] = new Thread() {
+					public void run() {
+						try {
+							start.await();
+							long allocated = allocatedBytes();
+							ops[id] = w.run(id);
+							bytes[id] = allocatedBytes() - allocated;
+						} catch (Throwable e) {
+							failure[0] = e;
+						}
+					}
+				};
+				workers[t].start();
+			}
+			long gcCount = gcCount(), gcMillis = gcMillis();
+			long begin = System.nanoTime();
+			start.countDown();
+			for (Thread worker : workers) {
+				try {
+					worker.join();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			r.nanos += System.nanoTime() - begin;
+			r.gcCount += gcCount() - gcCount;
+			r.gcMillis += gcMillis() - gcMillis;
+			if (failure[0] instanceof RuntimeException) throw (RuntimeException) failure[0];
+			if (failure[0] instanceof Error) throw (Error) failure[0];
+			for (int t = 0; t < threads; t++) {
+				r.ops += ops[t];
+				r.bytes += bytes[t];
+			}
+		} while (r.nanos < minNanos);
+		return r;
+	}
+
+	/**
+	 * Number of bytes allocated so far by the current thread
+	 * @return the number of bytes allocated by the current thread
+	 */
+	public static long allocatedBytes() {
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	//Total number of collections since the start of the JVM
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	//Total time spent in collections since the start of the JVM
+	private static long gcMillis() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, gc.getCollectionTime());
+		}
+		return time;
+	}
+
+	/*******************************
+	 * Reporting
+	 ******************************/
+
+	/**
+	 * Prints the header of the report
+	 */
+	public static void header() {
+		header("");
+	}
+
+	/**
+	 * Prints the header of the report, followed by additional columns
+	 * @param extra the headers of the additional columns
+	 */
+	public static void header(String extra) {
+		System.out.printf("%-22s %-24s %-8s %11s %14s %10s %10s %6s %8s %s%n",
+				"benchmark", "implementation", "keys", "size", "ops/s", "B/op", "MB/s", "gc", "gc ms", extra);
+	}
+
+	/**
+	 * Prints one line of the report
+	 */
+	public static void report(String benchmark, String impl, String keys, long size, Result r) {
+		report(benchmark, impl, keys, size, r, "");
+	}
+
+	/**
+	 * Prints one line of the report, followed by additional columns
+	 */
+	public static void report(String benchmark, String impl, String keys, long size, Result r, String extra) {
+		System.out.printf("%-22s %-24s %-8s %11d %14.1f %10.1f %10.1f %6d %8d %s%n",
+				benchmark, impl, keys, size, r.opsPerSecond(), r.bytesPerOp(),
+				r.megabytesPerSecond(), r.gcCount, r.gcMillis, extra);
+	}
+
+	/**
+	 * Gets the given percentile of an array of measures
+	 * The array is sorted in the process.
+	 * @param values an array of measures
+	 * @param p a percentile between 0 and 100
+	 * @return the value at the given percentile
+	 */
+	public static long percentile(long[] values, double p) {
+		if (values.length == 0) return 0;
+		Arrays.sort(values);
+		int i = (int) Math.ceil(p / 100 * values.length) - 1;
+		return values[Math.max(0, Math.min(values.length-1, i))];
+	}
+
+	/**
+	 * Prints a failed measurement, such as a StackOverflowError
+	 */
+	public static void failure(String benchmark, String impl, String keys, long size, Throwable t) {
+		System.out.printf("%-22s %-24s %-8s %11d   failed : %s%n",
+				benchmark, impl, keys, size, t.getClass().getSimpleName());
+	}
+
+	/*******************************
+	 * Arguments
+	 ******************************/
+
+	/**
+	 * Gets the value following the given option, or the default value
+	 * @param args the command line
+	 * @param option an option, such as -sizes
+	 * @param def the default value
+	 * @return the value of the option
+	 */
+	public static String option(String[] args, String option, String def) {
+		for (int i = 0; i < args.length-1; i++) {
+			if (args[i].equals(option)) return args[i+1];
+		}
+		return def;
+	}
+
+	/**
+	 * Parses a comma separated list of sizes, 1K, 10M or 1e8 are accepted
+	 * @param s a list of sizes
+	 * @return the sizes
+	 */
+	public static int[] sizes(String s) {
+		String[] parts = s.split(",");
+		int[] sizes = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			String p = parts[i].trim().toUpperCase();
+			long mul = 1;
+			if (p.endsWith("K")) { mul = 1000; p = p.substring(0, p.length()-1); }
+			else if (p.endsWith("M")) { mul = 1000000; p = p.substring(0, p.length()-1); }
+			sizes[i] = (int) (Double.parseDouble(p) * mul);
+		}
+		return sizes;
+	}
+
+	/*******************************
+	 * Keys
+	 ******************************/
+
+	/**
+	 * Names of the available distributions of keys
+	 */
+	public static final String[] DISTRIBUTIONS = { "uniform", "sorted", "reverse", "zipf" };
+
+	/**
+	 * Generates n keys following the given distribution
+	 * @param dist uniform, sorted, reverse or zipf
+	 * @param n number of keys
+	 * @param seed seed of the generator
+	 * @throws java.lang.IllegalArgumentException if the distribution is unknown
+	 * @return an array of n keys
+	 */
+	public static int[] keys(String dist, int n, long seed) {
+		Random rnd = new Random(seed);
+		int[] keys = new int[n];
+		switch (dist) {
+		case "uniform":
+			for (int i = 0; i < n; i++) keys[i] = rnd.nextInt();
+			break;
+		case "sorted":
+			for (int i = 0; i < n; i++) keys[i] = i;
+			break;
+		case "reverse":
+			for (int i = 0; i < n; i++) keys[i] = n-i;
+			break;
+		case "zipf":
+			Zipf zipf = new Zipf(Math.max(n, 1), 1.0, rnd);
+			for (int i = 0; i < n; i++) keys[i] = zipf.next();
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown distribution " + dist);
+		}
+		return keys;
+	}
+
+	/**
+	 * Boxes the given keys, so that boxing is not accounted to the heaps
+	 * @param keys an array of keys
+	 * @return the boxed keys
+	 */
+	public static Integer[] boxed(int[] keys) {
+		Integer[] boxed = new Integer[keys.length];
+		for (int i = 0; i < keys.length; i++) boxed[i] = keys[i];
+		return boxed;
+	}
+
+	//Zipf distribution over 1..n using rejection-inversion (Hormann and Derflinger),
+	//it needs constant memory, whatever n is
+	private static final class Zipf {
+		private final int n;
+		private final double s;
+		private final Random rnd;
+		private final double hX1, hN, threshold;
+
+		Zipf(int n, double s, Random rnd) {
+			this.n = n;
+			this.s = s;
+			this.rnd = rnd;
+			hX1 = hIntegral(1.5) - 1;
+			hN = hIntegral(n + 0.5);
+			threshold = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+		}
+
+		int next() {
+			while (true) {
+				double u = hN + rnd.nextDouble() * (hX1 - hN);
+				double x = hIntegralInverse(u);
+				int k = (int) (x + 0.5);
+				if (k < 1) k = 1;
+				else if (k > n) k = n;
+				if (k - x <= threshold || u >= hIntegral(k + 0.5) - h(k)) return k;
+			}
+		}
+
+		private double h(double x) {
+			return Math.exp(-s * Math.log(x));
+		}
+
+		private double hIntegral(double x) {
+			double logX = Math.log(x);
+			return helper2((1 - s) * logX) * logX;
+		}
+
+		private double hIntegralInverse(double x) {
+			double t = x * (1 - s);
+			if (t < -1) t = -1;
+			return Math.exp(helper1(t) * x);
+		}
+
+		private static double helper1(double x) {
+			return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0/3 - 0.25 * x));
+		}
+
+		private static double helper2(double x) {
+			return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x * (1.0/3) * (1 + 0.25 * x));
+		}
+	}
+
+}
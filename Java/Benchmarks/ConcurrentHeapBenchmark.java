@@ -0,0 +1,265 @@
+import java.util.concurrent.PriorityBlockingQueue;
+
+import tools.BinMinPQ;
+import tools.ConcurrentIndexBinaryMinPQ;
+import tools.ConcurrentSkipListMinPQ;
+import tools.IndexBinaryMinPQ;
+
+/**
+ *  The ConcurrentHeapBenchmark class compares the priority queues which can be
+ *  shared by several threads : ConcurrentSkipListMinPQ, MultiQueueMinPQ, a BinMinPQ
+ *  guarded by a global lock, and the PriorityBlockingQueue of the JDK for reference.
+ *
+ *  The queue is filled with n keys, then every thread repeats an insert
+ *  followed by a delete-the-minimum, so that the size of the queue stays around n.
+ *  The total number of rounds is the same whatever the number of threads,
+ *  so the ops/s column gives the scaling directly.
+ *  The keys are boxed before the measurement, so only the allocations
+ *  made by the queues are reported.
+ *  The MultiQueue is relaxed : with -rank true, it measures its rank error
+ *  and the mean and maximum of the last iteration are reported.
+ *
+ *  The indexed priority queues, ConcurrentIndexBinaryMinPQ and an IndexBinaryMinPQ guarded
+ *  by a global lock, run the relax workload of a parallel label-correcting search instead :
+ *  the queue holds the indices 0..n-1, and every thread repeats a delete-the-minimum, the
+ *  insert of the index deleted with a new key, and an insert-or-decrease-key of a random index.
+ *
+ *  Usage : java ConcurrentHeapBenchmark [-sizes 1K,1M] [-keys uniform] [-threads 1,2,4,8,16,32]
+ *                                       [-heaps skiplist,multiqueue,synchronized,blocking,index-concurrent,index-synchronized]
+ *                                       [-shards 2] [-choices 2] [-rank false] [-rounds 1M]
+ *                                       [-warmups 2] [-iterations 3] [-time 500]
+ *
+ *  @author Tristan Claverie
+ */
+public class ConcurrentHeapBenchmark {
+
+	//Common view over the concurrent priority queues
+	private static abstract class Heap {
+		abstract void insert(Integer key);
+		abstract Integer delMin();
+		String statistics() { return ""; }
+	}
+
+	//Creates an empty priority queue for the given number of threads
+	private static abstract class Impl {
+		final String name;
+		Impl(String name) { this.name = name; }
+		abstract Heap create(int threads);
+	}
+
+	//Settings of the MultiQueue
+	private static int shards = 2, choices = 2;
+	private static boolean rank;
+
+	private static final Impl[] IMPLS = {
+		new Impl("skiplist") {
+			Heap create(int threads) {
+				final ConcurrentSkipListMinPQ<Integer> pq = new ConcurrentSkipListMinPQ<Integer>();
+				return new Heap() {
+					void insert(Integer key) { pq.insert(key); }
+					Integer delMin() { return pq.delMin(); }
+				};
+			}
+		},
+		new Impl("multiqueue") {
+			Heap create(int threads) {
+				final MultiQueueMinPQ<Integer> pq = new MultiQueueMinPQ<Integer>(threads, shards, choices);
+				pq.setRankErrorTracking(rank);
+				return new Heap() {
+					void insert(Integer key) { pq.insert(key); }
+					Integer delMin() { return pq.delMin(); }
+					String statistics() {
+						return rank ? String.format("%10.2f %10d", pq.meanRankError(), pq.maxRankError()) : "";
+					}
+				};
+			}
+		},
+		new Impl("synchronized") {
+			Heap create(int threads) {
+				final BinMinPQ<Integer> pq = new BinMinPQ<Integer>();
+				return new Heap() {
+					void insert(Integer key) { synchronized (pq) { pq.insert(key); } }
+					Integer delMin() { synchronized (pq) { return pq.delMin(); } }
+				};
+			}
+		},
+		new Impl("blocking") {
+			Heap create(int threads) {
+				final PriorityBlockingQueue<Integer> pq = new PriorityBlockingQueue<Integer>();
+				return new Heap() {
+					void insert(Integer key) { pq.add(key); }
+					Integer delMin() { return pq.poll(); }
+				};
+			}
+		},
+	};
+
+	//Common view over the concurrent indexed priority queues
+	private static abstract class IndexHeap {
+		abstract boolean insertOrDecreaseKey(int i, Integer key);
+		abstract int delMin();
+	}
+
+	//Creates an empty indexed priority queue over the indices 0..n-1
+	private static abstract class IndexImpl {
+		final String name;
+		IndexImpl(String name) { this.name = name; }
+		abstract IndexHeap create(int n);
+	}
+
+	private static final IndexImpl[] INDEX_IMPLS = {
+		new IndexImpl("index-concurrent") {
+			IndexHeap create(int n) {
+				final ConcurrentIndexBinaryMinPQ<Integer> pq = new ConcurrentIndexBinaryMinPQ<Integer>(n);
+				return new IndexHeap() {
+					boolean insertOrDecreaseKey(int i, Integer key) { return pq.insertOrDecreaseKey(i, key); }
+					int delMin() { return pq.delMin(); }
+				};
+			}
+		},
+		new IndexImpl("index-synchronized") {
+			IndexHeap create(int n) {
+				final IndexBinaryMinPQ<Integer> pq = new IndexBinaryMinPQ<Integer>(n);
+				return new IndexHeap() {
+					boolean insertOrDecreaseKey(int i, Integer key) {
+						synchronized (pq) {
+							if (!pq.contains(i)) pq.insert(i, key);
+							else if (key < pq.keyOf(i)) pq.decreaseKey(i, key);
+							else return false;
+							return true;
+						}
+					}
+					int delMin() { synchronized (pq) { return pq.delMin(); } }
+				};
+			}
+		},
+	};
+
+	/*******************************
+	 * Workload
+	 ******************************/
+
+	//Fills the queue with n keys, then every thread alternates inserts and delete-the-minimum
+	private static final class Rounds extends Bench.ParallelWorkload {
+		final Impl impl;
+		final Integer[] keys;
+		final int n, threads;
+		final long rounds;
+		Heap heap;
+
+		Rounds(Impl impl, Integer[] keys, int n, int threads, long rounds) {
+			this.impl = impl;
+			this.keys = keys;
+			this.n = n;
+			this.threads = threads;
+			this.rounds = rounds;
+		}
+
+		public void setup() {
+			heap = impl.create(threads);
+			for (int i = 0; i < n; i++) heap.insert(keys[i]);
+		}
+
+		public long run(int thread) {
+			long share = rounds / threads;
+			int k = (int) ((long) thread * keys.length / threads);
+			long sum = 0;
+			for (long i = 0; i < share; i++) {
+				heap.insert(keys[k]);
+				sum += heap.delMin();
+				if (++k == keys.length) k = 0;
+			}
+			Bench.sink = sum;
+			return 2*share;
+		}
+	}
+
+	//Fills the queue with the indices 0..n-1, then every thread deletes the minimum, inserts
+	//the index deleted back with a new key and relaxes a random index, as a label-correcting search does
+	private static final class Relax extends Bench.ParallelWorkload {
+		final IndexImpl impl;
+		final Integer[] keys;
+		final int n, threads;
+		final long rounds;
+		IndexHeap heap;
+
+		Relax(IndexImpl impl, Integer[] keys, int n, int threads, long rounds) {
+			this.impl = impl;
+			this.keys = keys;
+			this.n = n;
+			this.threads = threads;
+			this.rounds = rounds;
+		}
+
+		public void setup() {
+			heap = impl.create(n);
+			for (int i = 0; i < n; i++) heap.insertOrDecreaseKey(i, keys[i]);
+		}
+
+		public long run(int thread) {
+			long share = rounds / threads;
+			int k = (int) ((long) thread * keys.length / threads);
+			long sum = 0;
+			for (long i = 0; i < share; i++) {
+				int min = heap.delMin();
+				heap.insertOrDecreaseKey(min, keys[k]);
+				if (++k == keys.length) k = 0;
+				if (heap.insertOrDecreaseKey(Math.floorMod(keys[k], n), keys[k])) sum++;
+				if (++k == keys.length) k = 0;
+				sum += min;
+			}
+			Bench.sink = sum;
+			return 3*share;
+		}
+	}
+
+	/*******************************
+	 * Main
+	 ******************************/
+
+	public static void main(String[] args) {
+		int[] sizes = Bench.sizes(Bench.option(args, "-sizes", "1K,1M"));
+		String[] dists = Bench.option(args, "-keys", "uniform").split(",");
+		int[] threads = Bench.sizes(Bench.option(args, "-threads", "1,2,4,8,16,32"));
+		String heaps = "," + Bench.option(args, "-heaps", "skiplist,multiqueue,synchronized,blocking,index-concurrent,index-synchronized") + ",";
+		shards = Integer.parseInt(Bench.option(args, "-shards", "2"));
+		choices = Integer.parseInt(Bench.option(args, "-choices", "2"));
+		rank = Boolean.parseBoolean(Bench.option(args, "-rank", "false"));
+		long rounds = Bench.sizes(Bench.option(args, "-rounds", "1M"))[0];
+		int warmups = Integer.parseInt(Bench.option(args, "-warmups", "2"));
+		int iterations = Integer.parseInt(Bench.option(args, "-iterations", "3"));
+		long time = Long.parseLong(Bench.option(args, "-time", "500"));
+
+		Bench.header(String.format("%8s", "threads") + (rank ? String.format(" %10s %10s", "rank mean", "rank max") : ""));
+		for (int n : sizes) {
+			for (String dist : dists) {
+				Integer[] keys = Bench.boxed(Bench.keys(dist, Math.max(n, 1 << 16), 42));
+				for (Impl impl : IMPLS) {
+					if (!heaps.contains("," + impl.name + ",")) continue;
+					for (int t : threads) {
+						try {
+							Rounds w = new Rounds(impl, keys, n, t, rounds);
+							Bench.Result r = Bench.measure(w, t, warmups, iterations, time);
+							Bench.report("insert+delMin", impl.name, dist, n, r, String.format("%8d ", t) + w.heap.statistics());
+						} catch (RuntimeException | Error e) {
+							Bench.failure("insert+delMin", impl.name, dist, n, e);
+						}
+					}
+				}
+				for (IndexImpl impl : INDEX_IMPLS) {
+					if (!heaps.contains("," + impl.name + ",")) continue;
+					for (int t : threads) {
+						try {
+							Relax w = new Relax(impl, keys, n, t, rounds);
+							Bench.Result r = Bench.measure(w, t, warmups, iterations, time);
+							Bench.report("relax", impl.name, dist, n, r, String.format("%8d ", t));
+						} catch (RuntimeException | Error e) {
+							Bench.failure("relax", impl.name, dist, n, e);
+						}
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,419 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import tools.BinMinPQ;
+import tools.HeapLayout;
+import tools.PairBinaryMinPQ;
+import tools.PairingMinPQ;
+import tools.PairingStrategy;
+
+/**
+ *  The HeapBenchmark class compares the priority queues of generic keys :
+ *  BinMinPQ, MultiwayMinPQ, BinomialMinPQ, FibonacciMinPQ and PairingMinPQ,
+ *  along with PairBinaryMinPQ, which stores each key as both priority and value.
+ *  The pooled variants of BinomialMinPQ, FibonacciMinPQ and PairingMinPQ
+ *  reuse the Nodes of the deleted keys, up to POOL free Nodes.
+ *  PairingMinPQ is also measured with the multipass and auxiliary two pass strategies.
+ *  BinMinPQ is also measured with its blocked layouts : binary-line (blocks of a cache line)
+ *  and binary-page (blocks of a page).
+ *
+ *  The following workloads are measured :
+ *  insert : n inserts in an empty queue
+ *  delMin : n delete-the-minimum on a queue of n keys
+ *  mix : n rounds of min-key, delete-the-minimum and insert on a queue of n keys
+ *  heapify : construction of a queue from an array of n keys
+ *  iterate : iteration over a queue of n keys
+ *  top10 : iteration over the 10 smallest keys of a queue of n keys
+ *  batch : n keys added at once to a queue of n keys (insertAll for BinMinPQ and MultiwayMinPQ,
+ *  one insert per key for the others)
+ *  delMinBatch : delete-the-minimum of all the keys of a queue of n keys, by batches of -batch keys
+ *  (delMin(k, out) for all the queues but PairBinaryMinPQ, which deletes them one by one)
+ *  scan : traversal of a queue of n keys through its spliterator, in no particular order
+ *  (PairBinaryMinPQ has no unordered traversal, it uses the spliterator built on its iterator)
+ *
+ *  Each workload runs for every size and every distribution of keys
+ *  (uniform, sorted, reverse and zipf), and reports ops/s, bytes allocated
+ *  per operation, allocation rate and garbage collections.
+ *  The keys are boxed before the measurement, so only the allocations
+ *  made by the queues are reported.
+ *
+ *  Usage : java HeapBenchmark [-sizes 1K,10K,100K,1M] [-keys uniform,sorted,reverse,zipf]
+ *                             [-heaps binary,binary-line,binary-page,pair,multiway,binomial,fibonacci,pairing,
+ *                                     binomial-pooled,fibonacci-pooled,pairing-pooled,
+ *                                     pairing-multipass,pairing-auxiliary]
+ *                             [-workloads insert,delMin,mix,heapify,iterate,top10,scan,batch,delMinBatch]
+ *                             [-batch 256]
+ *                             [-warmups 2] [-iterations 3] [-time 200]
+ *  Sizes up to 100M are supported, given a large enough heap (-Xmx).
+ *
+ *  @author Tristan Claverie
+ */
+public class HeapBenchmark {
+
+	//Common view over the priority queues
+	private static abstract class Heap {
+		abstract void insert(Integer key);
+		abstract Integer delMin();
+		abstract Integer minKey();
+		abstract Iterator<Integer> iterator();
+		abstract Spliterator<Integer> spliterator();
+		void insertAll(Integer[] a) { for (Integer key : a) insert(key); }
+		int delMin(int k, Collection<Integer> out) { for (int i = 0; i < k; i++) out.add(delMin()); return k; }
+	}
+
+	//Creates a priority queue, either empty or from an array of keys
+	private static abstract class Impl {
+		final String name;
+		Impl(String name) { this.name = name; }
+		abstract Heap create(Integer[] a);
+	}
+
+	//Capacity of the pool of the pooled variants
+	private static final int POOL = 1024;
+
+	private static final Impl[] IMPLS = {
+		new Impl("binary") {
+			Heap create(Integer[] a) {
+				final BinMinPQ<Integer> pq = (a == null) ? new BinMinPQ<Integer>() : new BinMinPQ<Integer>(a);
+				return new Heap() {
+					void insert(Integer key) { pq.insert(key); }
+					Integer delMin() { return pq.delMin(); }
+					Integer minKey() { return pq.minKey(); }
+					Iterator<Integer> iterator() { return pq.iterator(); }
+					Spliterator<Integer> spliterator() { return pq.spliterator(); }
+					int delMin(int k, Collection<Integer> out) { return pq.delMin(k, out); }
+					void insertAll(Integer[] a) { pq.insertAll(a); }
+				};
+			}
+		},
+		new Impl("binary-line") {
+			Heap create(Integer[] a) {
+				final BinMinPQ<Integer> pq = new BinMinPQ<Integer>(HeapLayout.CACHE_LINE);
+				if (a != null) pq.insertAll(a);
+				return new Heap() {
+					void insert(Integer key) { pq.insert(key); }
+					Integer delMin() { return pq.delMin(); }
+					Integer minKey() { return pq.minKey(); }
+					Iterator<Integer> iterator() { return pq.iterator(); }
+					Spliterator<Integer> spliterator() { return pq.spliterator(); }
+					int delMin(int k, Collection<Integer> out) { return pq.delMin(k, out); }
+					void insertAll(Integer[] a) { pq.insertAll(a); }
+				};
+			}
+		},
+		new Impl("binary-page") {
+			Heap create(Integer[] a) {
+				final BinMinPQ<Integer> pq = new BinMinPQ<Integer>(HeapLayout.PAGE);
+				if (a != null) pq.insertAll(a);
+				return new Heap() {
+					void insert(Integer key) { pq.insert(key); }
+					Integer delMin() { return pq.delMin(); }
+					Integer minKey() { return pq.minKey(); }
+					Iterator<Integer> iterator() { return pq.iterator(); }
+					Spliterator<Integer> spliterator() { return pq.spliterator(); }
+					int delMin(int k, Collection<Integer> out) { return pq.delMin(k, out); }
+					void insertAll(Integer[] a) { pq.insertAll(a); }
+				};
+			}
+		},
+		new Impl("pair") {
+			Heap create(Integer[] a) {
+				final PairBinaryMinPQ<Integer> pq;
+				if (a == null) pq = new PairBinaryMinPQ<Integer>();
+				else {
+					long[] priorities = new long[a.length];
+					for (int i = 0; i < a.length; i++) priorities[i] = a[i];
+					pq = new PairBinaryMinPQ<Integer>(priorities, a);
+				}
+				return new Heap() {
+					void insert(Integer key) { pq.insert(key, key); }
+					Integer delMin() { return pq.poll(); }
+					Integer minKey() { return pq.peek(); }
+					Iterator<Integer> iterator() { return pq.iterator(); }
+					Spliterator<Integer> spliterator() { return pq.spliterator(); }
+				};
+			}
+		},
+		new Impl("multiway") {
+			Heap create(Integer[] a) {
+				final MultiwayMinPQ<Integer> pq = (a == null) ? new MultiwayMinPQ<Integer>(4) : new MultiwayMinPQ<Integer>(a, 4);
+				return new Heap() {
+					void insert(Integer key) { pq.insert(key); }
+					Integer delMin() { return pq.delMin(); }
+					Integer minKey() { return pq.minKey(); }
+					Iterator<Integer> iterator() { return pq.iterator(); }
+					Spliterator<Integer> spliterator() { return pq.spliterator(); }
+					int delMin(int k, Collection<Integer> out) { return pq.delMin(k, out); }
+					void insertAll(Integer[] a) { pq.insertAll(a); }
+				};
+			}
+		},
+		new Impl("binomial") {
+			Heap create(Integer[] a) {
+				final BinomialMinPQ<Integer> pq = (a == null) ? new BinomialMinPQ<Integer>() : new BinomialMinPQ<Integer>(a);
+				return new Heap() {
+					void insert(Integer key) { pq.insert(key); }
+					Integer delMin() { return pq.delMin(); }
+					Integer minKey() { return pq.minKey(); }
+					Iterator<Integer> iterator() { return pq.iterator(); }
+					Spliterator<Integer> spliterator() { return pq.spliterator(); }
+					int delMin(int k, Collection<Integer> out) { return pq.delMin(k, out); }
+				};
+			}
+		},
+		new Impl("fibonacci") {
+			Heap create(Integer[] a) {
+				final FibonacciMinPQ<Integer> pq = (a == null) ? new FibonacciMinPQ<Integer>() : new FibonacciMinPQ<Integer>(a);
+				return new Heap() {
+					void insert(Integer key) { pq.insert(key); }
+					Integer delMin() { return pq.delMin(); }
+					Integer minKey() { return pq.minKey(); }
+					Iterator<Integer> iterator() { return pq.iterator(); }
+					Spliterator<Integer> spliterator() { return pq.spliterator(); }
+					int delMin(int k, Collection<Integer> out) { return pq.delMin(k, out); }
+				};
+			}
+		},
+		new Impl("pairing") {
+			Heap create(Integer[] a) {
+				final PairingMinPQ<Integer> pq = (a == null) ? new PairingMinPQ<Integer>() : new PairingMinPQ<Integer>(a);
+				return new Heap() {
+					void insert(Integer key) { pq.insert(key); }
+					Integer delMin() { return pq.delMin(); }
+					Integer minKey() { return pq.minKey(); }
+					Iterator<Integer> iterator() { return pq.iterator(); }
+					Spliterator<Integer> spliterator() { return pq.spliterator(); }
+					int delMin(int k, Collection<Integer> out) { return pq.delMin(k, out); }
+				};
+			}
+		},
+		new Impl("binomial-pooled") {
+			Heap create(Integer[] a) {
+				final BinomialMinPQ<Integer> pq = new BinomialMinPQ<Integer>(POOL);
+				if (a != null) for (Integer k : a) pq.insert(k);
+				return new Heap() {
+					void insert(Integer key) { pq.insert(key); }
+					Integer delMin() { return pq.delMin(); }
+					Integer minKey() { return pq.minKey(); }
+					Iterator<Integer> iterator() { return pq.iterator(); }
+					Spliterator<Integer> spliterator() { return pq.spliterator(); }
+					int delMin(int k, Collection<Integer> out) { return pq.delMin(k, out); }
+				};
+			}
+		},
+		new Impl("fibonacci-pooled") {
+			Heap create(Integer[] a) {
+				final FibonacciMinPQ<Integer> pq = new FibonacciMinPQ<Integer>(POOL);
+				if (a != null) for (Integer k : a) pq.insert(k);
+				return new Heap() {
+					void insert(Integer key) { pq.insert(key); }
+					Integer delMin() { return pq.delMin(); }
+					Integer minKey() { return pq.minKey(); }
+					Iterator<Integer> iterator() { return pq.iterator(); }
+					Spliterator<Integer> spliterator() { return pq.spliterator(); }
+					int delMin(int k, Collection<Integer> out) { return pq.delMin(k, out); }
+				};
+			}
+		},
+		new Impl("pairing-multipass") {
+			Heap create(Integer[] a) {
+				final PairingMinPQ<Integer> pq = new PairingMinPQ<Integer>(PairingStrategy.MULTIPASS);
+				if (a != null) for (Integer k : a) pq.insert(k);
+				return new Heap() {
+					void insert(Integer key) { pq.insert(key); }
+					Integer delMin() { return pq.delMin(); }
+					Integer minKey() { return pq.minKey(); }
+					Iterator<Integer> iterator() { return pq.iterator(); }
+					Spliterator<Integer> spliterator() { return pq.spliterator(); }
+					int delMin(int k, Collection<Integer> out) { return pq.delMin(k, out); }
+				};
+			}
+		},
+		new Impl("pairing-auxiliary") {
+			Heap create(Integer[] a) {
+				final PairingMinPQ<Integer> pq = new PairingMinPQ<Integer>(PairingStrategy.AUXILIARY_TWO_PASS);
+				if (a != null) for (Integer k : a) pq.insert(k);
+				return new Heap() {
+					void insert(Integer key) { pq.insert(key); }
+					Integer delMin() { return pq.delMin(); }
+					Integer minKey() { return pq.minKey(); }
+					Iterator<Integer> iterator() { return pq.iterator(); }
+					Spliterator<Integer> spliterator() { return pq.spliterator(); }
+					int delMin(int k, Collection<Integer> out) { return pq.delMin(k, out); }
+				};
+			}
+		},
+		new Impl("pairing-pooled") {
+			Heap create(Integer[] a) {
+				final PairingMinPQ<Integer> pq = new PairingMinPQ<Integer>(POOL);
+				if (a != null) for (Integer k : a) pq.insert(k);
+				return new Heap() {
+					void insert(Integer key) { pq.insert(key); }
+					Integer delMin() { return pq.delMin(); }
+					Integer minKey() { return pq.minKey(); }
+					Iterator<Integer> iterator() { return pq.iterator(); }
+					Spliterator<Integer> spliterator() { return pq.spliterator(); }
+					int delMin(int k, Collection<Integer> out) { return pq.delMin(k, out); }
+				};
+			}
+		},
+	};
+
+	/*******************************
+	 * Workloads
+	 ******************************/
+
+	//Adds up the keys it is given
+	private static class Sum implements Consumer<Integer> {
+		long value;
+		public void accept(Integer key) { value += key; }
+	}
+
+	//Creates the workload of the given name
+	private static Bench.Workload workload(String name, final Impl impl, final Integer[] keys, final int batch) {
+		switch (name) {
+		case "insert":
+			return new Bench.Workload() {
+				Heap heap;
+				public void setup() { heap = impl.create(null); }
+				public long run() {
+					for (Integer k : keys) heap.insert(k);
+					return keys.length;
+				}
+			};
+		case "delMin":
+			return new Bench.Workload() {
+				Heap heap;
+				public void setup() { heap = impl.create(keys); }
+				public long run() {
+					long sum = 0;
+					for (int i = 0; i < keys.length; i++) sum += heap.delMin();
+					Bench.sink = sum;
+					return keys.length;
+				}
+			};
+		case "mix":
+			return new Bench.Workload() {
+				Heap heap;
+				public void setup() { heap = impl.create(keys); }
+				public long run() {
+					long sum = 0;
+					for (int i = 0; i < keys.length; i++) {
+						sum += heap.minKey();
+						sum += heap.delMin();
+						heap.insert(keys[i]);
+					}
+					Bench.sink = sum;
+					return keys.length;
+				}
+			};
+		case "heapify":
+			return new Bench.Workload() {
+				public long run() {
+					Bench.sink = impl.create(keys).minKey();
+					return keys.length;
+				}
+			};
+		case "iterate":
+			return new Bench.Workload() {
+				Heap heap;
+				public void setup() { heap = impl.create(keys); }
+				public long run() {
+					long sum = 0;
+					for (Iterator<Integer> it = heap.iterator(); it.hasNext(); ) sum += it.next();
+					Bench.sink = sum;
+					return keys.length;
+				}
+			};
+		case "top10":
+			//The queue is not modified, so it is built only once
+			return new Bench.Workload() {
+				Heap heap;
+				public void setup() { if (heap == null) heap = impl.create(keys); }
+				public long run() {
+					long sum = 0;
+					Iterator<Integer> it = heap.iterator();
+					for (int i = 0; i < 10 && it.hasNext(); i++) sum += it.next();
+					Bench.sink = sum;
+					return 10;
+				}
+			};
+		case "batch":
+			return new Bench.Workload() {
+				Heap heap;
+				public void setup() { heap = impl.create(keys); }
+				public long run() {
+					heap.insertAll(keys);
+					return keys.length;
+				}
+			};
+		case "delMinBatch":
+			return new Bench.Workload() {
+				Heap heap;
+				final ArrayList<Integer> out = new ArrayList<Integer>(Math.min(batch, keys.length));
+				public void setup() { heap = impl.create(keys); }
+				public long run() {
+					long sum = 0;
+					for (int left = keys.length; left > 0; out.clear()) {
+						left -= heap.delMin(Math.min(batch, left), out);
+						sum += out.get(0);
+					}
+					Bench.sink = sum;
+					return keys.length;
+				}
+			};
+		case "scan":
+			//The queue is not modified, so it is built only once
+			return new Bench.Workload() {
+				Heap heap;
+				public void setup() { if (heap == null) heap = impl.create(keys); }
+				public long run() {
+					Sum sum = new Sum();
+					heap.spliterator().forEachRemaining(sum);
+					Bench.sink = sum.value;
+					return keys.length;
+				}
+			};
+		default:
+			throw new IllegalArgumentException("Unknown workload " + name);
+		}
+	}
+
+	/*******************************
+	 * Main
+	 ******************************/
+
+	public static void main(String[] args) {
+		int[] sizes = Bench.sizes(Bench.option(args, "-sizes", "1K,10K,100K,1M"));
+		String[] dists = Bench.option(args, "-keys", String.join(",", Bench.DISTRIBUTIONS)).split(",");
+		String heaps = Bench.option(args, "-heaps", "binary,binary-line,binary-page,pair,multiway,binomial,fibonacci,pairing,"
+														  + "binomial-pooled,fibonacci-pooled,pairing-pooled,pairing-multipass,pairing-auxiliary");
+		String[] workloads = Bench.option(args, "-workloads", "insert,delMin,mix,heapify,iterate,top10,scan,batch,delMinBatch").split(",");
+		int warmups = Integer.parseInt(Bench.option(args, "-warmups", "2"));
+		int iterations = Integer.parseInt(Bench.option(args, "-iterations", "3"));
+		int batch = Integer.parseInt(Bench.option(args, "-batch", "256"));
+		long time = Long.parseLong(Bench.option(args, "-time", "200"));
+
+		Bench.header();
+		for (int n : sizes) {
+			for (String dist : dists) {
+				Integer[] keys = Bench.boxed(Bench.keys(dist, n, 42));
+				for (String w : workloads) {
+					for (Impl impl : IMPLS) {
+						if (!(","+heaps+",").contains(","+impl.name+",")) continue;
+						try {
+							Bench.Result r = Bench.measure(workload(w, impl, keys, batch), warmups, iterations, time);
+							Bench.report(w, impl.name, dist, n, r);
+						} catch (RuntimeException | Error e) {
+							Bench.failure(w, impl.name, dist, n, e);
+						}
+					}
+				}
+			}
+		}
+	}
+
+}
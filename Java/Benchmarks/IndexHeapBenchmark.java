@@ -0,0 +1,462 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import tools.IndexBinaryMinPQ;
+import tools.IndexPairingDoubleMinPQ;
+import tools.IndexPairingMinPQ;
+import tools.PairingStrategy;
+import tools.SparseIndexBinaryMinPQ;
+
+/**
+ *  The IndexHeapBenchmark class compares the indexed priority queues :
+ *  IndexBinaryMinPQ, IndexMultiwayMinPQ, IndexMultiwayDoubleMinPQ, IndexBinomialMinPQ,
+ *  IndexFibonacciMinPQ, IndexPairingMinPQ and IndexPairingDoubleMinPQ, under the workload
+ *  of Dijkstra's shortest path algorithm.
+ *  SparseIndexBinaryMinPQ is given sparse long identifiers instead of the vertices, and compared
+ *  with IndexBinaryMinPQ behind a HashMap translating the identifiers to indices.
+ *
+ *  A shortest path search is run once on a synthetic graph, and the sequence
+ *  of insert, decrease-key and delete-the-minimum operations it issues is
+ *  recorded into a trace. The trace is then replayed on every queue, so that
+ *  all of them perform exactly the same operations.
+ *  The keys of the trace are boxed once for all, so only the allocations
+ *  made by the queues are reported.
+ *
+ *  Three kinds of graphs are generated :
+ *  grid : a square grid where each vertex is linked to its four neighbours
+ *  road : a jittered grid where some streets are missing and some diagonals
+ *         exist, weighted by the euclidean distance
+ *  powerlaw : a Barabasi-Albert graph, each new vertex being linked to 3 vertices
+ *             chosen proportionally to their degree
+ *
+ *  Along with the usual columns, the report gives the median and
+ *  the 99th percentile of the latency of one operation, in nanoseconds.
+ *  Those are measured in a separate replay, as timing every operation
+ *  has a cost of its own.
+ *  The multiway heaps are measured for several dimensions,
+ *  IndexPairingMinPQ for each PairingStrategy.
+ *
+ *  Usage : java IndexHeapBenchmark [-sizes 10K,100K,1M] [-graphs grid,road,powerlaw]
+ *                                  [-heaps binary,multiway,multiway-double,binomial,fibonacci,pairing,
+ *                                          pairing-multipass,pairing-auxiliary,pairing-double,sparse,binary-hashmap]
+ *                                  [-arities 2,4,8,16] [-warmups 2] [-iterations 3] [-time 200]
+ *  Sizes are numbers of vertices.
+ *
+ *  @author Tristan Claverie
+ */
+public class IndexHeapBenchmark {
+	private static final int INSERT = 0, DECREASE = 1, DELMIN = 2;
+
+	/*******************************
+	 * Graphs
+	 ******************************/
+
+	//Weighted directed graph stored as adjacency arrays,
+	//the edges leaving v are between start[v] and start[v+1]
+	private static final class Graph {
+		final int n;
+		final int[] start;
+		final int[] to;
+		final double[] weight;
+
+		//Builds the graph from a list of undirected edges
+		Graph(int n, int[] from, int[] dest, double[] w, int m) {
+			this.n = n;
+			start = new int[n+1];
+			to = new int[2*m];
+			weight = new double[2*m];
+			for (int e = 0; e < m; e++) { start[from[e]+1]++; start[dest[e]+1]++; }
+			for (int v = 0; v < n; v++) start[v+1] += start[v];
+			int[] next = new int[n];
+			for (int v = 0; v < n; v++) next[v] = start[v];
+			for (int e = 0; e < m; e++) {
+				int a = next[from[e]]++, b = next[dest[e]]++;
+				to[a] = dest[e]; weight[a] = w[e];
+				to[b] = from[e]; weight[b] = w[e];
+			}
+		}
+	}
+
+	//Creates the graph of the given kind with about n vertices
+	private static Graph graph(String kind, int n, long seed) {
+		Random rnd = new Random(seed);
+		switch (kind) {
+		case "grid": {
+			int side = Math.max(2, (int) Math.sqrt(n));
+			n = side*side;
+			int[] from = new int[2*n], dest = new int[2*n];
+			double[] w = new double[2*n];
+			int m = 0;
+			for (int r = 0; r < side; r++) {
+				for (int c = 0; c < side; c++) {
+					int v = r*side+c;
+					if (c+1 < side) { from[m] = v; dest[m] = v+1; w[m++] = 1 + rnd.nextDouble(); }
+					if (r+1 < side) { from[m] = v; dest[m] = v+side; w[m++] = 1 + rnd.nextDouble(); }
+				}
+			}
+			return new Graph(n, from, dest, w, m);
+		}
+		case "road": {
+			int side = Math.max(2, (int) Math.sqrt(n));
+			n = side*side;
+			double[] x = new double[n], y = new double[n];
+			for (int v = 0; v < n; v++) {
+				x[v] = v % side + 0.4 * rnd.nextDouble();
+				y[v] = v / side + 0.4 * rnd.nextDouble();
+			}
+			int[] from = new int[3*n], dest = new int[3*n];
+			double[] w = new double[3*n];
+			int m = 0;
+			for (int r = 0; r < side; r++) {
+				for (int c = 0; c < side; c++) {
+					int v = r*side+c;
+					int[] neighbours = { (c+1 < side) ? v+1 : -1, (r+1 < side) ? v+side : -1,
+										 (c+1 < side && r+1 < side) ? v+side+1 : -1 };
+					double[] keep = { 0.85, 0.85, 0.1 };
+					for (int k = 0; k < 3; k++) {
+						int u = neighbours[k];
+						if (u < 0 || rnd.nextDouble() >= keep[k]) continue;
+						from[m] = v; dest[m] = u;
+						w[m++] = Math.hypot(x[v]-x[u], y[v]-y[u]) * (1 + 0.2 * rnd.nextDouble());
+					}
+				}
+			}
+			return new Graph(n, from, dest, w, m);
+		}
+		case "powerlaw": {
+			final int links = 3;
+			n = Math.max(n, links+1);
+			int[] from = new int[links*n], dest = new int[links*n];
+			double[] w = new double[links*n];
+			int[] ends = new int[2*links*n];		//Every vertex appears once per incident edge
+			int m = 0, e = 0;
+			for (int v = 1; v <= links; v++) {
+				from[m] = v; dest[m] = 0; w[m++] = 1 + 99 * rnd.nextDouble();
+				ends[e++] = v; ends[e++] = 0;
+			}
+			for (int v = links+1; v < n; v++) {
+				for (int k = 0; k < links; k++) {
+					int u = ends[rnd.nextInt(e)];
+					from[m] = v; dest[m] = u; w[m++] = 1 + 99 * rnd.nextDouble();
+				}
+				for (int k = m-links; k < m; k++) { ends[e++] = v; ends[e++] = dest[k]; }
+			}
+			return new Graph(n, from, dest, w, m);
+		}
+		default:
+			throw new IllegalArgumentException("Unknown graph " + kind);
+		}
+	}
+
+	/*******************************
+	 * Traces
+	 ******************************/
+
+	//Sequence of operations issued by a shortest path search
+	private static final class Trace {
+		final int n;			//Number of indices
+		int length;				//Number of operations
+		int[] ops;				//Operation in the 2 upper bits, index in the others
+		Double[] keys;			//Key of each operation, null for a delete-the-minimum
+
+		Trace(int n) {
+			this.n = n;
+			ops = new int[4*n];
+			keys = new Double[4*n];
+		}
+
+		void add(int op, int i, Double key) {
+			if (length == ops.length) {
+				ops = Arrays.copyOf(ops, length << 1);
+				keys = Arrays.copyOf(keys, length << 1);
+			}
+			ops[length] = (op << 30) | i;
+			keys[length++] = key;
+		}
+	}
+
+	//Runs Dijkstra's algorithm from vertex 0 and records the operations on the queue
+	private static Trace dijkstra(Graph g) {
+		Trace t = new Trace(g.n);
+		double[] dist = new double[g.n];
+		for (int v = 0; v < g.n; v++) dist[v] = Double.POSITIVE_INFINITY;
+		IndexBinaryMinPQ<Double> pq = new IndexBinaryMinPQ<Double>(g.n);
+		dist[0] = 0;
+		pq.insert(0, 0.0);
+		t.add(INSERT, 0, 0.0);
+		while (!pq.isEmpty()) {
+			int v = pq.delMin();
+			t.add(DELMIN, v, null);
+			for (int e = g.start[v]; e < g.start[v+1]; e++) {
+				int u = g.to[e];
+				double d = dist[v] + g.weight[e];
+				if (d >= dist[u]) continue;
+				Double key = d;
+				if (dist[u] == Double.POSITIVE_INFINITY) {
+					pq.insert(u, key);
+					t.add(INSERT, u, key);
+				} else {
+					pq.decreaseKey(u, key);
+					t.add(DECREASE, u, key);
+				}
+				dist[u] = d;
+			}
+		}
+		return t;
+	}
+
+	/*******************************
+	 * Indexed priority queues
+	 ******************************/
+
+	//Common view over the indexed priority queues
+	private static abstract class Heap {
+		abstract void insert(int i, Double key);
+		abstract void decreaseKey(int i, Double key);
+		abstract int delMin();
+	}
+
+	//Creates an empty indexed priority queue over n indices
+	private static abstract class Impl {
+		final String name;
+		Impl(String name) { this.name = name; }
+		abstract Heap create(int n);
+	}
+
+	private static Impl binary() {
+		return new Impl("binary") {
+			Heap create(int n) {
+				final IndexBinaryMinPQ<Double> pq = new IndexBinaryMinPQ<Double>(n);
+				return new Heap() {
+					void insert(int i, Double key) { pq.insert(i, key); }
+					void decreaseKey(int i, Double key) { pq.decreaseKey(i, key); }
+					int delMin() { return pq.delMin(); }
+				};
+			}
+		};
+	}
+
+	private static Impl multiway(final int d) {
+		return new Impl("multiway(d=" + d + ")") {
+			Heap create(int n) {
+				final IndexMultiwayMinPQ<Double> pq = new IndexMultiwayMinPQ<Double>(n, d);
+				return new Heap() {
+					void insert(int i, Double key) { pq.insert(i, key); }
+					void decreaseKey(int i, Double key) { pq.decreaseKey(i, key); }
+					int delMin() { return pq.delMin(); }
+				};
+			}
+		};
+	}
+
+	//The keys of the trace are unboxed, which does not allocate
+	private static Impl multiwayDouble(final int d) {
+		return new Impl("multiway-double(d=" + d + ")") {
+			Heap create(int n) {
+				final IndexMultiwayDoubleMinPQ pq = new IndexMultiwayDoubleMinPQ(n, d);
+				return new Heap() {
+					void insert(int i, Double key) { pq.insert(i, key); }
+					void decreaseKey(int i, Double key) { pq.decreaseKey(i, key); }
+					int delMin() { return pq.delMin(); }
+				};
+			}
+		};
+	}
+
+	private static Impl binomial() {
+		return new Impl("binomial") {
+			Heap create(int n) {
+				final IndexBinomialMinPQ<Double> pq = new IndexBinomialMinPQ<Double>(n);
+				return new Heap() {
+					void insert(int i, Double key) { pq.insert(i, key); }
+					void decreaseKey(int i, Double key) { pq.decreaseKey(i, key); }
+					int delMin() { return pq.delMin(); }
+				};
+			}
+		};
+	}
+
+	private static Impl fibonacci() {
+		return new Impl("fibonacci") {
+			Heap create(int n) {
+				final IndexFibonacciMinPQ<Double> pq = new IndexFibonacciMinPQ<Double>(n);
+				return new Heap() {
+					void insert(int i, Double key) { pq.insert(i, key); }
+					void decreaseKey(int i, Double key) { pq.decreaseKey(i, key); }
+					int delMin() { return pq.delMin(); }
+				};
+			}
+		};
+	}
+
+	private static Impl pairing(String name, final PairingStrategy strategy) {
+		return new Impl(name) {
+			Heap create(int n) {
+				final IndexPairingMinPQ<Double> pq = new IndexPairingMinPQ<Double>(n, null, strategy);
+				return new Heap() {
+					void insert(int i, Double key) { pq.insert(i, key); }
+					void decreaseKey(int i, Double key) { pq.decreaseKey(i, key); }
+					int delMin() { return pq.delMin(); }
+				};
+			}
+		};
+	}
+
+	//The keys of the trace are unboxed, which does not allocate
+	private static Impl pairingDouble() {
+		return new Impl("pairing-double") {
+			Heap create(int n) {
+				final IndexPairingDoubleMinPQ pq = new IndexPairingDoubleMinPQ(n);
+				return new Heap() {
+					void insert(int i, Double key) { pq.insert(i, key); }
+					void decreaseKey(int i, Double key) { pq.decreaseKey(i, key); }
+					int delMin() { return pq.delMin(); }
+				};
+			}
+		};
+	}
+
+	//Sparse identifier of the vertex i, as given by a database or a random generator
+	private static long sparse(int i) {
+		return (i+1) * 0x5DEECE66DL;
+	}
+
+	//The vertices are referred to by sparse identifiers
+	private static Impl sparseBinary() {
+		return new Impl("sparse") {
+			Heap create(int n) {
+				final SparseIndexBinaryMinPQ<Double> pq = new SparseIndexBinaryMinPQ<Double>();
+				return new Heap() {
+					void insert(int i, Double key) { pq.insert(sparse(i), key); }
+					void decreaseKey(int i, Double key) { pq.decreaseKey(sparse(i), key); }
+					int delMin() { return (int) pq.delMin(); }
+				};
+			}
+		};
+	}
+
+	//The usual translation layer : a HashMap gives a dense index to each sparse identifier,
+	//and the indices are recycled when deleted
+	private static Impl binaryHashMap() {
+		return new Impl("binary-hashmap") {
+			Heap create(final int n) {
+				final IndexBinaryMinPQ<Double> pq = new IndexBinaryMinPQ<Double>(n);
+				final HashMap<Long, Integer> index = new HashMap<Long, Integer>();
+				final long[] ids = new long[n];
+				final int[] free = new int[n];
+				return new Heap() {
+					int next, top;
+					void insert(int i, Double key) {
+						long id = sparse(i);
+						int j = (top > 0) ? free[--top] : next++;
+						index.put(id, j);
+						ids[j] = id;
+						pq.insert(j, key);
+					}
+					void decreaseKey(int i, Double key) { pq.decreaseKey(index.get(sparse(i)), key); }
+					int delMin() {
+						int j = pq.delMin();
+						index.remove(ids[j]);
+						free[top++] = j;
+						return (int) ids[j];
+					}
+				};
+			}
+		};
+	}
+
+	/*******************************
+	 * Replay
+	 ******************************/
+
+	//Replays the whole trace on a new queue
+	private static Bench.Workload replay(final Impl impl, final Trace t) {
+		return new Bench.Workload() {
+			Heap heap;
+			public void setup() { heap = impl.create(t.n); }
+			public long run() {
+				long sum = 0;
+				int[] ops = t.ops;
+				Double[] keys = t.keys;
+				for (int k = 0; k < t.length; k++) {
+					int op = ops[k] >>> 30, i = ops[k] & 0x3FFFFFFF;
+					if (op == INSERT) 		 heap.insert(i, keys[k]);
+					else if (op == DECREASE) heap.decreaseKey(i, keys[k]);
+					else 					 sum += heap.delMin();
+				}
+				Bench.sink = sum;
+				return t.length;
+			}
+		};
+	}
+
+	//Replays the trace once, timing every operation
+	private static long[] latencies(Impl impl, Trace t) {
+		Heap heap = impl.create(t.n);
+		long[] lat = new long[t.length];
+		long sum = 0;
+		for (int k = 0; k < t.length; k++) {
+			int op = t.ops[k] >>> 30, i = t.ops[k] & 0x3FFFFFFF;
+			long start = System.nanoTime();
+			if (op == INSERT) 		 heap.insert(i, t.keys[k]);
+			else if (op == DECREASE) heap.decreaseKey(i, t.keys[k]);
+			else 					 sum += heap.delMin();
+			lat[k] = System.nanoTime() - start;
+		}
+		Bench.sink = sum;
+		return lat;
+	}
+
+	/*******************************
+	 * Main
+	 ******************************/
+
+	public static void main(String[] args) {
+		int[] sizes = Bench.sizes(Bench.option(args, "-sizes", "10K,100K,1M"));
+		String[] graphs = Bench.option(args, "-graphs", "grid,road,powerlaw").split(",");
+		String heaps = "," + Bench.option(args, "-heaps", "binary,multiway,multiway-double,binomial,fibonacci,pairing,"
+															+ "pairing-multipass,pairing-auxiliary,pairing-double,sparse,binary-hashmap") + ",";
+		String[] arities = Bench.option(args, "-arities", "2,4,8,16").split(",");
+		int warmups = Integer.parseInt(Bench.option(args, "-warmups", "2"));
+		int iterations = Integer.parseInt(Bench.option(args, "-iterations", "3"));
+		long time = Long.parseLong(Bench.option(args, "-time", "200"));
+
+		List<Impl> impls = new ArrayList<Impl>();
+		if (heaps.contains(",binary,")) impls.add(binary());
+		if (heaps.contains(",multiway,")) {
+			for (String d : arities) impls.add(multiway(Integer.parseInt(d.trim())));
+		}
+		if (heaps.contains(",multiway-double,")) {
+			for (String d : arities) impls.add(multiwayDouble(Integer.parseInt(d.trim())));
+		}
+		if (heaps.contains(",binomial,")) impls.add(binomial());
+		if (heaps.contains(",fibonacci,")) impls.add(fibonacci());
+		if (heaps.contains(",pairing,")) impls.add(pairing("pairing", PairingStrategy.TWO_PASS));
+		if (heaps.contains(",pairing-multipass,")) impls.add(pairing("pairing-multipass", PairingStrategy.MULTIPASS));
+		if (heaps.contains(",pairing-auxiliary,")) impls.add(pairing("pairing-auxiliary", PairingStrategy.AUXILIARY_TWO_PASS));
+		if (heaps.contains(",pairing-double,")) impls.add(pairingDouble());
+		if (heaps.contains(",sparse,")) impls.add(sparseBinary());
+		if (heaps.contains(",binary-hashmap,")) impls.add(binaryHashMap());
+
+		Bench.header(String.format("%10s %10s", "p50 ns", "p99 ns"));
+		for (int n : sizes) {
+			for (String kind : graphs) {
+				Trace t = dijkstra(graph(kind, n, 42));
+				for (Impl impl : impls) {
+					try {
+						Bench.Result r = Bench.measure(replay(impl, t), warmups, iterations, time);
+						long[] lat = latencies(impl, t);
+						String extra = String.format("%10d %10d", Bench.percentile(lat, 50), Bench.percentile(lat, 99));
+						Bench.report("dijkstra", impl.name, kind, t.n, r, extra);
+					} catch (RuntimeException | Error e) {
+						Bench.failure("dijkstra", impl.name, kind, t.n, e);
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+import tools.LongBinaryMinPQ;
+import tools.LongMultiwayMinPQ;
+
+/**
+ *  The LongHeapBenchmark class compares the priority queues of long keys :
+ *  LongBinaryMinPQ and LongMultiwayMinPQ, the latter for several dimensions.
+ *  The keys are primitive, so the memory traffic measured is the one of the heap itself,
+ *  which makes the layout of the array visible on heaps larger than the caches.
+ *
+ *  The following workloads are measured :
+ *  insert : n inserts in an empty queue
+ *  delMin : n delete-the-minimum on a queue of n keys
+ *  mix : n rounds of delete-the-minimum and insert on a queue of n keys
+ *
+ *  Each workload runs for every size and every distribution of keys
+ *  (uniform, sorted, reverse and zipf), and reports ops/s, bytes allocated
+ *  per operation, allocation rate and garbage collections.
+ *
+ *  Usage : java LongHeapBenchmark [-sizes 1K,10K,100K,1M,10M] [-keys uniform,sorted,reverse,zipf]
+ *                                 [-heaps binary,multiway] [-arities 2,4,8]
+ *                                 [-workloads insert,delMin,mix]
+ *                                 [-warmups 2] [-iterations 3] [-time 200]
+ *  Sizes up to 100M are supported, given a large enough heap (-Xmx).
+ *
+ *  @author Tristan Claverie
+ */
+public class LongHeapBenchmark {
+
+	//Common view over the priority queues
+	private static abstract class Heap {
+		abstract void insert(long key);
+		abstract long delMin();
+	}
+
+	//Creates a priority queue, either empty or from an array of keys
+	private static Heap create(String heap, int d, long[] a) {
+		if (heap.equals("binary")) {
+			final LongBinaryMinPQ pq = (a == null) ? new LongBinaryMinPQ() : new LongBinaryMinPQ(a);
+			return new Heap() {
+				void insert(long key) { pq.insert(key); }
+				long delMin() { return pq.delMin(); }
+			};
+		}
+		final LongMultiwayMinPQ pq = (a == null) ? new LongMultiwayMinPQ(d) : new LongMultiwayMinPQ(a, d);
+		return new Heap() {
+			void insert(long key) { pq.insert(key); }
+			long delMin() { return pq.delMin(); }
+		};
+	}
+
+	/*******************************
+	 * Workloads
+	 ******************************/
+
+	//Creates the workload of the given name
+	private static Bench.Workload workload(String name, final String heap, final int d, final long[] keys) {
+		switch (name) {
+		case "insert":
+			return new Bench.Workload() {
+				Heap pq;
+				public void setup() { pq = create(heap, d, null); }
+				public long run() {
+					for (long k : keys) pq.insert(k);
+					return keys.length;
+				}
+			};
+		case "delMin":
+			return new Bench.Workload() {
+				Heap pq;
+				public void setup() { pq = create(heap, d, keys); }
+				public long run() {
+					long sum = 0;
+					for (int i = 0; i < keys.length; i++) sum += pq.delMin();
+					Bench.sink = sum;
+					return keys.length;
+				}
+			};
+		case "mix":
+			return new Bench.Workload() {
+				Heap pq;
+				public void setup() { pq = create(heap, d, keys); }
+				public long run() {
+					long sum = 0;
+					for (int i = 0; i < keys.length; i++) {
+						long k = pq.delMin();
+						sum += k;
+						pq.insert(k + keys[i]);
+					}
+					Bench.sink = sum;
+					return keys.length;
+				}
+			};
+		default:
+			throw new IllegalArgumentException("Unknown workload " + name);
+		}
+	}
+
+	/*******************************
+	 * Main
+	 ******************************/
+
+	public static void main(String[] args) {
+		int[] sizes = Bench.sizes(Bench.option(args, "-sizes", "1K,10K,100K,1M,10M"));
+		String[] dists = Bench.option(args, "-keys", String.join(",", Bench.DISTRIBUTIONS)).split(",");
+		String[] heaps = Bench.option(args, "-heaps", "binary,multiway").split(",");
+		String[] arities = Bench.option(args, "-arities", "2,4,8").split(",");
+		String[] workloads = Bench.option(args, "-workloads", "insert,delMin,mix").split(",");
+		int warmups = Integer.parseInt(Bench.option(args, "-warmups", "2"));
+		int iterations = Integer.parseInt(Bench.option(args, "-iterations", "3"));
+		long time = Long.parseLong(Bench.option(args, "-time", "200"));
+
+		Bench.header();
+		for (int n : sizes) {
+			for (String dist : dists) {
+				int[] k = Bench.keys(dist, n, 42);
+				long[] keys = new long[n];
+				for (int i = 0; i < n; i++) keys[i] = k[i];
+				for (String w : workloads) {
+					for (String heap : heaps) {
+						String[] ds = heap.equals("multiway") ? arities : new String[] { "2" };
+						for (String d : ds) {
+							String name = heap.equals("multiway") ? heap + "-" + d : heap;
+							try {
+								Bench.Result r = Bench.measure(workload(w, heap, Integer.parseInt(d), keys), warmups, iterations, time);
+								Bench.report(w, name, dist, n, r);
+							} catch (RuntimeException | Error e) {
+								Bench.failure(w, name, dist, n, e);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,218 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
+
+import main.RedBlackBST;
+
+/**
+ *  The SymbolTableBenchmark class compares the ordered symbol tables :
+ *  RedBlackBST and the TreeMap of the JDK, which is a bottom-up red-black tree
+ *  with parent pointers.
+ *
+ *  The following workloads are measured :
+ *  put : n insertions in an empty table
+ *  get : n successful searches in a table of n keys, in a shuffled order
+ *  delete : n deletions in a table of n keys, in a shuffled order
+ *  load : creation of a table from its keys in ascending order, duplicates removed :
+ *         RedBlackBST.fromSorted builds it in linear time, TreeMap inserts the keys one by one
+ *         (compare with put on sorted keys)
+ *  merge : addition of n/16 keys, half of them new, to a table of n keys :
+ *          RedBlackBST.union merges a second table in O(m log(n/m + 1)), TreeMap inserts the keys one by one
+ *
+ *  Each workload runs for every size and every distribution of keys
+ *  (uniform, sorted, reverse and zipf), and reports ops/s, bytes allocated
+ *  per operation, allocation rate and garbage collections.
+ *  The keys are boxed once for all, so only the allocations made by the tables are reported.
+ *
+ *  Usage : java SymbolTableBenchmark [-sizes 1K,10K,100K,1M,10M] [-keys uniform,sorted,reverse,zipf]
+ *                                    [-tables redblack,treemap] [-workloads put,get,delete,load,merge]
+ *                                    [-warmups 2] [-iterations 3] [-time 200]
+ *
+ *  @author Tristan Claverie
+ */
+public class SymbolTableBenchmark {
+
+	//Common view over the symbol tables
+	private static abstract class Table {
+		abstract void put(Integer key, Integer val);
+		abstract Integer get(Integer key);
+		abstract void delete(Integer key);
+	}
+
+	//Creates an empty symbol table
+	private static Table create(String table) {
+		switch (table) {
+		case "redblack": {
+			final RedBlackBST<Integer, Integer> st = new RedBlackBST<Integer, Integer>();
+			return new Table() {
+				void put(Integer key, Integer val) { st.put(key, val); }
+				Integer get(Integer key) { return st.get(key); }
+				void delete(Integer key) { st.delete(key); }
+			};
+		}
+		case "treemap": {
+			final TreeMap<Integer, Integer> st = new TreeMap<Integer, Integer>();
+			return new Table() {
+				void put(Integer key, Integer val) { st.put(key, val); }
+				Integer get(Integer key) { return st.get(key); }
+				void delete(Integer key) { st.remove(key); }
+			};
+		}
+		default:
+			throw new IllegalArgumentException("Unknown table " + table);
+		}
+	}
+
+	//Creates a table holding the given keys
+	private static Table filled(String table, Integer[] keys) {
+		Table st = create(table);
+		for (Integer k : keys) st.put(k, k);
+		return st;
+	}
+
+	//Creates a table from keys in strictly ascending order, in bulk when the table allows it
+	private static Object loaded(String table, Integer[] sorted) {
+		if (table.equals("redblack")) return RedBlackBST.fromSorted(sorted, sorted);
+		return filled(table, sorted);
+	}
+
+	//Copy of the keys in ascending order, without duplicates
+	private static Integer[] distinct(Integer[] keys) {
+		Integer[] a = keys.clone();
+		Arrays.sort(a);
+		int m = 0;
+		for (int i = 0; i < a.length; i++)
+			if (m == 0 || !a[i].equals(a[m-1])) a[m++] = a[i];
+		return Arrays.copyOf(a, m);
+	}
+
+	//One key out of 16, shifted so that about half of them are new
+	private static Integer[] delta(Integer[] keys) {
+		Integer[] a = new Integer[keys.length/16];
+		for (int i = 0; i < a.length; i++) a[i] = keys[16*i] + (i & 1);
+		return a;
+	}
+
+	//Copy of the keys in a random order
+	private static Integer[] shuffled(Integer[] keys, long seed) {
+		Random rnd = new Random(seed);
+		Integer[] a = keys.clone();
+		for (int i = a.length-1; i > 0; i--) {
+			int j = rnd.nextInt(i+1);
+			Integer swap = a[i];
+			a[i] = a[j];
+			a[j] = swap;
+		}
+		return a;
+	}
+
+	/*******************************
+	 * Workloads
+	 ******************************/
+
+	//Creates the workload of the given name
+	private static Bench.Workload workload(String name, final String table, final Integer[] keys) {
+		final Integer[] order = shuffled(keys, 7);
+		switch (name) {
+		case "put":
+			return new Bench.Workload() {
+				Table st;
+				public void setup() { st = create(table); }
+				public long run() {
+					for (Integer k : keys) st.put(k, k);
+					return keys.length;
+				}
+			};
+		case "get":
+			return new Bench.Workload() {
+				Table st;
+				public void setup() { if (st == null) st = filled(table, keys); }
+				public long run() {
+					long sum = 0;
+					for (Integer k : order) sum += st.get(k);
+					Bench.sink = sum;
+					return order.length;
+				}
+			};
+		case "delete":
+			return new Bench.Workload() {
+				Table st;
+				public void setup() { st = filled(table, keys); }
+				public long run() {
+					for (Integer k : order) st.delete(k);
+					return order.length;
+				}
+			};
+		case "load": {
+			final Integer[] sorted = distinct(keys);
+			return new Bench.Workload() {
+				Object st;
+				public void setup() { st = null; }
+				public long run() {
+					st = loaded(table, sorted);
+					return sorted.length;
+				}
+			};
+		}
+		case "merge": {
+			final Integer[] sorted = distinct(keys);
+			final Integer[] delta = distinct(delta(keys));
+			if (table.equals("redblack")) {
+				return new Bench.Workload() {
+					RedBlackBST<Integer, Integer> st, other;
+					public void setup() {
+						st = RedBlackBST.fromSorted(sorted, sorted);
+						other = RedBlackBST.fromSorted(delta, delta);
+					}
+					public long run() {
+						st.union(other);
+						return delta.length;
+					}
+				};
+			}
+			return new Bench.Workload() {
+				Table st;
+				public void setup() { st = filled(table, sorted); }
+				public long run() {
+					for (Integer k : delta) st.put(k, k);
+					return delta.length;
+				}
+			};
+		}
+		default:
+			throw new IllegalArgumentException("Unknown workload " + name);
+		}
+	}
+
+	/*******************************
+	 * Main
+	 ******************************/
+
+	public static void main(String[] args) {
+		int[] sizes = Bench.sizes(Bench.option(args, "-sizes", "1K,10K,100K,1M,10M"));
+		String[] dists = Bench.option(args, "-keys", String.join(",", Bench.DISTRIBUTIONS)).split(",");
+		String[] tables = Bench.option(args, "-tables", "redblack,treemap").split(",");
+		String[] workloads = Bench.option(args, "-workloads", "put,get,delete,load,merge").split(",");
+		int warmups = Integer.parseInt(Bench.option(args, "-warmups", "2"));
+		int iterations = Integer.parseInt(Bench.option(args, "-iterations", "3"));
+		long time = Long.parseLong(Bench.option(args, "-time", "200"));
+
+		Bench.header();
+		for (int n : sizes) {
+			for (String dist : dists) {
+				Integer[] keys = Bench.boxed(Bench.keys(dist, n, 42));
+				for (String w : workloads) {
+					for (String table : tables) {
+						try {
+							Bench.Result r = Bench.measure(workload(w, table, keys), warmups, iterations, time);
+							Bench.report(w, table, dist, n, r);
+						} catch (RuntimeException | Error e) {
+							Bench.failure(w, table, dist, n, e);
+						}
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -1,8 +1,16 @@
 package tools;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 
 /**
  *  The BinaryMinPQ class represents a priority queue of generic keys.
@@ -18,6 +26,20 @@ import java.util.NoSuchElementException;
  *  The min, size, and is-empty operations take constant time.
  *  Construction takes time proportional to the specified capacity or the number of
  *  items used to initialize the data structure.
+ *  insertAll appends a batch of keys at once, swims them while the batch is no larger than the heap,
+ *  and re-heapifies the subtrees holding them otherwise : it takes time proportional to m*log(n)
+ *  for a batch of m keys, and linear time in the size of the batch once it is larger than the heap.
+ *  The iterator does not copy the heap : the k first keys take time proportional to k*log(k).
+ *  When the order does not matter, forEachUnordered and the spliterator read the array
+ *  directly and visit all the keys in linear time ; the spliterator splits the array in halves,
+ *  so a parallel stream over the keys is balanced.
+ *
+ *  The heap can also be laid out by blocks (HeapLayout), as Kamp's B-heap : a block of the array holds
+ *  a whole subtree, so a path from the root to a leaf reads a new cache line (or a new page)
+ *  only every few levels instead of at every level. The slots of a block are numbered
+ *  as in a heap : the two roots are at offsets 2 and 3 (the root of the heap at offset 1 of the first block),
+ *  the children of offset o at 2*o and 2*o+1, and the leaves at the second half of the block have their
+ *  children in the next blocks. The blocks are filled in order, so the array has two unused slots per block.
  *
  *  @author Tristan Claverie
  */
@@ -26,6 +48,10 @@ public class BinMinPQ<Key> implements Iterable<Key> {
 	private int size;							// Number of elements currently on the queue
 	private Key[] pq;						// Array storing the Priority Queue
 	private final Comparator<Key> comp;		// A Comparator over the keys
+	private int modCount;					// Number of modifications, checked by the iterators
+	private final int shift;				// log2 of the size of a block, 0 for the implicit layout
+	private int last;						// Index of the last key in the blocked layout
+	private static final int SORT_SHIFT = 1;	// delMin(k) sorts the array if k >= size>>SORT_SHIFT
 	
 	/**
 	 * Constructs an empty Priority Queue
@@ -34,6 +60,7 @@ public class BinMinPQ<Key> implements Iterable<Key> {
 	public BinMinPQ() {
 		pq = (Key[]) new Object[2];
 		comp = new MyComparator();
+		shift = 0;
 	}
 	
 	/**
@@ -45,6 +72,32 @@ public class BinMinPQ<Key> implements Iterable<Key> {
 	public BinMinPQ(Comparator<Key> C) {
 		pq = (Key[]) new Object[2];
 		comp = C;
+		shift = 0;
+	}
+	
+	/**
+	 * Constructs an empty Priority Queue laid out in its array as specified
+	 * Worst case is O(1)
+	 * 
+	 * @param layout how the heap is laid out in the array
+	 */
+	public BinMinPQ(HeapLayout layout) {
+		pq = (Key[]) new Object[2];
+		comp = new MyComparator();
+		shift = blockShift(layout);
+	}
+	
+	/**
+	 * Constructs an empty Priority Queue with the given Comparator, laid out in its array as specified
+	 * Worst case is O(1)
+	 * 
+	 * @param C a Comparator over the keys
+	 * @param layout how the heap is laid out in the array
+	 */
+	public BinMinPQ(Comparator<Key> C, HeapLayout layout) {
+		pq = (Key[]) new Object[2];
+		comp = C;
+		shift = blockShift(layout);
 	}
 	
 	/**
@@ -59,6 +112,7 @@ public class BinMinPQ<Key> implements Iterable<Key> {
 		pq = (Key[]) new Object[size+1];
 		for(int i = 0; i < size; pq[i+1] = a[i++]);
 		for(int i = size>>1; i > 0; sink(i--));
+		shift = 0;
 	}
 	
 	/**
@@ -74,6 +128,7 @@ public class BinMinPQ<Key> implements Iterable<Key> {
 		pq = (Key[]) new Object[size+1];
 		for(int i = 0; i < size; pq[i+1] = a[i++]);
 		for(int i = size>>1; i > 0; sink(i--));
+		shift = 0;
 	}
 	
 	/**
@@ -119,9 +174,69 @@ public class BinMinPQ<Key> implements Iterable<Key> {
      */
 	public void insert(Key key) {
 		if (key == null) throw new IllegalArgumentException("Can't insert a null key");
+		if (shift != 0) {
+			int i = next(last);
+			if (i >= pq.length) resize(i<<1);
+			pq[last = i] = key;
+			size++;
+			swimBlocked(i);
+			modCount++;
+			return;
+		}
 		if (size+1 == pq.length) resize(size<<1);
 		pq[++size] = key;
 		swim(size);
+		modCount++;
+	}
+	
+	/**
+     * Adds the keys of the array to the priority queue.
+     * See insertAll(Collection).
+     * Worst case is O(m*log(n)), m being the number of keys added, and O(m) if m is larger than the heap
+     * 
+     * @param a an array of keys to add to the priority queue
+     * 
+     * @throws java.util.IllegalArgumentException if one of the keys is null
+     */
+	public void insertAll(Key[] a) {
+		insertAll(Arrays.asList(a));
+	}
+	
+	/**
+     * Adds the keys of the collection to the priority queue.
+     * The keys are appended to the heap at once. A batch no larger than the heap is then swum key by key,
+     * a random key only swims up a constant number of levels on average. A larger batch is merged by
+     * heapifying the subtrees which hold the new keys, from the bottom up, as the constructor does for a whole array.
+     * Swimming is faster on random keys whatever the size of the batch : the heapify path is there for the
+     * O(m) bound, which a batch of keys smaller than the heap, in descending order, would break by swimming
+     * each of them up to the root. The same rule holds for every layout.
+     * If one of the keys is null, none is added.
+     * Worst case is O(m*log(n)), m being the number of keys added, and O(m) if m is larger than the heap
+     * 
+     * @param c a collection of keys to add to the priority queue
+     * 
+     * @throws java.util.IllegalArgumentException if one of the keys is null
+     */
+	public void insertAll(Collection<? extends Key> c) {
+		if (shift != 0) {
+			insertAllBlocked(c);
+			return;
+		}
+		int m = c.size(), end = size;
+		if (size+m+1 >= pq.length) resize(Math.max(size+m+1, size<<1));
+		for (Key key : c) {
+			if (key == null) {
+				while (end > size) pq[end--] = null;
+				throw new IllegalArgumentException("Can't insert a null key");
+			}
+			pq[++end] = key;
+		}
+		int first = size+1;
+		m = end-size;
+		size = end;
+		if (m <= size-m)	for (int i = first; i <= end; swim(i++));
+		else 				heapify(first, end);
+		modCount++;
 	}
 	
 	/**
@@ -135,14 +250,100 @@ public class BinMinPQ<Key> implements Iterable<Key> {
 	public Key delMin() {
 		if (isEmpty()) throw new NoSuchElementException("Priority Queue is empty");
 		Key k = pq[1];
+		if (shift != 0) {
+			delMinBlocked();
+			if (size != 0 && last <= (pq.length-1)>>2) resize(last<<1);
+			modCount++;
+			return k;
+		}
 		pq[1] = pq[size];
 		pq[size--] = null;
 		int leaf = sinkAll(1);
 		swim(leaf);
 		if (size == (pq.length-1)>>2 && size != 0) resize(size<<1);
+		modCount++;
+		return k;
+	}
+	
+	/**
+     * Removes the k smallest keys on the priority queue and adds them to the collection,
+     * in ascending order.
+     * The keys are removed by a loop of delete-the-minimum which shrinks the array only once at the end.
+     * If the batch is a large part of the queue, the array is sorted instead : the k first keys are removed,
+     * and the others, once moved to the front, still form a heap.
+     * Worst case is O(k*log(n)), or O(n*log(n)) when the array is sorted
+     * 
+     * @param k the number of keys to remove
+     * @param out the collection the keys are added to
+     * 
+     * @return the number of keys removed, k or the size of the queue if it is smaller
+     * 
+     * @throws java.util.IllegalArgumentException if k < 0
+     */
+	public int delMin(int k, Collection<? super Key> out) {
+		if (k < 0) throw new IllegalArgumentException("Number of keys must not be negative");
+		k = Math.min(k, size);
+		if (k == 0) return 0;
+		if (shift != 0) {
+			if (k >= size>>SORT_SHIFT) sortBlocked(k, out);
+			else for (int i = 0; i < k; i++) {
+				out.add(pq[1]);
+				delMinBlocked();
+			}
+			if (size != 0 && last <= (pq.length-1)>>2) resize(last<<1);
+			modCount++;
+			return k;
+		}
+		if (k >= size>>SORT_SHIFT) {
+			Arrays.sort(pq, 1, size+1, comp);
+			for (int i = 1; i <= k; out.add(pq[i++]));
+			System.arraycopy(pq, k+1, pq, 1, size-k);
+			Arrays.fill(pq, size-k+1, size+1, null);
+			size -= k;
+		} else {
+			for (int i = 0; i < k; i++) {
+				out.add(pq[1]);
+				pq[1] = pq[size];
+				pq[size--] = null;
+				swim(sinkAll(1));
+			}
+		}
+		if (size != 0 && size <= (pq.length-1)>>2) resize(size<<1);
+		modCount++;
 		return k;
 	}
 	
+	/**
+     * Removes all the keys on the priority queue and adds them to the collection,
+     * in ascending order.
+     * Worst case is O(n*log(n))
+     * 
+     * @param out the collection the keys are added to
+     * 
+     * @return the number of keys removed
+     */
+	public int drainTo(Collection<? super Key> out) {
+		return delMin(size, out);
+	}
+	
+	/**
+     * Returns the k smallest keys on the priority queue, in ascending order.
+     * The priority queue is not modified.
+     * Worst case is O(k*log(k))
+     * 
+     * @param k the number of keys wanted
+     * 
+     * @return the k smallest keys, or all the keys if there are less than k
+     * 
+     * @throws java.util.IllegalArgumentException if k < 0
+     */
+	public List<Key> topK(int k) {
+		if (k < 0) throw new IllegalArgumentException("Number of keys must not be negative");
+		List<Key> top = new ArrayList<>(Math.min(k, size));
+		for (Iterator<Key> it = iterator(); top.size() < k && it.hasNext(); top.add(it.next()));
+		return top;
+	}
+	
 	/*******************************
 	 * General helper function
 	 ******************************/
@@ -182,6 +383,16 @@ public class BinMinPQ<Key> implements Iterable<Key> {
 		pq[i] = k;
 	}
 	
+	//Restores the heap above the keys appended at pq[first..last] : the parents of the new keys are sunk,
+	//then their parents, and so on up to the root. Every position is sunk after its children,
+	//so the cost is linear in the number of new keys, plus the height of the heap squared.
+	private void heapify(int first, int last) {
+		for (int lo = first>>1, hi = last>>1; hi > 0; lo >>= 1, hi >>= 1) {
+			for (int i = hi; i >= Math.max(lo, 1); sink(i--));
+			if (lo <= 1) break;
+		}
+	}
+	
 	//Moves a key all the way to a leaf and returns the index of the leaf
 	private int sinkAll(int i) {
 		int j;
@@ -196,6 +407,130 @@ public class BinMinPQ<Key> implements Iterable<Key> {
 		return i;
 	}
 	
+	/*******************************
+	 * Functions for the blocked layout
+	 ******************************/
+	
+	//Number of bits of the offset of a slot in its block : blocks of 16 references
+	//make a cache line of 64 bytes, blocks of 1024 references a page of 4 KB (with compressed references)
+	private static int blockShift(HeapLayout layout) {
+		switch (layout) {
+		case CACHE_LINE:	return 4;
+		case PAGE:			return 10;
+		default:			return 0;
+		}
+	}
+	
+	//Index of the parent of i : in the same block, unless i is one of the two roots of its block,
+	//whose parent is a leaf of an earlier block
+	private int parent(int i) {
+		int o = i & ((1<<shift)-1);
+		if (o >= 4 || i == o) return i-((o+1)>>1);
+		int b = (i>>>shift)-1, half = 1<<(shift-1);
+		return ((b>>>(shift-1))<<shift) + half + (b & (half-1));
+	}
+	
+	//Index of the first child of i, the second one is the next index : in the same block,
+	//unless i is a leaf of its block, whose children are the two roots of a later block
+	//(Integer.MAX_VALUE if that block is beyond any array)
+	private int firstChild(int i) {
+		int o = i & ((1<<shift)-1), half = 1<<(shift-1);
+		if (o < half) return i+o;
+		long c = ((long) (((i>>>shift)<<(shift-1)) + o-half+1) << shift) + 2;
+		return (c > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) c;
+	}
+	
+	//Index of the slot following i, the first two slots of every block but the first one are not used
+	private int next(int i) {
+		return (((i+1) & ((1<<shift)-1)) == 0) ? i+3 : i+1;
+	}
+	
+	//Index of the slot preceding i
+	private int prev(int i) {
+		return ((i & ((1<<shift)-1)) == 2 && i >>> shift != 0) ? i-3 : i-1;
+	}
+	
+	//Index of the slot of the k-th key, the keys filling the blocks in order
+	private int slot(int k) {
+		int first = (1<<shift)-1;
+		if (k <= first) return k;
+		k -= first+1;
+		return (1 + k/(first-1) << shift) + 2 + k%(first-1);
+	}
+	
+	//Moves a key upward
+	private void swimBlocked(int i) {
+		Key k = pq[i];
+		for (int p; i > 1 && comp.compare(k, pq[p = parent(i)]) < 0; i = p) pq[i] = pq[p];
+		pq[i] = k;
+	}
+	
+	//Moves a key downward
+	private void sinkBlocked(int i) {
+		Key k = pq[i];
+		for (int j; (j = firstChild(i)) <= last; i = j) {
+			if (j < last && comp.compare(pq[j], pq[j+1]) > 0) j++;
+			if (comp.compare(pq[j], k) > 0) break;
+			pq[i] = pq[j];
+		}
+		pq[i] = k;
+	}
+	
+	//Moves a key all the way to a leaf and returns the index of the leaf
+	private int sinkAllBlocked(int i) {
+		Key k = pq[i];
+		for (int j; (j = firstChild(i)) <= last; i = j) {
+			if (j < last && comp.compare(pq[j], pq[j+1]) > 0) j++;
+			pq[i] = pq[j];
+		}
+		pq[i] = k;
+		return i;
+	}
+	
+	//Removes the root, without resizing the array
+	private void delMinBlocked() {
+		pq[1] = pq[last];
+		pq[last] = null;
+		last = prev(last);
+		if (--size != 0) swimBlocked(sinkAllBlocked(1));
+	}
+	
+	//Appends the keys and swims them, or rebuilds the whole heap if the batch is larger than the heap :
+	//the ancestors of the new keys are spread over the blocks, so they are not heapified apart
+	private void insertAllBlocked(Collection<? extends Key> c) {
+		int end = slot(size+c.size()), i = last, m = 0;
+		if (end >= pq.length) resize(Math.max(end, last<<1));
+		for (Key key : c) {
+			if (key == null) {
+				for (; i > last; i = prev(i)) pq[i] = null;
+				throw new IllegalArgumentException("Can't insert a null key");
+			}
+			pq[i = next(i)] = key;
+			m++;
+		}
+		int first = next(last);
+		last = i;
+		size += m;
+		if (m <= size-m)	for (int j = first; j <= last; j = next(j)) swimBlocked(j);
+		else 				for (int j = last; j > 0; j = prev(j)) sinkBlocked(j);
+		modCount++;
+	}
+	
+	//Deletes the k smallest keys by sorting all of them, then lays the other keys
+	//in the blocks in ascending order, which is a heap
+	private void sortBlocked(int k, Collection<? super Key> out) {
+		Key[] a = (Key[]) new Object[size];
+		for (int i = 1, j = 0; j < size; i = next(i), j++) {
+			a[j] = pq[i];
+			pq[i] = null;
+		}
+		Arrays.sort(a, comp);
+		for (int j = 0; j < k; out.add(a[j++]));
+		last = 0;
+		for (int j = k; j < size; j++) pq[last = next(last)] = a[j];
+		size -= k;
+	}
+	
 	/*******************************
 	 * Function for maintaining the array of keys
 	 ******************************/
@@ -203,7 +538,8 @@ public class BinMinPQ<Key> implements Iterable<Key> {
 	//Resizes the array to the specified capacity
 	private void resize(int n) {
 		Key[] array = (Key[]) new Object[n+1];
-		for(int i = 1; i <= size; array[i] = pq[i++]);
+		int end = (shift == 0) ? size : last;
+		for(int i = 1; i <= end; array[i] = pq[i++]);
 		pq = array;
 	}
 	
@@ -214,9 +550,11 @@ public class BinMinPQ<Key> implements Iterable<Key> {
 	/**
      * Returns an iterator that iterates over the keys on the priority queue
      * in ascending order.
+     * The iterator reads the heap without copying it, it fails with a
+     * ConcurrentModificationException if the priority queue is modified.
      * The iterator doesn't implement remove() since it's optional.
-     * iterator() : Worst case is O(n)
-	 * next() : 	Worst case is O(log(n))
+     * iterator() : Worst case is O(1)
+	 * next() : 	Worst case is O(log(k)), k being the number of keys already returned
 	 * hasNext() : 	Worst case is O(1)
 	 * 
      * @return an iterator that iterates over the keys in ascending order
@@ -226,25 +564,72 @@ public class BinMinPQ<Key> implements Iterable<Key> {
 		return new MyIterator();
 	}
 	
+	//Walks the heap through a frontier : a binary heap of the positions whose parent
+	//has already been returned, ordered by their keys. Returning a key replaces its position
+	//by its children, so the frontier holds at most one more position than the keys returned.
 	private class MyIterator implements Iterator<Key> {
-		BinMinPQ<Key> copy;
+		private int[] frontier = new int[16];	//Frontier, from index 1
+		private int n;							//Number of positions in the frontier
+		private final int expected = modCount;	//Number of modifications of the queue when created
 		
 		public MyIterator() {
-			copy = new BinMinPQ<>(comp);
-			Key[] array = (Key[]) new Object[size+1];
-			for (int i = 1; i <= size; array[i] = pq[i++]);
-			copy.size = size;
-			copy.pq = array;
+			if (size > 0) frontier[++n] = 1;
 		}
 		
 		@Override
 		public boolean hasNext() {
-			return !copy.isEmpty();
+			return n > 0;
 		}
 		
 		@Override
 		public Key next() {
-			return copy.delMin();
+			if (modCount != expected) throw new ConcurrentModificationException();
+			if (n == 0) throw new NoSuchElementException();
+			int p = frontier[1], child = (shift == 0) ? p<<1 : firstChild(p), end = (shift == 0) ? size : last;
+			if (child <= end) {
+				frontier[1] = child;
+				down(1);
+				if (child < end) up(add(child+1));
+			} else {
+				frontier[1] = frontier[n--];
+				if (n > 0) down(1);
+			}
+			return pq[p];
+		}
+		
+		//Appends a position to the frontier and returns its index
+		private int add(int p) {
+			if (n+1 == frontier.length) frontier = Arrays.copyOf(frontier, frontier.length<<1);
+			frontier[++n] = p;
+			return n;
+		}
+		
+		//Is the key at frontier[i] lower than the key at frontier[j] ?
+		private boolean less(int i, int j) {
+			return comp.compare(pq[frontier[i]], pq[frontier[j]]) < 0;
+		}
+		
+		private void up(int i) {
+			while (i > 1 && less(i, i>>1)) {
+				exch(i, i>>1);
+				i >>= 1;
+			}
+		}
+		
+		private void down(int i) {
+			while (i<<1 <= n) {
+				int j = i<<1;
+				if (j < n && less(j+1, j)) j++;
+				if (!less(j, i)) break;
+				exch(i, j);
+				i = j;
+			}
+		}
+		
+		private void exch(int i, int j) {
+			int swap = frontier[i];
+			frontier[i] = frontier[j];
+			frontier[j] = swap;
 		}
 		
 		@Override
@@ -253,6 +638,86 @@ public class BinMinPQ<Key> implements Iterable<Key> {
 		}
 	}
 	
+	/*******************************
+	 * Unordered traversal
+	 ******************************/
+	
+	/**
+	 * Performs the given action on each key of the priority queue, in no particular order.
+	 * The priority queue must not be modified by the action.
+	 * Worst case is O(n)
+	 * 
+	 * @param action the action to perform on each key
+	 */
+	public void forEachUnordered(Consumer<? super Key> action) {
+		if (shift != 0) for (int i = 1; i <= last; i = next(i)) action.accept(pq[i]);
+		else 			for (int i = 1; i <= size; i++) action.accept(pq[i]);
+	}
+	
+	/**
+	 * Returns a spliterator over the keys on the priority queue, in no particular order.
+	 * Unlike the iterator, it doesn't report ORDERED : it reads the array of the heap,
+	 * and splits it in halves, to be used by a parallel stream.
+	 * In the blocked layout, it skips the unused slots and is not SIZED.
+	 * The priority queue must not be modified while the spliterator is in use.
+	 * Worst case is O(1)
+	 * 
+	 * @return a spliterator over the keys, in no particular order
+	 */
+	@Override
+	public Spliterator<Key> spliterator() {
+		if (shift != 0) return new BlockSpliterator(1, last+1);
+		return Spliterators.spliterator(pq, 1, size+1, Spliterator.NONNULL);
+	}
+	
+	//Spliterator of the blocked layout : scans pq[lo..hi) and skips the unused slots,
+	//which are null
+	private class BlockSpliterator implements Spliterator<Key> {
+		private int lo;							//Next slot to scan
+		private final int hi;					//End of the range, excluded
+		
+		BlockSpliterator(int lo, int hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super Key> action) {
+			for (; lo < hi; lo++) {
+				if (pq[lo] != null) {
+					action.accept(pq[lo++]);
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		@Override
+		public void forEachRemaining(Consumer<? super Key> action) {
+			for (; lo < hi; lo++) if (pq[lo] != null) action.accept(pq[lo]);
+		}
+		
+		@Override
+		public Spliterator<Key> trySplit() {
+			int mid = (lo + hi) >>> 1;
+			if (mid <= lo) return null;
+			Spliterator<Key> prefix = new BlockSpliterator(lo, mid);
+			lo = mid;
+			return prefix;
+		}
+		
+		//The number of slots left to scan, an upper bound of the number of keys left
+		@Override
+		public long estimateSize() {
+			return hi - lo;
+		}
+		
+		@Override
+		public int characteristics() {
+			return Spliterator.NONNULL;
+		}
+	}
+	
 	/***************************
 	 * Comparator
 	 **************************/
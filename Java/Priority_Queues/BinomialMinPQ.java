@@ -1,6 +1,11 @@
 import java.util.Iterator;
 import java.util.Comparator;
 import java.util.NoSuchElementException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /**
  *  The BinomialMinPQ class represents a priority queue of generic keys.
@@ -16,6 +21,11 @@ import java.util.NoSuchElementException;
  *  The insert, delete-the-minimum, union, min-key
  *  and size operations take logarithmic time.
  *  The is-empty and constructor operations take constant time.
+ *  forEachUnordered and the spliterator walk the trees with an explicit stack, in linear time.
+ * 
+ *  The priority queue can be built with a pool of Nodes : the Nodes of the deleted keys
+ *  are kept in a free list, up to the capacity of the pool, and reused by the next inserts.
+ *  Once the pool is warm, a sequence of inserts and delete-the-minimum allocates nothing.
  * 
  *  @author Tristan Claverie
  */
@@ -23,6 +33,9 @@ import java.util.NoSuchElementException;
 public class BinomialMinPQ<Key> implements Iterable<Key> {
 	private Node head;    				//head of the list of roots
 	private final Comparator<Key> comp;	//Comparator over the keys
+	private final int poolCapacity;		//Maximum number of free Nodes kept
+	private Node free;					//Free list of Nodes, linked by sibling
+	private int freeSize;				//Number of Nodes in the free list
 	
 	//Represents a Node of a Binomial Tree
 	private class Node {
@@ -37,6 +50,7 @@ public class BinomialMinPQ<Key> implements Iterable<Key> {
 	 */
 	public BinomialMinPQ() {
 		comp = new MyComparator();
+		poolCapacity = 0;
 	}
 	
 	/**
@@ -46,6 +60,32 @@ public class BinomialMinPQ<Key> implements Iterable<Key> {
 	 */
 	public BinomialMinPQ(Comparator<Key> C) {
 		comp = C;
+		poolCapacity = 0;
+	}
+	
+	/**
+	 * Initializes an empty priority queue with a pool of Nodes
+	 * Worst case is O(1)
+	 * @param poolCapacity maximum number of free Nodes kept for reuse
+	 * @throws java.lang.IllegalArgumentException if poolCapacity < 0
+	 */
+	public BinomialMinPQ(int poolCapacity) {
+		if (poolCapacity < 0) throw new IllegalArgumentException("Capacity of the pool should be 0 or over");
+		comp = new MyComparator();
+		this.poolCapacity = poolCapacity;
+	}
+	
+	/**
+	 * Initializes an empty priority queue using the given Comparator and a pool of Nodes
+	 * Worst case is O(1)
+	 * @param C a comparator over the keys
+	 * @param poolCapacity maximum number of free Nodes kept for reuse
+	 * @throws java.lang.IllegalArgumentException if poolCapacity < 0
+	 */
+	public BinomialMinPQ(Comparator<Key> C, int poolCapacity) {
+		if (poolCapacity < 0) throw new IllegalArgumentException("Capacity of the pool should be 0 or over");
+		comp = C;
+		this.poolCapacity = poolCapacity;
 	}
 	
 	/**
@@ -55,6 +95,7 @@ public class BinomialMinPQ<Key> implements Iterable<Key> {
 	 */
 	public BinomialMinPQ(Key[] a) {
 		comp = new MyComparator();
+		poolCapacity = 0;
 		for (Key k : a) insert(k);
 	}
 	
@@ -66,6 +107,7 @@ public class BinomialMinPQ<Key> implements Iterable<Key> {
 	 */
 	public BinomialMinPQ(Comparator<Key> C, Key[] a) {
 		comp = C;
+		poolCapacity = 0;
 		for (Key k : a) insert(k);
 	}
 
@@ -100,12 +142,7 @@ public class BinomialMinPQ<Key> implements Iterable<Key> {
 	 * @param key a Key
 	 */
 	public void insert(Key key) {
-		Node x = new Node();
-		x.key = key;
-		x.order = 0;
-		BinomialMinPQ<Key> H = new BinomialMinPQ<>(); //The Comparator oh the H heap is not used
-		H.head = x;
-		this.head = this.union(H).head;
+		meld(node(key));
 	}
 
 	/**
@@ -119,7 +156,7 @@ public class BinomialMinPQ<Key> implements Iterable<Key> {
 		Node min = head;
 		Node current = head;
 		while (current.sibling != null) {
-			min = (greater(min.key, current.sibling.key)) ? current : min;
+			min = (greater(min.key, current.sibling.key)) ? current.sibling : min;
 			current = current.sibling;
 		}
 		return min.key;
@@ -144,11 +181,43 @@ public class BinomialMinPQ<Key> implements Iterable<Key> {
 				x = nextx;nextx = nextx.sibling;
 			}
 			x.sibling = prevx;
-			BinomialMinPQ<Key> H = new BinomialMinPQ<>();
-			H.head = x;
-			head = union(H).head;
+			meld(x);
 		}
-		return min.key;
+		Key key = min.key;
+		recycle(min);
+		return key;
+	}
+	
+	/**
+	 * Deletes the k smallest keys and adds them to the collection, in ascending order
+	 * A small batch is a loop of delete-the-minimum. If the batch is at least half of the queue,
+	 * the Nodes are linked in one list by a walk of the trees, their keys are copied to an array and sorted once,
+	 * the k first are deleted and the others are written back in ascending order into the Nodes left,
+	 * which are rebuilt into Binomial Trees
+	 * Worst case is O(k*log(n)), or O(n*log(n)) when the keys are sorted
+	 * @param k the number of keys to delete
+	 * @param out the collection the keys are added to
+	 * @throws java.lang.IllegalArgumentException if k < 0
+	 * @return the number of keys deleted, k or the size of the queue if it is smaller
+	 */
+	public int delMin(int k, Collection<? super Key> out) {
+		if (k < 0) throw new IllegalArgumentException("Number of keys must not be negative");
+		int n = size();
+		k = Math.min(k, n);
+		if (k == 0) return 0;
+		if (k >= n>>1) sortedDelMin(k, out);
+		else 		   for (int i = 0; i < k; i++) out.add(delMin());
+		return k;
+	}
+	
+	/**
+	 * Deletes all the keys and adds them to the collection, in ascending order
+	 * Worst case is O(n*log(n))
+	 * @param out the collection the keys are added to
+	 * @return the number of keys deleted
+	 */
+	public int drainTo(Collection<? super Key> out) {
+		return delMin(Integer.MAX_VALUE, out);
 	}
 	
 	/**
@@ -161,24 +230,7 @@ public class BinomialMinPQ<Key> implements Iterable<Key> {
 	 */
 	public BinomialMinPQ<Key> union(BinomialMinPQ<Key> heap) {
 		if (heap == null) throw new IllegalArgumentException("Cannot merge a Binomial Heap with null");
-		this.head = merge(new Node(), this.head, heap.head).sibling;
-		Node x = this.head;
-		Node prevx = null, nextx = x.sibling;
-		while (nextx != null) {
-			if (x.order < nextx.order ||
-			   (nextx.sibling != null && nextx.sibling.order == x.order)) {
-				prevx = x; x = nextx;
-			} else if (greater(nextx.key, x.key)) {
-				x.sibling = nextx.sibling;
-				link(nextx, x);
-			} else {
-				if (prevx == null) { this.head = nextx; }
-				else { prevx.sibling = nextx; }
-				link(x, nextx);
-				x = nextx;
-			}
-			nextx = x.sibling;
-		}
+		meld(heap.head);
 		return this;
 	}
 	
@@ -193,6 +245,68 @@ public class BinomialMinPQ<Key> implements Iterable<Key> {
 		return comp.compare(n, m) > 0;
 	}
 	
+	//Deletes the k smallest keys by sorting all of them : the Nodes are linked in one list and their keys sorted,
+	//the first k Nodes are recycled and the others get the other keys back in ascending order. They are then cut
+	//in runs of 1, 2, 4... Nodes, following the bits of their number, and each run is linked into a Binomial Tree
+	@SuppressWarnings("unchecked")
+	private void sortedDelMin(int k, Collection<? super Key> out) {
+		int n = size();
+		Node x = flatten(head);
+		Key[] a = (Key[]) new Object[n];
+		int i = 0;
+		for (Node y = x; y != null; y = y.sibling) a[i++] = y.key;
+		Arrays.sort(a, comp);
+		for (i = 0; i < k; i++) {
+			Node y = x.sibling;
+			out.add(a[i]);
+			recycle(x);
+			x = y;
+		}
+		for (Node y = x; y != null; y = y.sibling) y.key = a[i++];
+		head = null;
+		Node last = null;
+		for (int m = n-k, order = 0; m != 0; m >>>= 1, order++) {
+			if ((m & 1) == 0) continue;
+			Node y = x;
+			for (int j = 1; j < 1 << order; j++) y = y.sibling;
+			Node next = y.sibling;
+			y.sibling = null;
+			Node tree = binomialTree(x, order);
+			if (last == null) head = tree;
+			else 			  last.sibling = tree;
+			last = tree;
+			x = next;
+		}
+	}
+	
+	//Links all the Nodes of a list in one list by sibling : the children of each Node are spliced in after it
+	private Node flatten(Node x) {
+		for (Node y = x; y != null; y = y.sibling) {
+			y.order = 0;
+			if (y.child == null) continue;
+			Node last = y.child;
+			while (last.sibling != null) last = last.sibling;
+			last.sibling = y.sibling;
+			y.sibling = y.child;
+			y.child = null;
+		}
+		return x;
+	}
+	
+	//Links a sorted list of 2^order Nodes by pairs, until a single Binomial Tree is left :
+	//the root of each pair is the smallest Node of its part of the list, so the heap order holds
+	private Node binomialTree(Node x, int order) {
+		for (int o = 0; o < order; o++) {
+			for (Node t = x; t != null;) {
+				Node u = t.sibling, next = u.sibling;
+				link(u, t);
+				t.sibling = next;
+				t = next;
+			}
+		}
+		return x;
+	}
+	
 	//Assuming root1 holds a greater key than root2, root2 becomes the new root
 	private void link(Node root1, Node root2) {
 		root1.sibling = root2.child;
@@ -203,7 +317,7 @@ public class BinomialMinPQ<Key> implements Iterable<Key> {
 	//Deletes and return the node containing the minimum key
 	private Node eraseMin() {
 		Node min = head;
-		Node previous = new Node();
+		Node previous = null;
 		Node current = head;
 		while (current.sibling != null) {
 			if (greater(min.key, current.sibling.key)) {
@@ -212,8 +326,8 @@ public class BinomialMinPQ<Key> implements Iterable<Key> {
 			}
 			current = current.sibling;
 		}
-		previous.sibling = min.sibling;
 		if (min == head) head = min.sibling;
+		else 			 previous.sibling = min.sibling;
 		return min;
 	}
 	
@@ -221,16 +335,164 @@ public class BinomialMinPQ<Key> implements Iterable<Key> {
 	 * Functions for inserting a key in the heap
 	 *************************************************/
 	
+	//Merges a list of roots sorted by order with the roots of this heap
+	private void meld(Node h) {
+		this.head = merge(this.head, h);
+		if (this.head == null) return;
+		Node x = this.head;
+		Node prevx = null, nextx = x.sibling;
+		while (nextx != null) {
+			if (x.order < nextx.order ||
+			   (nextx.sibling != null && nextx.sibling.order == x.order)) {
+				prevx = x; x = nextx;
+			} else if (greater(nextx.key, x.key)) {
+				x.sibling = nextx.sibling;
+				link(nextx, x);
+			} else {
+				if (prevx == null) { this.head = nextx; }
+				else { prevx.sibling = nextx; }
+				link(x, nextx);
+				x = nextx;
+			}
+			nextx = x.sibling;
+		}
+	}
+	
 	//Merges two root lists into one, there can be up to 2 Binomial Trees of same order
-	private Node merge(Node h, Node x, Node y) {
-		if (x == null && y == null) return h;
-		if (x == null) 				h.sibling = merge(y, x, y.sibling);
-		else if (y == null) 		h.sibling = merge(x, x.sibling, y);
-		else if (x.order < y.order) h.sibling = merge(x, x.sibling, y);
-		else 						h.sibling = merge(y, x, y.sibling);
+	private Node merge(Node x, Node y) {
+		if (x == null) return y;
+		if (y == null) return x;
+		Node h;
+		if (x.order < y.order) { h = x; x = x.sibling; }
+		else 				   { h = y; y = y.sibling; }
+		Node last = h;
+		while (x != null && y != null) {
+			if (x.order < y.order) { last.sibling = x; x = x.sibling; }
+			else 				   { last.sibling = y; y = y.sibling; }
+			last = last.sibling;
+		}
+		last.sibling = (x == null) ? y : x;
 		return h;
 	}
 	
+	/**************************************************
+	 * Pool of Nodes
+	 *************************************************/
+	
+	//Takes a Node from the free list, or allocates one if it is empty
+	private Node node(Key key) {
+		Node x = free;
+		if (x == null) x = new Node();
+		else {
+			free = x.sibling;
+			x.sibling = null;
+			freeSize--;
+		}
+		x.key = key;
+		return x;
+	}
+	
+	//Puts a Node back in the free list, unless the pool is full
+	private void recycle(Node x) {
+		x.key = null;
+		x.child = null;
+		x.order = 0;
+		if (freeSize == poolCapacity) {
+			x.sibling = null;
+			return;
+		}
+		x.sibling = free;
+		free = x;
+		freeSize++;
+	}
+	
+	/******************************************************************
+	 * Unordered traversal
+	 *****************************************************************/
+	
+	/**
+	 * Performs the given action on each key in the priority queue, in no particular order
+	 * The trees are walked with an explicit stack, without recursion
+	 * The priority queue must not be modified by the action
+	 * Worst case is O(n)
+	 * @param action the action to perform on each key
+	 */
+	public void forEachUnordered(Consumer<? super Key> action) {
+		spliterator().forEachRemaining(action);
+	}
+	
+	/**
+	 * Gets a Spliterator over the keys in the priority queue, in no particular order
+	 * Unlike the Iterator, it does not report ORDERED : it walks the trees, and splits
+	 * by sharing the subtrees left to visit
+	 * The priority queue must not be modified while the Spliterator is in use
+	 * Worst case is O(log(n))
+	 * @return a Spliterator over the keys in the priority queue, in no particular order
+	 */
+	@Override
+	public Spliterator<Key> spliterator() {
+		NodeSpliterator walk = new NodeSpliterator(size());
+		for (Node x = head; x != null; x = x.sibling) walk.trees.push(x);
+		return walk;
+	}
+	
+	//Walks the trees with an explicit stack of the subtrees left to visit
+	private class NodeSpliterator implements Spliterator<Key> {
+		private final ArrayDeque<Node> trees = new ArrayDeque<>();	//Roots of the subtrees left to visit
+		private final ArrayDeque<Node> alone = new ArrayDeque<>();	//Nodes left to visit, whose children are already in trees
+		private long estimate;										//Estimated number of keys left
+		
+		NodeSpliterator(long estimate) {
+			this.estimate = estimate;
+		}
+		
+		//Pushes the children of a Node on the stack and returns the Node
+		private Node open(Node x) {
+			for (Node c = x.child; c != null; c = c.sibling) trees.push(c);
+			return x;
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super Key> action) {
+			Node x = alone.poll();
+			if (x == null) {
+				if (trees.isEmpty()) return false;
+				x = open(trees.pop());
+			}
+			if (estimate > 0) estimate--;
+			action.accept(x.key);
+			return true;
+		}
+		
+		@Override
+		public void forEachRemaining(Consumer<? super Key> action) {
+			for (Node x = alone.poll(); x != null; x = alone.poll()) action.accept(x.key);
+			while (!trees.isEmpty()) action.accept(open(trees.pop()).key);
+			estimate = 0;
+		}
+		
+		//Gives half of the subtrees left to a new Spliterator.
+		//A single subtree is opened first, so that its children can be shared.
+		@Override
+		public Spliterator<Key> trySplit() {
+			while (trees.size() == 1 && trees.peek().child != null) alone.push(open(trees.pop()));
+			if (trees.size() < 2) return null;
+			NodeSpliterator prefix = new NodeSpliterator(estimate >>>= 1);
+			for (int i = trees.size()>>1; i > 0; i--) prefix.trees.push(trees.pollLast());
+			return prefix;
+		}
+		
+		@Override
+		public long estimateSize() {
+			return estimate;
+		}
+		
+		@Override
+		public int characteristics() {
+			return 0;
+		}
+	}
+	
 	/******************************************************************
 	 * Iterator
 	 *****************************************************************/
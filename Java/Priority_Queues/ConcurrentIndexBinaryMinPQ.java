@@ -0,0 +1,581 @@
+package tools;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ *  The ConcurrentIndexBinaryMinPQ class represents an indexed priority queue of generic keys
+ *  which can be used by several threads at the same time.
+ *  It supports the usual insert and delete-the-minimum
+ *  operations, along with the decrease-key method.
+ *  In order to let the client refer to keys on the priority queue,
+ *  an integer between 0 and NMAX-1 is associated with each key ; the client
+ *  uses this integer to specify which key to decrease.
+ *  It also supports methods for peeking at the minimum key,
+ *  testing if the priority queue is empty, and iterating through
+ *  the keys.
+ *
+ *  This implementation uses a binary heap with one lock per slot, after Hunt, Michael,
+ *  Parthasarathy and Scott : the operations lock the slots they go through, hand over hand,
+ *  so that operations working in different parts of the heap run in parallel.
+ *  Locks are always taken from the root to the leaves, and the lock which guards the size
+ *  of the heap is taken before any slot, so no deadlock can happen.
+ *  A delete-the-minimum moves the last key to the root and sinks it, holding the lock of
+ *  the slot of the key ; an insert or a decrease-key marks the index as moving and swims it,
+ *  locking the parent then the slot of the key at each step. A swim does not stop below a
+ *  parent which is moving itself, but waits for it to settle, so that the heap order holds
+ *  once no operation is running.
+ *  As in Hunt et al., the n-th slot filled is taken in bit-reversed order within its level,
+ *  so that consecutive inserts swim up through different subtrees rather than the same path.
+ *  The insert, delete-the-minimum and decrease-key operations take logarithmic time,
+ *  plus the time spent waiting for the locks.
+ *  The is-empty, size, contains and key-of operations take constant time and do not lock.
+ *  The min-index and min-key operations lock the root once the inserts and decrease-keys
+ *  in progress are done, see below.
+ *
+ *  The contains and key-of operations are linearizable : an index is on the queue from
+ *  the moment its key is placed in the heap until it is deleted, and a decrease-key takes
+ *  effect for key-of when the key is written.
+ *  The min-index and min-key operations are linearizable too. Every insert and decrease-key
+ *  registers in one of several padded counters, picked by thread, for its whole duration.
+ *  A min-index raises a flag which holds back the new inserts and decrease-keys, waits
+ *  for the counters to drop to zero, and reads the root and its key under the lock of the root :
+ *  no key is swimming up then, so the root holds the minimum, and no delete-the-minimum
+ *  can remove it before its key is read. The inserts and decrease-keys only write to the counter
+ *  of their thread, and read the flag, so they do not contend with each other.
+ *  The delete-the-minimum operation does not wait : it may miss a key which is still
+ *  swimming up, as the heap of Hunt et al. does. Once the threads are done, the heap is
+ *  exactly ordered again.
+ *
+ *  @author Tristan Claverie
+ */
+@SuppressWarnings("unchecked")
+public class ConcurrentIndexBinaryMinPQ<Key> implements Iterable<Integer> {
+	private static final int DECREASED = 0, ABSENT = 1, NOT_LOWER = 2;	//Outcomes of decrease()
+
+	private final int NMAX;							//Maximum number of elements in the queue
+	private volatile int N;							//Number of elements, written under heapLock
+	private final ReentrantLock heapLock;			//Guards N, taken before any slot
+	private final ReentrantLock[] locks;			//locks[k] guards the slot k
+	private final int[] pq;							//pq[k] is the index in slot k, -1 if empty
+	private final AtomicIntegerArray qp;			//Slot of each index, 0 while inserted, -1 if absent
+	private final AtomicReferenceArray<Key> keys;	//Key of each index, null if absent
+	private final boolean[] moving;					//Whether an index is swimming up
+	private final int[] gen;						//Number of times each index was inserted
+	private final Comparator<Key> comp;				//Comparator over the keys
+	private final AtomicIntegerArray updates;		//Inserts and decrease-keys in progress, one counter per stripe
+	private final int stripes;						//Number of counters, a power of 2
+	private final Lock minLock;						//Lets one min-index drain the updates at a time
+	private volatile boolean draining;				//Whether a min-index holds back the updates
+	private static final int PAD = 16;				//Counters are 16 ints (64 bytes) apart
+
+	/**
+     * Initializes an empty indexed priority queue with indices between 0 and NMAX-1
+     * Worst case is O(n)
+     *
+     * @param NMAX number of keys in the priority queue, index from 0 to NMAX-1
+     *
+     * @throws java.util.IllegalArgumentException if NMAX <= 0
+     */
+	public ConcurrentIndexBinaryMinPQ(int NMAX) {
+		this(NMAX, null);
+	}
+
+	/**
+     * Initializes an empty indexed priority queue with indices between 0 and NMAX-1
+     * Worst case is O(n)
+     *
+     * @param NMAX number of keys in the priority queue, index from 0 to NMAX-1
+     * @param C a Comparator over the keys
+     *
+     * @throws java.util.IllegalArgumentException if NMAX <= 0
+     */
+	public ConcurrentIndexBinaryMinPQ(int NMAX, Comparator<Key> C) {
+		if (NMAX <= 0) throw new IllegalArgumentException("Size of the Priority Queue must be stricly superior to 0");
+		this.NMAX = NMAX;
+		comp = (C == null) ? new MyComparator() : C;
+		heapLock = new ReentrantLock();
+		//The slots of the deepest level are filled in bit-reversed order, the level is allocated whole
+		int slots = Integer.highestOneBit(NMAX) << 1;
+		locks = new ReentrantLock[slots];
+		pq = new int[slots];
+		qp = new AtomicIntegerArray(NMAX);
+		keys = new AtomicReferenceArray<Key>(NMAX);
+		moving = new boolean[NMAX];
+		gen = new int[NMAX];
+		stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors()*2 - 1) << 1;
+		updates = new AtomicIntegerArray(stripes*PAD);
+		minLock = new ReentrantLock();
+		for (int k = 0; k < slots; k++) {
+			locks[k] = new ReentrantLock();
+			pq[k] = -1;
+		}
+		for (int i = 0; i < NMAX; i++) qp.set(i, -1);
+	}
+
+	/**
+	 * Number of elements currently on the priority queue
+	 * Worst case is O(1)
+	 *
+	 * @return the number of elements on the priority queue
+	 */
+	public int size() {
+		return N;
+	}
+
+	/**
+	 * Whether the priority queue is empty
+	 * Worst case is O(1)
+	 *
+	 * @return true if the priority queue is empty, false if not
+	 */
+	public boolean isEmpty() {
+		return N == 0;
+	}
+
+	/**
+	 * Does the priority queue contains the index i ?
+	 * Worst case is O(1)
+	 *
+	 * @param i an index
+	 *
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 *
+	 * @return true if i is on the priority queue, false if not
+	 */
+	public boolean contains(int i) {
+		if (i < 0 || i >= NMAX) throw new IndexOutOfBoundsException("Given index not in range");
+		return keys.get(i) != null;
+	}
+
+	/**
+	 * Get the key associated with index i
+	 * Worst case is O(1)
+	 *
+	 * @param i an index
+	 *
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.util.NoSuchElementException if the index is not in the queue
+	 *
+	 * @return the key associated with index i
+	 */
+	public Key keyOf(int i) {
+		if (i < 0 || i >= NMAX) throw new IndexOutOfBoundsException("Given index not in range");
+		Key key = keys.get(i);
+		if (key == null) throw new NoSuchElementException("Given index is not in the queue");
+		return key;
+	}
+
+	/**
+	 * Get the index associated with the minimum key
+	 * The inserts and decrease-keys in progress are completed first
+	 * Worst case is O(threads), plus the time the updates in progress take to complete
+	 *
+	 * @throws java.util.NoSuchElementException if the priority queue is empty
+	 *
+	 * @return the index associated with the minimum key
+	 */
+	public int minIndex() {
+		drainRoot();
+		try {
+			if (pq[1] == -1) throw new NoSuchElementException("Priority Queue is empty");
+			return pq[1];
+		} finally {
+			releaseRoot();
+		}
+	}
+
+	/**
+	 * Get the minimum key currently in the queue
+	 * The inserts and decrease-keys in progress are completed first
+	 * Worst case is O(threads), plus the time the updates in progress take to complete
+	 *
+	 * @throws java.util.NoSuchElementException if the priority queue is empty
+	 *
+	 * @return the minimum key currently in the priority queue
+	 */
+	public Key minKey() {
+		drainRoot();
+		try {
+			if (pq[1] == -1) throw new NoSuchElementException("Priority Queue is empty");
+			return keys.get(pq[1]);
+		} finally {
+			releaseRoot();
+		}
+	}
+
+	/**
+	 * Associates a key with an index
+	 * Worst case is O(log(n))
+	 *
+	 * @param i an index
+	 * @param key a Key associated with i
+	 *
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.util.IllegalArgumentException if the index is already in the queue
+	 * @throws java.util.IllegalArgumentException if the key is null
+	 */
+	public void insert(int i, Key key) {
+		if (i < 0 || i >= NMAX) throw new IndexOutOfBoundsException("Given index not in range");
+		if (key == null) throw new IllegalArgumentException("Given key must not be null");
+		int stripe = enter();
+		try {
+			if (!qp.compareAndSet(i, -1, 0)) throw new IllegalArgumentException("Index already in the Priority Queue");
+			add(i, key);
+		} finally {
+			exit(stripe);
+		}
+	}
+
+	/**
+	 * Decreases the key associated with index i to the given key
+	 * Worst case is O(log(n))
+	 *
+	 * @param i an index
+	 * @param key the key to associate with i
+	 *
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.util.NoSuchElementException if the index has no key associated with
+	 * @throws java.util.IllegalArgumentException if the given key is greater than the current key
+	 * @throws java.util.IllegalArgumentException if the key is null
+	 */
+	public void decreaseKey(int i, Key key) {
+		if (i < 0 || i >= NMAX) throw new IndexOutOfBoundsException("Index not in range");
+		if (key == null) throw new IllegalArgumentException("Key must not be null");
+		if (keys.get(i) == null) throw new NoSuchElementException("Index not in the Priority Queue");
+		int status;
+		int stripe = enter();
+		try {
+			status = decrease(i, key, true);
+		} finally {
+			exit(stripe);
+		}
+		if (status == ABSENT) throw new NoSuchElementException("Index not in the Priority Queue");
+		if (status == NOT_LOWER) throw new IllegalArgumentException("Key should be stricly lower than the exisiting ont when calling decreaseKey()");
+	}
+
+	/**
+	 * Associates a key with an index if the index is not in the queue,
+	 * or decreases its key if the given key is lower than the current one.
+	 * This is the operation of a parallel shortest path search relaxing an edge,
+	 * it can not fail when several threads relax the same index.
+	 * Worst case is O(log(n))
+	 *
+	 * @param i an index
+	 * @param key the key to associate with i
+	 *
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.util.IllegalArgumentException if the key is null
+	 *
+	 * @return true if the key was inserted or decreased, false if the current key is lower or equal
+	 */
+	public boolean insertOrDecreaseKey(int i, Key key) {
+		if (i < 0 || i >= NMAX) throw new IndexOutOfBoundsException("Index not in range");
+		if (key == null) throw new IllegalArgumentException("Key must not be null");
+		int stripe = enter();
+		try {
+			while (true) {
+				if (qp.compareAndSet(i, -1, 0)) {
+					add(i, key);
+					return true;
+				}
+				Key current = keys.get(i);
+				if (current != null && comp.compare(key, current) >= 0) return false;
+				int status = decrease(i, key, false);
+				if (status != ABSENT) return status == DECREASED;
+			}
+		} finally {
+			exit(stripe);
+		}
+	}
+
+	/**
+	 * Deletes the minimum key
+	 * Worst case is O(log(n))
+	 *
+	 * @throws java.util.NoSuchElementException if the priority queue is empty
+	 *
+	 * @return the index associated with the minimum key
+	 */
+	public int delMin() {
+		heapLock.lock();
+		int bottom = N;
+		if (bottom == 0) {
+			heapLock.unlock();
+			throw new NoSuchElementException("Priority Queue is empty");
+		}
+		N = bottom-1;
+		int b = slot(bottom);
+		locks[1].lock();
+		if (b != 1) locks[b].lock();
+		heapLock.unlock();
+		int min = pq[1];
+		if (b != 1) {
+			int last = pq[b];
+			pq[b] = -1;
+			pq[1] = last;
+			qp.set(last, 1);
+			locks[b].unlock();
+		} else {
+			pq[1] = -1;
+		}
+		moving[min] = false;
+		gen[min]++;
+		keys.set(min, null);
+		qp.set(min, -1);
+		sink(1);
+		return min;
+	}
+
+	/*************************************
+	 * General helper functions
+	 ************************************/
+
+	private boolean less(int i, int j) {
+		return comp.compare(keys.get(i), keys.get(j)) < 0;
+	}
+
+	//Slot of the n-th key of the heap : within a level, the slots are taken in bit-reversed order
+	//(1, 3, 2 on the level of 2 and 3... 4, 6, 5, 7 on the next one), so that the left child
+	//of a slot is always taken before the right one
+	private static int slot(int n) {
+		int level = 31 - Integer.numberOfLeadingZeros(n);
+		if (level == 0) return 1;
+		return (1 << level) | (Integer.reverse(n) >>> (32-level));
+	}
+
+	//Places a claimed index in a new slot at the bottom and swims it
+	private void add(int i, Key key) {
+		heapLock.lock();
+		int k = slot(++N);
+		locks[k].lock();
+		heapLock.unlock();
+		keys.set(i, key);
+		pq[k] = i;
+		qp.set(i, k);
+		moving[i] = true;
+		int g = ++gen[i];
+		locks[k].unlock();
+		swim(i, g);
+	}
+
+	//Lowers the key of an index which is on the queue, and swims it unless it is already swimming
+	//Equal keys are accepted only when allowEqual is true
+	private int decrease(int i, Key key, boolean allowEqual) {
+		while (true) {
+			int k = qp.get(i);
+			if (k == -1) return ABSENT;
+			if (k == 0) {
+				Thread.yield();
+				continue;
+			}
+			locks[k].lock();
+			if (pq[k] != i) {
+				locks[k].unlock();
+				continue;
+			}
+			int cmp = comp.compare(key, keys.get(i));
+			if (cmp > 0 || (!allowEqual && cmp == 0)) {
+				locks[k].unlock();
+				return NOT_LOWER;
+			}
+			keys.set(i, key);
+			if (moving[i]) {
+				locks[k].unlock();
+				return DECREASED;
+			}
+			moving[i] = true;
+			int g = gen[i];
+			locks[k].unlock();
+			swim(i, g);
+			return DECREASED;
+		}
+	}
+
+	/*************************************
+	 * Functions for moving upward and downward
+	 ************************************/
+
+	//Moves the index i upward, as long as it has not been deleted and inserted again
+	private void swim(int i, int g) {
+		while (true) {
+			int k = qp.get(i);
+			if (k <= 0) return;
+			int parent = k>>1;
+			if (parent > 0) locks[parent].lock();
+			locks[k].lock();
+			if (pq[k] != i) {
+				unlock(parent, k);
+				continue;
+			}
+			if (gen[i] != g) {
+				unlock(parent, k);
+				return;
+			}
+			if (parent == 0) {
+				moving[i] = false;
+				unlock(parent, k);
+				return;
+			}
+			int p = pq[parent];
+			if (moving[p]) {
+				unlock(parent, k);
+				Thread.yield();
+				continue;
+			}
+			if (less(i, p)) {
+				pq[parent] = i;
+				pq[k] = p;
+				qp.set(i, parent);
+				qp.set(p, k);
+				unlock(parent, k);
+				continue;
+			}
+			moving[i] = false;
+			unlock(parent, k);
+			return;
+		}
+	}
+
+	//Moves the key of slot k downward, the lock of slot k is held and released on return
+	private void sink(int k) {
+		while (true) {
+			int l = k<<1, r = l+1;
+			if (l >= pq.length || pq[k] == -1) break;
+			locks[l].lock();
+			if (pq[l] == -1) {
+				locks[l].unlock();
+				break;
+			}
+			int c = l;
+			if (r < pq.length) {
+				locks[r].lock();
+				if (pq[r] != -1 && less(pq[r], pq[l])) {
+					c = r;
+					locks[l].unlock();
+				} else {
+					locks[r].unlock();
+				}
+			}
+			if (!less(pq[c], pq[k])) {
+				locks[c].unlock();
+				break;
+			}
+			int x = pq[k];
+			pq[k] = pq[c];
+			pq[c] = x;
+			qp.set(pq[k], k);
+			qp.set(x, c);
+			locks[k].unlock();
+			k = c;
+		}
+		locks[k].unlock();
+	}
+
+	//Releases the locks of a parent, if any, and of its child
+	private void unlock(int parent, int k) {
+		locks[k].unlock();
+		if (parent > 0) locks[parent].unlock();
+	}
+
+	/*************************************
+	 * Linearizable minimum
+	 ************************************/
+
+	//Registers an insert or a decrease-key in the counter of the thread, once no min-index is draining
+	private int enter() {
+		int stripe = (System.identityHashCode(Thread.currentThread()) & (stripes-1)) * PAD;
+		while (true) {
+			updates.incrementAndGet(stripe);
+			if (!draining) return stripe;
+			updates.decrementAndGet(stripe);
+			while (draining) Thread.yield();
+		}
+	}
+
+	//Unregisters an insert or a decrease-key
+	private void exit(int stripe) {
+		updates.decrementAndGet(stripe);
+	}
+
+	//Holds back the new updates, waits for those in progress to complete, then locks the root :
+	//the caller reads the root and its key, which no update nor delete-the-minimum can change,
+	//then calls releaseRoot. The root lock is taken after the updates are done,
+	//so that no swim waits for it while it is drained
+	private void drainRoot() {
+		minLock.lock();
+		draining = true;
+		for (int s = 0; s < stripes*PAD; s += PAD)
+			while (updates.get(s) != 0) Thread.yield();
+		locks[1].lock();
+	}
+
+	//Unlocks the root and lets the updates held back by drainRoot run
+	private void releaseRoot() {
+		locks[1].unlock();
+		draining = false;
+		minLock.unlock();
+	}
+
+	/*************************************
+	 * Iterator
+	 ************************************/
+
+	/**
+	 * Get an Iterator over the indexes in the priority queue in ascending order
+	 * The queue is copied while every slot is locked, so the Iterator
+	 * reflects the queue as it was at some point during the call to iterator()
+	 * The Iterator does not implement the remove() method
+	 * iterator() : Worst case is O(n*log(n))
+	 * next() : 	Worst case is O(1)
+	 * hasNext() : 	Worst case is O(1)
+	 *
+	 * @return an Iterator over the indexes in the priority queue in ascending order
+	 */
+	@Override
+	public Iterator<Integer> iterator() {
+		heapLock.lock();
+		int n = N;
+		for (int j = 1; j <= n; j++) locks[slot(j)].lock();
+		heapLock.unlock();
+		final Integer[] order = new Integer[n];
+		final Key[] copy = (Key[]) new Object[n];
+		try {
+			for (int j = 1; j <= n; j++) {
+				order[j-1] = pq[slot(j)];
+				copy[j-1] = keys.get(pq[slot(j)]);
+			}
+		} finally {
+			for (int j = n; j >= 1; j--) locks[slot(j)].unlock();
+		}
+		Integer[] slots = new Integer[n];
+		for (int k = 0; k < n; k++) slots[k] = k;
+		Arrays.sort(slots, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer x, Integer y) {
+				return comp.compare(copy[x], copy[y]);
+			}
+		});
+		for (int k = 0; k < n; k++) slots[k] = order[slots[k]];
+		return Arrays.asList(slots).iterator();
+	}
+
+	/***************************
+	 * Comparator
+	 **************************/
+
+	//default Comparator
+	private class MyComparator implements Comparator<Key> {
+		@Override
+		public int compare(Key key1, Key key2) {
+			return ((Comparable<Key>)key1).compareTo(key2);
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package tools;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  Checks the min-index and min-key operations of ConcurrentIndexBinaryMinPQ against delete-the-minimum :
+ *  alone, minIndex and minKey must name the index delMin deletes next and its key,
+ *  and while another thread deletes and inserts back, minKey must never be null
+ *  and minIndex must always be a valid index.
+ *  Throws an AssertionError on the first mismatch.
+ *
+ *  Usage : java tools.ConcurrentIndexBinaryMinPQTest
+ *
+ *  @author Tristan Claverie
+ */
+public class ConcurrentIndexBinaryMinPQTest {
+
+	private static void check(boolean condition, String message) {
+		if (!condition) throw new AssertionError(message);
+	}
+
+	//minIndex and minKey name the key delMin deletes next
+	private static void sequential() {
+		ConcurrentIndexBinaryMinPQ<Integer> pq = new ConcurrentIndexBinaryMinPQ<Integer>(10);
+		pq.insert(7, 1);
+		pq.insert(3, 5);
+		check(pq.minIndex() == 7, "minIndex should be 7, was " + pq.minIndex());
+		check(pq.minKey() == 1, "minKey should be 1, was " + pq.minKey());
+		check(pq.delMin() == 7, "delMin should delete 7");
+		check(pq.minIndex() == 3, "minIndex should be 3, was " + pq.minIndex());
+
+		Random rnd = new Random(42);
+		for (int run = 0; run < 200; run++) {
+			int n = 1 + rnd.nextInt(500);
+			pq = new ConcurrentIndexBinaryMinPQ<Integer>(n);
+			for (int k = 0; k < 2*n; k++) pq.insertOrDecreaseKey(rnd.nextInt(n), rnd.nextInt(1000));
+			while (!pq.isEmpty()) {
+				int i = pq.minIndex();
+				Integer key = pq.minKey();
+				check(key.equals(pq.keyOf(i)), "minKey " + key + " is not the key of minIndex " + i);
+				check(pq.delMin() == i, "delMin does not delete minIndex " + i);
+			}
+			try {
+				pq.minIndex();
+				check(false, "minIndex on an empty queue should throw");
+			} catch (NoSuchElementException e) { }
+		}
+	}
+
+	//One thread deletes the minimum and inserts it back, while another one reads the minimum
+	private static void concurrent() throws InterruptedException {
+		final int n = 1000, rounds = 200000;
+		final ConcurrentIndexBinaryMinPQ<Integer> pq = new ConcurrentIndexBinaryMinPQ<Integer>(n);
+		for (int i = 0; i < n; i++) pq.insert(i, i);
+		final AtomicInteger errors = new AtomicInteger();
+		Thread writer = new Thread() {
+			public void run() {
+				Random rnd = new Random(7);
+				for (int r = 0; r < rounds; r++) {
+					int i = pq.delMin();
+					pq.insert(i, rnd.nextInt(n));
+				}
+			}
+		};
+		writer.start();
+		while (writer.isAlive()) {
+			try {
+				int i = pq.minIndex();
+				if (i < 0 || i >= n) errors.incrementAndGet();
+				if (pq.minKey() == null) errors.incrementAndGet();
+			} catch (NoSuchElementException e) {
+				//The writer may have just deleted the only key
+			}
+		}
+		writer.join();
+		check(errors.get() == 0, errors.get() + " invalid results of minIndex or minKey");
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		sequential();
+		concurrent();
+		System.out.println("ok");
+	}
+
+}
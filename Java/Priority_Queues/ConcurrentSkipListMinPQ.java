@@ -0,0 +1,329 @@
+package tools;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  The ConcurrentSkipListMinPQ class represents a priority queue of generic keys
+ *  which can be used by several threads at the same time.
+ *  It supports the usual insert and delete-the-minimum
+ *  operations, along with methods for peeking at the minimum key,
+ *  testing if the priority queue is empty, and iterating through
+ *  the keys.
+ *
+ *  This implementation uses a lock-free skiplist (Herlihy and Shavit) ordered by key,
+ *  and the delete-the-minimum of Lotan and Shavit :
+ *  a thread walks the bottom level and claims the first node which is not already taken
+ *  with a compare-and-set on a flag, then removes it from the skiplist.
+ *  No lock is ever taken : a thread delayed in the middle of an operation
+ *  does not prevent the others from making progress.
+ *  No memory location is written by every operation either : the size is a LongAdder,
+ *  and the equal keys are ordered by a counter of the inserting thread, then by its number.
+ *  The equal keys inserted by one thread come out in insertion order, those inserted by
+ *  different threads in no particular order.
+ *  The insert and delete-the-minimum operations take expected logarithmic time,
+ *  plus the number of nodes being removed concurrently in the case of delete-the-minimum.
+ *  The min operation takes constant expected time, plus the number of nodes being removed.
+ *  The size and is-empty operations take constant time.
+ *
+ *  Every key inserted is returned by exactly one delete-the-minimum.
+ *  The insert operation is linearizable, the delete-the-minimum operation is quiescently
+ *  consistent : it may miss a smaller key inserted while it was running, as in Lotan and Shavit.
+ *  The min-key, size and is-empty operations give a value which was correct at some point
+ *  during the call, the iterator is weakly consistent : it never throws
+ *  ConcurrentModificationException and may or may not reflect the concurrent updates.
+ *
+ *  @author Tristan Claverie
+ */
+@SuppressWarnings("unchecked")
+public class ConcurrentSkipListMinPQ<Key> implements Iterable<Key> {
+	private static final int MAX_LEVEL = 31;	// Highest level of a node
+
+	private final Node head;					// Sentinel lower than every key
+	private final Node tail;					// Sentinel greater than every key
+	private final LongAdder size;				// Number of keys currently on the queue
+	private final AtomicInteger top;			// Highest level used by a node
+	private final Comparator<Key> comp;		// A Comparator over the keys
+
+	/**
+	 * Constructs an empty Priority Queue
+	 * Worst case is O(1)
+	 */
+	public ConcurrentSkipListMinPQ() {
+		this(null);
+	}
+
+	/**
+	 * Constructs an empty Priority Queue with the given Comparator
+	 * Worst case is O(1)
+	 *
+	 * @param C a Comparator over the keys
+	 */
+	public ConcurrentSkipListMinPQ(Comparator<Key> C) {
+		comp = (C == null) ? new MyComparator() : C;
+		size = new LongAdder();
+		top = new AtomicInteger();
+		head = new Node(null, Long.MIN_VALUE, 0, MAX_LEVEL);
+		tail = new Node(null, Long.MAX_VALUE, 0, MAX_LEVEL);
+		for (int i = 0; i <= MAX_LEVEL; i++) {
+			tail.next[i] = new AtomicMarkableReference<Node>(null, false);
+			head.next[i] = new AtomicMarkableReference<Node>(tail, false);
+		}
+	}
+
+	/**
+     * Is the priority queue empty?
+     * Worst case is O(1)
+     *
+     * @return true if the priority queue is empty; false otherwise
+     */
+	public boolean isEmpty() {
+		return size.sum() <= 0;
+	}
+
+	/**
+     * Returns the number of keys on the priority queue.
+     * Worst case is O(p), p being the number of threads which updated the size
+     *
+     * @return the number of keys on the priority queue
+     */
+	public int size() {
+		return (int) Math.max(0, size.sum());
+	}
+
+	/**
+     * Returns a smallest key on the priority queue.
+     * Expected worst case is O(1), plus the number of keys being deleted concurrently
+     *
+     * @return a smallest key on the priority queue
+     *
+     * @throws java.util.NoSuchElementException if priority queue is empty
+     */
+	public Key minKey() {
+		for (Node x = head.next[0].getReference(); x != tail; x = x.next[0].getReference()) {
+			if (!x.taken.get()) return x.key;
+		}
+		throw new NoSuchElementException("Priority Queue is empty");
+	}
+
+	/**
+     * Adds a new key to the priority queue.
+     * Expected worst case is O(log(n))
+     *
+     * @param key the key to add to the priority queue
+     *
+     * @throws java.util.IllegalArgumentException if the key is null
+     */
+	public void insert(Key key) {
+		if (key == null) throw new IllegalArgumentException("Can't insert a null key");
+		long[] tick = TICKS.get();
+		Node x = new Node(key, tick[0]++, tick[1], randomLevel());
+		Node[] preds = levels(x.level);
+		Node[] succs = levels(x.level);
+		for (int t = top.get(); t < x.level && !top.compareAndSet(t, x.level); t = top.get());
+		//Links the node at the bottom level, it is on the queue from then on
+		do {
+			find(x, preds, succs);
+			for (int i = 0; i <= x.level; i++) {
+				if (x.next[i] == null) x.next[i] = new AtomicMarkableReference<Node>(succs[i], false);
+				else 				   x.next[i].set(succs[i], false);
+			}
+		} while (!preds[0].next[0].compareAndSet(succs[0], x, false, false));
+		size.increment();
+		//Links the upper levels, unless the node is already being removed
+		for (int i = 1; i <= x.level; i++) {
+			while (true) {
+				Node succ = succs[i];
+				boolean[] marked = new boolean[1];
+				Node next = x.next[i].get(marked);
+				if (marked[0]) return;
+				if (next != succ && !x.next[i].compareAndSet(next, succ, false, false)) return;
+				if (preds[i].next[i].compareAndSet(succ, x, false, false)) break;
+				find(x, preds, succs);
+			}
+		}
+	}
+
+	/**
+     * Removes and returns a smallest key on the priority queue.
+     * Expected worst case is O(log(n)), plus the number of keys being deleted concurrently
+     *
+     * @return the smallest key on the priority queue
+     *
+     * @throws java.util.NoSuchElementException if the priority queue is empty
+     */
+	public Key delMin() {
+		for (Node x = head.next[0].getReference(); x != tail; x = x.next[0].getReference()) {
+			if (!x.taken.get() && x.taken.compareAndSet(false, true)) {
+				size.decrement();
+				remove(x);
+				return x.key;
+			}
+		}
+		throw new NoSuchElementException("Priority Queue is empty");
+	}
+
+	/*******************************
+	 * Skiplist
+	 ******************************/
+
+	//Node of the skiplist, next[i] is marked when the node is removed from level i
+	//The links are created by insert, once the successors are known
+	private class Node {
+		final Key key;
+		final long seq;
+		final long thread;
+		final int level;
+		final AtomicMarkableReference<Node>[] next;
+		final AtomicBoolean taken = new AtomicBoolean();
+
+		@SuppressWarnings("rawtypes")
+		Node(Key key, long seq, long thread, int level) {
+			this.key = key;
+			this.seq = seq;
+			this.thread = thread;
+			this.level = level;
+			next = (AtomicMarkableReference<Node>[]) new AtomicMarkableReference[level+1];
+		}
+	}
+
+	//Insertion counter and number of each thread, they order the equal keys without a shared counter
+	private static final AtomicLong THREADS = new AtomicLong();
+	private static final ThreadLocal<long[]> TICKS = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[] { 0, THREADS.getAndIncrement() };
+		}
+	};
+
+	//Is node x before node y ?
+	private boolean less(Node x, Node y) {
+		if (x == head || y == tail) return x != y;
+		if (x == tail || y == head) return false;
+		int cmp = comp.compare(x.key, y.key);
+		if (cmp != 0) return cmp < 0;
+		return x.seq < y.seq || (x.seq == y.seq && x.thread < y.thread);
+	}
+
+	//Fills preds and succs with the nodes surrounding x at the levels they can hold,
+	//unlinking the marked nodes met on the way
+	private void find(Node x, Node[] preds, Node[] succs) {
+		boolean[] marked = new boolean[1];
+		retry:
+		while (true) {
+			Node pred = head;
+			for (int i = top.get(); i >= 0; i--) {
+				Node curr = pred.next[i].getReference();
+				while (true) {
+					Node succ = curr.next[i].get(marked);
+					while (marked[0]) {
+						if (!pred.next[i].compareAndSet(curr, succ, false, false)) continue retry;
+						curr = succ;
+						succ = curr.next[i].get(marked);
+					}
+					if (!less(curr, x)) break;
+					pred = curr;
+					curr = succ;
+				}
+				if (preds != null && i < preds.length) {
+					preds[i] = pred;
+					succs[i] = curr;
+				}
+			}
+			return;
+		}
+	}
+
+	//Marks every level of a taken node, from top to bottom, and unlinks it
+	private void remove(Node x) {
+		boolean[] marked = new boolean[1];
+		for (int i = x.level; i >= 0; i--) {
+			Node succ = x.next[i].get(marked);
+			while (!marked[0]) {
+				x.next[i].compareAndSet(succ, succ, false, true);
+				succ = x.next[i].get(marked);
+			}
+		}
+		find(x, null, null);
+	}
+
+	//An array holding one node per level, up to the given level
+	@SuppressWarnings("rawtypes")
+	private Node[] levels(int level) {
+		return (Node[]) new ConcurrentSkipListMinPQ.Node[level+1];
+	}
+
+	//Geometric level, half the nodes of a level are in the level above
+	private static int randomLevel() {
+		return Integer.numberOfTrailingZeros(ThreadLocalRandom.current().nextInt() | (1 << MAX_LEVEL));
+	}
+
+	/*******************************
+	 * Iterator
+	 ******************************/
+
+	/**
+     * Returns an iterator that iterates over the keys on the priority queue
+     * in ascending order.
+     * The iterator is weakly consistent, it reads the skiplist without copying it.
+     * The iterator doesn't implement remove() since it's optional.
+     * iterator() : Worst case is O(1)
+	 * next() : 	Worst case is O(1), plus the number of keys being deleted
+	 * hasNext() : 	Worst case is O(1), plus the number of keys being deleted
+	 *
+     * @return an iterator that iterates over the keys in ascending order
+     */
+	@Override
+	public Iterator<Key> iterator() {
+		return new MyIterator();
+	}
+
+	private class MyIterator implements Iterator<Key> {
+		Node current = head;
+
+		//Skips the taken nodes
+		private Node nextNode() {
+			Node x = current.next[0].getReference();
+			while (x != tail && x.taken.get()) x = x.next[0].getReference();
+			return x;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return nextNode() != tail;
+		}
+
+		@Override
+		public Key next() {
+			Node x = nextNode();
+			if (x == tail) throw new NoSuchElementException();
+			current = x;
+			return x.key;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/***************************
+	 * Comparator
+	 **************************/
+
+	//default Comparator
+	private class MyComparator implements Comparator<Key> {
+		@Override
+		public int compare(Key key1, Key key2) {
+			return ((Comparable<Key>)key1).compareTo(key2);
+		}
+	}
+
+}
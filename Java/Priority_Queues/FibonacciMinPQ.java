@@ -1,6 +1,10 @@
+import java.util.Collection;
 import java.util.Iterator;
-import java.util.HashMap;
 import java.util.NoSuchElementException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 import java.util.Comparator;
 
 
@@ -17,6 +21,11 @@ import java.util.Comparator;
  *  This implementation uses a Fibonacci heap.
  *  The delete-the-minimum operation takes amortized logarithmic time.
  *  The insert, min-key, is-empty, size, union and constructor take constant time.
+ *  forEachUnordered and the spliterator walk the trees with an explicit stack, in linear time.
+ *
+ *  The priority queue can be built with a pool of Nodes : the Nodes of the deleted keys
+ *  are kept in a free list, up to the capacity of the pool, and reused by the next inserts.
+ *  Once the pool is warm, a sequence of inserts and delete-the-minimum allocates nothing.
  *
  *  @author Tristan Claverie
  */
@@ -25,7 +34,12 @@ public class FibonacciMinPQ<Key> implements Iterable<Key> {
 	private Node min;					//Minimum Node of the root list
 	private int size;					//Number of keys in the heap
 	private final Comparator<Key> comp;	//Comparator over the keys
-	private HashMap<Integer, Node> table = new HashMap<>(); //Used for the consolidate operation
+	private Node[] table = orderTable(1);	//Roots indexed by order, used for the consolidate operation
+	private int tableLimit;				//Largest number of keys whose orders fit in the table
+	private static final double LOG_PHI = Math.log((1 + Math.sqrt(5)) / 2);
+	private final int poolCapacity;		//Maximum number of free Nodes kept
+	private Node free;					//Free list of Nodes, linked by next
+	private int freeSize;				//Number of Nodes in the free list
 	
 	//Represents a Node of a tree
 	private class Node {
@@ -42,6 +56,7 @@ public class FibonacciMinPQ<Key> implements Iterable<Key> {
 	 */
 	public FibonacciMinPQ(Comparator<Key> C) {
 		comp = C;
+		poolCapacity = 0;
 	}
 	
 	/**
@@ -50,6 +65,32 @@ public class FibonacciMinPQ<Key> implements Iterable<Key> {
      */
 	public FibonacciMinPQ() {
 		comp = new MyComparator();
+		poolCapacity = 0;
+	}
+	
+	/**
+	 * Initializes an empty priority queue with a pool of Nodes
+	 * Worst case is O(1)
+	 * @param poolCapacity maximum number of free Nodes kept for reuse
+	 * @throws java.lang.IllegalArgumentException if poolCapacity < 0
+	 */
+	public FibonacciMinPQ(int poolCapacity) {
+		if (poolCapacity < 0) throw new IllegalArgumentException("Capacity of the pool should be 0 or over");
+		comp = new MyComparator();
+		this.poolCapacity = poolCapacity;
+	}
+	
+	/**
+	 * Initializes an empty priority queue with a pool of Nodes
+	 * Worst case is O(1)
+	 * @param C a Comparator over the Keys
+	 * @param poolCapacity maximum number of free Nodes kept for reuse
+	 * @throws java.lang.IllegalArgumentException if poolCapacity < 0
+	 */
+	public FibonacciMinPQ(Comparator<Key> C, int poolCapacity) {
+		if (poolCapacity < 0) throw new IllegalArgumentException("Capacity of the pool should be 0 or over");
+		comp = C;
+		this.poolCapacity = poolCapacity;
 	}
 	
 	/**
@@ -59,6 +100,7 @@ public class FibonacciMinPQ<Key> implements Iterable<Key> {
 	 */
 	public FibonacciMinPQ(Key[] a) {
 		comp = new MyComparator();
+		poolCapacity = 0;
 		for (Key k : a) insert(k);
 	}
 	
@@ -70,6 +112,7 @@ public class FibonacciMinPQ<Key> implements Iterable<Key> {
 	 */
 	public FibonacciMinPQ(Comparator<Key> C, Key[] a) {
 		comp = C;
+		poolCapacity = 0;
 		for (Key k : a) insert(k);
 	}
 
@@ -97,8 +140,7 @@ public class FibonacciMinPQ<Key> implements Iterable<Key> {
 	 * @param key a Key
 	 */
 	public void insert(Key key) {
-		Node x = new Node();
-		x.key = key;
+		Node x = node(key);
 		size++;
 		head = insert(x, head);
 		if (min == null) min = head;
@@ -124,20 +166,49 @@ public class FibonacciMinPQ<Key> implements Iterable<Key> {
 	 */
 	public Key delMin() {
 		if (isEmpty()) throw new NoSuchElementException("Priority queue is empty");
-		head = cut(min, head);
-		Node x = min.child;
-		Key key = min.key;
-		min.key = null;
-		if (x != null) {
-			head = meld(head, x);
-			min.child = null;
-		}
+		Node m = min;
+		head = cut(m, head);
+		Key key = m.key;
+		if (m.child != null) head = meld(head, m.child);
 		size--;
 		if (!isEmpty()) consolidate();
 		else 			min = null;
+		recycle(m);
 		return key;
 	}
 	
+	/**
+	 * Deletes the k smallest keys and adds them to the collection, in ascending order
+	 * A small batch is a loop of delete-the-minimum. If the batch is at least half of the queue,
+	 * the Nodes are linked in one list by a walk of the trees, their keys are copied to an array and sorted once,
+	 * the k first are deleted and the others are written back in ascending order into the Nodes left,
+	 * which become the root list
+	 * Worst case is O(k*log(n)) (amortized), or O(n*log(n)) when the keys are sorted
+	 * @param k the number of keys to delete
+	 * @param out the collection the keys are added to
+	 * @throws java.lang.IllegalArgumentException if k < 0
+	 * @return the number of keys deleted, k or the size of the queue if it is smaller
+	 */
+	public int delMin(int k, Collection<? super Key> out) {
+		if (k < 0) throw new IllegalArgumentException("Number of keys must not be negative");
+		int n = size;
+		k = Math.min(k, n);
+		if (k == 0) return 0;
+		if (k >= n>>1) sortedDelMin(k, out);
+		else 		   for (int i = 0; i < k; i++) out.add(delMin());
+		return k;
+	}
+	
+	/**
+	 * Deletes all the keys and adds them to the collection, in ascending order
+	 * Worst case is O(n*log(n))
+	 * @param out the collection the keys are added to
+	 * @return the number of keys deleted
+	 */
+	public int drainTo(Collection<? super Key> out) {
+		return delMin(size, out);
+	}
+	
 	/**
 	 * Merges two heaps together
 	 * This operation is destructive
@@ -163,46 +234,135 @@ public class FibonacciMinPQ<Key> implements Iterable<Key> {
 		return comp.compare(n,m) > 0;
 	}
 	
+	//Deletes the k smallest keys by sorting all of them : the Nodes are linked in one list and their keys sorted,
+	//the first k Nodes are recycled and the others get the other keys back in ascending order,
+	//and become the root list, as if the keys were inserted one by one
+	@SuppressWarnings("unchecked")
+	private void sortedDelMin(int k, Collection<? super Key> out) {
+		Node x = flatten(head);
+		Key[] a = (Key[]) new Object[size];
+		int i = 0;
+		for (Node y = x; y != null; y = y.next) a[i++] = y.key;
+		Arrays.sort(a, comp);
+		for (i = 0; i < k; i++) {
+			Node y = x.next;
+			out.add(a[i]);
+			recycle(x);
+			x = y;
+		}
+		size -= k;
+		head = x;
+		min = x;
+		if (x == null) return;
+		Node last = x;
+		x.key = a[i++];
+		for (Node y = x.next; y != null; y = y.next) {
+			y.key = a[i++];
+			y.prev = last;
+			last = y;
+		}
+		last.next = x;
+		x.prev = last;
+	}
+	
+	//Links all the Nodes of a root list in one list by next : the children of each Node are spliced in after it
+	private Node flatten(Node x) {
+		x.prev.next = null;
+		for (Node y = x; y != null; y = y.next) {
+			y.order = 0;
+			Node c = y.child;
+			if (c == null) continue;
+			c.prev.next = y.next;
+			y.next = c;
+			y.child = null;
+		}
+		return x;
+	}
+	
 	//Assuming root1 holds a greater key than root2, root2 becomes the new root
 	private void link(Node root1, Node root2) {
 		root2.child = insert(root1, root2.child);
 		root2.order++;
 	}
 	
+	/*************************************
+	 * Pool of Nodes
+	 ************************************/
+	
+	//Takes a Node from the free list, or allocates one if it is empty
+	private Node node(Key key) {
+		Node x = free;
+		if (x == null) x = new Node();
+		else {
+			free = x.next;
+			x.next = null;
+			freeSize--;
+		}
+		x.key = key;
+		return x;
+	}
+	
+	//Puts a Node back in the free list, unless the pool is full
+	private void recycle(Node x) {
+		x.key = null;
+		x.child = null;
+		x.prev = null;
+		x.order = 0;
+		if (freeSize == poolCapacity) {
+			x.next = null;
+			return;
+		}
+		x.next = free;
+		free = x;
+		freeSize++;
+	}
+	
 	/*************************************
 	 * Function for consolidating all trees in the root list
 	 ************************************/
 	
+	//Creates a table for the orders of a heap of count keys, and records how many keys it can hold :
+	//a tree of order k has at least phi^k Nodes, so the orders of count keys are at most log-phi(count)
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Node[] orderTable(int count) {
+		int length = (int) (Math.log(count) / LOG_PHI) + 2;
+		tableLimit = (int) Math.min(Math.exp((length-1) * LOG_PHI), Integer.MAX_VALUE);
+		return (Node[]) new FibonacciMinPQ.Node[length];
+	}
+
 	//Coalesce the roots, thus reshapes the tree
+	//The orders are bounded by log-phi(n) : the table is sized to that bound when the heap outgrows it,
+	//so it is reallocated a logarithmic number of times, and consolidating allocates nothing otherwise
 	private void consolidate() {
-		table.clear();
+		if (size > tableLimit) table = orderTable(size);
 		Node x = head;
 		int maxOrder = 0;
-		min = head;
-		Node y = null; Node z = null;
+		Node y = null, z = null;
 		do {
 			y = x;
 			x = x.next;
-			z = table.get(y.order);
+			z = table[y.order];
 			while (z != null) {
-				table.remove(y.order);
+				table[y.order] = null;
 				if (greater(y.key, z.key)) {
 					link(y, z);
 					y = z;
 				} else {
 					link(z, y);
 				}
-				z = table.get(y.order);
+				z = table[y.order];
 			}
-			table.put(y.order, y);
+			table[y.order] = y;
 			if (y.order > maxOrder) maxOrder = y.order;
 		} while (x != head);
 		head = null;
-		for (Node n : table.values()) {
-			if (n != null) {
-				min = greater(min.key, n.key) ? n : min;
-				head = insert(n, head);
-			}
+		min = null;
+		for (int i = 0; i <= maxOrder; i++) {
+			Node n = table[i];
+			if (n == null) continue;
+			table[i] = null;
+			if (min == null || greater(min.key, n.key)) min = n;
+			head = insert(n, head);
 		}
 	}
 	
@@ -252,6 +412,95 @@ public class FibonacciMinPQ<Key> implements Iterable<Key> {
 		return x;
 	}
 	
+	/*************************************
+	 * Unordered traversal
+	 ************************************/
+	
+	/**
+	 * Performs the given action on each key in the priority queue, in no particular order
+	 * The trees are walked with an explicit stack, without recursion
+	 * The priority queue must not be modified by the action
+	 * Worst case is O(n)
+	 * @param action the action to perform on each key
+	 */
+	public void forEachUnordered(Consumer<? super Key> action) {
+		spliterator().forEachRemaining(action);
+	}
+	
+	/**
+	 * Gets a Spliterator over the Keys in the priority queue, in no particular order
+	 * Unlike the Iterator, it does not report ORDERED : it walks the trees, and splits
+	 * by sharing the subtrees left to visit
+	 * The priority queue must not be modified while the Spliterator is in use
+	 * Worst case is O(n)
+	 * @return a Spliterator over the Keys in the priority queue, in no particular order
+	 */
+	@Override
+	public Spliterator<Key> spliterator() {
+		NodeSpliterator walk = new NodeSpliterator(size);
+		Node x = head;
+		if (x != null) do { walk.trees.push(x); x = x.next; } while (x != head);
+		return walk;
+	}
+	
+	//Walks the trees with an explicit stack of the subtrees left to visit
+	private class NodeSpliterator implements Spliterator<Key> {
+		private final ArrayDeque<Node> trees = new ArrayDeque<>();	//Roots of the subtrees left to visit
+		private final ArrayDeque<Node> alone = new ArrayDeque<>();	//Nodes left to visit, whose children are already in trees
+		private long estimate;										//Estimated number of keys left
+		
+		NodeSpliterator(long estimate) {
+			this.estimate = estimate;
+		}
+		
+		//Pushes the children of a Node on the stack and returns the Node
+		private Node open(Node x) {
+			Node c = x.child;
+			if (c != null) do { trees.push(c); c = c.next; } while (c != x.child);
+			return x;
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super Key> action) {
+			Node x = alone.poll();
+			if (x == null) {
+				if (trees.isEmpty()) return false;
+				x = open(trees.pop());
+			}
+			if (estimate > 0) estimate--;
+			action.accept(x.key);
+			return true;
+		}
+		
+		@Override
+		public void forEachRemaining(Consumer<? super Key> action) {
+			for (Node x = alone.poll(); x != null; x = alone.poll()) action.accept(x.key);
+			while (!trees.isEmpty()) action.accept(open(trees.pop()).key);
+			estimate = 0;
+		}
+		
+		//Gives half of the subtrees left to a new Spliterator.
+		//A single subtree is opened first, so that its children can be shared.
+		@Override
+		public Spliterator<Key> trySplit() {
+			while (trees.size() == 1 && trees.peek().child != null) alone.push(open(trees.pop()));
+			if (trees.size() < 2) return null;
+			NodeSpliterator prefix = new NodeSpliterator(estimate >>>= 1);
+			for (int i = trees.size()>>1; i > 0; i--) prefix.trees.push(trees.pollLast());
+			return prefix;
+		}
+		
+		@Override
+		public long estimateSize() {
+			return estimate;
+		}
+		
+		@Override
+		public int characteristics() {
+			return 0;
+		}
+	}
+	
 	/*************************************
 	 * Iterator
 	 ************************************/
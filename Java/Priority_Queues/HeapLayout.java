@@ -0,0 +1,25 @@
+package tools;
+
+/**
+ *  The HeapLayout enum lists the ways BinMinPQ can lay its binary heap out in its array.
+ *  It is given to BinMinPQ at construction.
+ *
+ *  IMPLICIT : the children of pq[i] are pq[2i] and pq[2i+1]. Below the first levels,
+ *  every level of a delete-the-minimum reads a new cache line, and on a large heap a new page.
+ *  CACHE_LINE : the array is cut in blocks of 16 references, 64 bytes with compressed references,
+ *  each holding two sibling subtrees of 7 keys : a path from the root reads a new cache line every 3 levels.
+ *  PAGE : the array is cut in blocks of 1024 references, 4 KB with compressed references,
+ *  each holding two sibling subtrees of 511 keys : a path from the root reads a new page every 9 levels
+ *  (Kamp's B-heap).
+ *  Java doesn't align the array on a page, so a block may straddle two pages, and the keys themselves
+ *  are objects out of the array : the blocks only keep the references together.
+ *  The navigation costs a few more operations per level, it pays for itself on heaps
+ *  much larger than the caches.
+ *
+ *  @author Tristan Claverie
+ */
+public enum HeapLayout {
+	IMPLICIT,
+	CACHE_LINE,
+	PAGE
+}
@@ -1,16 +1,23 @@
 package tools;
 
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
 
 /**
  *  The IndexBinaryMinPQ class represents an indexed priority queue of generic keys.
  *  It supports the usual insert and delete-the-minimum
  *  operations, along with delete and change-the-key 
  *  methods. In order to let the client refer to keys on the priority queue,
- *  an integer between 0 and NMAX-1 is associated with each key ; the client
+ *  a non-negative integer is associated with each key ; the client
  *  uses this integer to specify which key to delete or change.
+ *  The range of the indexes is given at construction, and grows as needed :
+ *  inserting an index out of the range doubles it, in amortized constant time.
  *  It also supports methods for peeking at the minimum key,
  *  testing if the priority queue is empty, and iterating through
  *  the keys.
@@ -26,6 +33,8 @@ import java.util.NoSuchElementException;
  *  
  *  Construction takes time proportional to the specified capacity.
  *  If an array is given, construction takes linearithmic time.
+ *  The iterator does not copy the heap : the k first indexes take time proportional to k*log(k).
+ *  forEachUnordered and the spliterator visit the indexes in the order of the array, in linear time.
  *  
  *  @author Tristan Claverie
  */
@@ -38,6 +47,7 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 	private int[] pq;						//Array representing the Priority Queue
 	private int[] qp;						//qp[pq[i]] = pq[qp[i]] = i
 	private final Comparator<Key> comp;		//Comparator over the keys
+	private int modCount;					//Number of modifications, checked by the iterators
 	
 	
 	/**
@@ -142,6 +152,23 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 		}
 	}
 	
+	/**
+	 * Makes room for the indexes between 0 and capacity-1, so that inserting them doesn't grow the arrays.
+	 * The range is at least doubled, so that a sequence of growing inserts takes amortized constant time.
+	 * Worst case is O(capacity)
+	 * 
+	 * @param capacity the number of indexes the priority queue must accept
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity <= NMAX) return;
+		int nmax = (int) Math.min(Math.max(capacity, (long) NMAX<<1), Integer.MAX_VALUE-2);
+		keys = Arrays.copyOf(keys, nmax+1);
+		pq = Arrays.copyOf(pq, nmax+1);
+		qp = Arrays.copyOf(qp, nmax+1);
+		Arrays.fill(qp, NMAX+1, nmax+1, -1);
+		NMAX = nmax;
+	}
+	
 	/**
 	 * Number of elements currently on the priority queue
 	 * Worst case is O(1)
@@ -168,13 +195,13 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 	 * 
 	 * @param i an index
 	 * 
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index is not in the queue
 	 * 
 	 * @return the key associated with index i
 	 */
 	public Key keyOf(int i) {
-		if (i < 0 || i > NMAX) throw new IndexOutOfBoundsException("Given index not in range");
+		if (i < 0) throw new IndexOutOfBoundsException("Given index not in range");
 		if (!contains(i)) throw new NoSuchElementException("Given index is not in the queue");
 		return keys[i];
 	}
@@ -211,13 +238,13 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 	 * 
 	 * @param i an index
 	 * 
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * 
 	 * @return true if i is on the priority queue, false if not
 	 */
 	public boolean contains(int i) {
-		if (i < 0 || i > NMAX) throw new IndexOutOfBoundsException("Given index not in range");
-		return keys[i] != null;
+		if (i < 0) throw new IndexOutOfBoundsException("Given index not in range");
+		return i <= NMAX && keys[i] != null;
 	}
 	
 	/**
@@ -227,18 +254,20 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 	 * @param i an index
 	 * @param key a Key associated with i
 	 * 
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.IllegalArgumentException if the index is already in the queue
 	 * @throws java.util.IllegalArgumentException if the key is null
 	 */
 	public void insert(int i, Key key) {
-		if (i < 0 || i > NMAX) throw new IndexOutOfBoundsException("Given index not in range");
+		if (i < 0) throw new IndexOutOfBoundsException("Given index not in range");
+		if (i > NMAX) ensureCapacity(i+1);
 		if (contains(i)) throw new IllegalArgumentException("Index already in the Priority Queue");
 		if (key == null) throw new IllegalArgumentException("Given key must not be null");
 		keys[i] = key;
 		qp[i] = ++N;
 		pq[N] = i;
 		swim(N, i);
+		modCount++;
 	}
 	
 	/**
@@ -258,6 +287,7 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 		swim(leaf, pq[leaf]);
 		qp[min] = -1;
 		keys[min] = null;
+		modCount++;
 		return min;
 	}
 	
@@ -267,11 +297,11 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 	 * 
 	 * @param i an index
 	 * 
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the given index has no key associated with
 	 */
 	public void delete(int i) {
-		if (i < 0 || i > NMAX) throw new IndexOutOfBoundsException("Given index not in range");
+		if (i < 0) throw new IndexOutOfBoundsException("Given index not in range");
 		if (!contains(i)) throw new NoSuchElementException("Given index not in the Priority Queue");
 		int idx = qp[i];
 		pq[idx] = pq[N--];
@@ -280,6 +310,7 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 		swim(leaf, pq[leaf]);
 		qp[i] = -1;
 		keys[i] = null;
+		modCount++;
 	}
 	
 	/**
@@ -289,18 +320,19 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 	 * @param i an index
 	 * @param key the key to associate with i
 	 * 
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index has no key associated with
 	 * @throws java.util.IllegalArgumentException if the given key is greater than the current key
 	 * @throws java.util.IllegalArgumentException if the key is null
 	 */
 	public void decreaseKey(int i, Key key) {
-		if (i < 0 || i > NMAX) throw new IndexOutOfBoundsException("Index not in range");
+		if (i < 0) throw new IndexOutOfBoundsException("Index not in range");
 		if (!contains(i)) throw new NoSuchElementException("Index not in the Priority Queue");
 		if (key == null) throw new IllegalArgumentException("Key must not be null");
 		if (comp.compare(key, keys[i]) > 0) throw new IllegalArgumentException("Key should be stricly lower than the exisiting ont when calling decreaseKey()");
 		keys[i] = key;
 		swim(qp[i], i);
+		modCount++;
 	}
 	
 	/**
@@ -310,19 +342,20 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 	 * @param i an index
 	 * @param key the key to associate with i
 	 * 
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index has no key associated with
 	 * @throws java.util.IllegalArgumentException if the given key is lower than the current key
 	 * @throws java.util.IllegalArgumentException if the key is null
 	 */
 	public void increaseKey(int i, Key key) {
-		if (i < 0 || i > NMAX) throw new IndexOutOfBoundsException("Index not in range");
+		if (i < 0) throw new IndexOutOfBoundsException("Index not in range");
 		if (!contains(i)) throw new NoSuchElementException("Index not in the Priority Queue");
 		if (key == null) throw new IllegalArgumentException("Key must not be null");
 		if (comp.compare(key, keys[i]) > 0) throw new IllegalArgumentException("Key should be stricly greater than the exisiting ont when calling increaseKey()");
 		keys[i] = key;
 		int leaf = sinkAll(qp[i], i);
 		swim(leaf, i);
+		modCount++;
 	}
 	
 	/**
@@ -332,12 +365,12 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 	 * @param i an index
 	 * @param key the key to associate with i
 	 * 
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index has no key associated with
 	 * @throws java.util.IllegalArgumentException if the key is null
 	 */
 	public void changeKey(int i, Key key) {
-		if (i < 0 || i > NMAX) throw new IndexOutOfBoundsException("Index not in range");
+		if (i < 0) throw new IndexOutOfBoundsException("Index not in range");
 		if (!contains(i)) throw new  NoSuchElementException("Index not in the Priority Queue");
 		if (key == null) throw new IllegalArgumentException("Key must not be null");
 		Key k = keys[i];
@@ -345,6 +378,26 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 		int leaf = qp[i];
 		if (comp.compare(key, k) > 0) leaf = sinkAll(qp[i], i);
 		swim(leaf, pq[leaf]);
+		modCount++;
+	}
+	
+	/**
+	 * Get the indexes associated with the k smallest keys, in ascending order of keys
+	 * The priority queue is not modified
+	 * Worst case is O(k*log(k))
+	 * 
+	 * @param k the number of indexes wanted
+	 * 
+	 * @throws java.util.IllegalArgumentException if k < 0
+	 * 
+	 * @return the indexes of the k smallest keys, or all the indexes if there are less than k
+	 */
+	public int[] topK(int k) {
+		if (k < 0) throw new IllegalArgumentException("Number of indexes must not be negative");
+		int[] top = new int[Math.min(k, N)];
+		MyIterator it = new MyIterator();
+		for (int i = 0; i < top.length; i++) top[i] = it.nextIndex();
+		return top;
 	}
 	
 	/*************************************
@@ -375,7 +428,7 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 		int j = 0;
 		while(i <= N>>1) {
 			j = i<<1;
-			if (greater(pq[j], pq[j+1])) j++;
+			if (j < N && greater(pq[j], pq[j+1])) j++;
 			pq[i] = pq[j];
 			qp[pq[i]] = i;
 			i = j;
@@ -391,9 +444,11 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 	
 	/**
 	 * Get an Iterator over the indexes in the priority queue in ascending order
+	 * The Iterator reads the heap without copying it, it fails with a
+	 * ConcurrentModificationException if the priority queue is modified
 	 * The Iterator does not implement the remove() method
-	 * iterator() : Worst case is O(n)
-	 * next() : 	Worst case is O(log(n))
+	 * iterator() : Worst case is O(1)
+	 * next() : 	Worst case is O(log(k)), k being the number of indexes already returned
 	 * hasNext() : 	Worst case is O(1)
 	 * 
 	 * @return an Iterator over the indexes in the priority queue in ascending order
@@ -403,34 +458,77 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 		return new MyIterator();
 	}
 	
+	//Walks the heap through a frontier : a binary heap of the positions whose parent
+	//has already been returned, ordered by their keys. Returning an index replaces its position
+	//by its children, so the frontier holds at most one more position than the indexes returned.
 	private class MyIterator implements Iterator<Integer> {
-		IndexBinaryMinPQ<Key> copy;
+		private int[] frontier = new int[16];	//Frontier, from index 1
+		private int n;							//Number of positions in the frontier
+		private final int expected = modCount;	//Number of modifications of the queue when created
 		
-		//Constructor takes linear time
 		public MyIterator() {
-			copy = new IndexBinaryMinPQ<>(NMAX, comp);
-			copy.N = N;
-			int[] iqp = new int[N+1];
-			int[] ipq = new int[N+1];
-			Key[] ikeys = (Key[]) new Object[N+1];
-			for (int i = 0; i <= N; i++) {
-				iqp[i] = qp[i];
-				ipq[i] = pq[i];
-				ikeys[i] = keys[i];
-			}
-			copy.pq = ipq;
-			copy.qp = iqp;
-			copy.keys = ikeys;
+			if (N > 0) frontier[++n] = 1;
 		}
 		
 		@Override
 		public boolean hasNext() {
-			return !copy.isEmpty();
+			return n > 0;
 		}
 		
 		@Override
 		public Integer next() {
-			return copy.delMin();
+			return nextIndex();
+		}
+		
+		//Same as next, without boxing
+		int nextIndex() {
+			if (modCount != expected) throw new ConcurrentModificationException();
+			if (n == 0) throw new NoSuchElementException();
+			int p = frontier[1], child = p<<1;
+			if (child <= N) {
+				frontier[1] = child;
+				down(1);
+				if (child < N) up(add(child+1));
+			} else {
+				frontier[1] = frontier[n--];
+				if (n > 0) down(1);
+			}
+			return pq[p];
+		}
+		
+		//Appends a position to the frontier and returns its index
+		private int add(int p) {
+			if (n+1 == frontier.length) frontier = Arrays.copyOf(frontier, frontier.length<<1);
+			frontier[++n] = p;
+			return n;
+		}
+		
+		//Is the key at frontier[i] lower than the key at frontier[j] ?
+		private boolean less(int i, int j) {
+			return comp.compare(keys[pq[frontier[i]]], keys[pq[frontier[j]]]) < 0;
+		}
+		
+		private void up(int i) {
+			while (i > 1 && less(i, i>>1)) {
+				exch(i, i>>1);
+				i >>= 1;
+			}
+		}
+		
+		private void down(int i) {
+			while (i<<1 <= n) {
+				int j = i<<1;
+				if (j < n && less(j+1, j)) j++;
+				if (!less(j, i)) break;
+				exch(i, j);
+				i = j;
+			}
+		}
+		
+		private void exch(int i, int j) {
+			int swap = frontier[i];
+			frontier[i] = frontier[j];
+			frontier[j] = swap;
 		}
 		
 		@Override
@@ -439,6 +537,34 @@ public class IndexBinaryMinPQ<Key> implements Iterable<Integer> {
 		}
 	}
 	
+	/*************************************
+	 * Unordered traversal
+	 ************************************/
+	
+	/**
+	 * Performs the given action on each index in the priority queue, in no particular order
+	 * The priority queue must not be modified by the action
+	 * Worst case is O(n)
+	 * 
+	 * @param action the action to perform on each index
+	 */
+	public void forEachUnordered(IntConsumer action) {
+		for (int i = 1; i <= N; i++) action.accept(pq[i]);
+	}
+	
+	/**
+	 * Get a Spliterator over the indexes in the priority queue, in no particular order
+	 * Unlike the Iterator, it does not report ORDERED : it splits the array of the heap in halves
+	 * The priority queue must not be modified while the Spliterator is in use
+	 * Worst case is O(1)
+	 * 
+	 * @return a Spliterator over the indexes in the priority queue, in no particular order
+	 */
+	@Override
+	public Spliterator.OfInt spliterator() {
+		return Spliterators.spliterator(pq, 1, N+1, Spliterator.DISTINCT);
+	}
+	
 	/***************************
 	 * Comparator
 	 **************************/
@@ -1,14 +1,19 @@
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
 
 /**
  *  The IndexBinomialMinPQ class represents an indexed priority queue of generic keys.
  *  It supports the usual insert and delete-the-minimum operations,
  *  along with delete and change-the-key methods. 
  *  In order to let the client refer to keys on the priority queue,
- *  an integer between 0 and N-1 is associated with each key ; the client
+ *  a non-negative integer is associated with each key ; the client
  *  uses this integer to specify which key to delete or change.
+ *  The range of the indexes is given at construction, and grows as needed :
+ *  inserting an index out of the range doubles it, in amortized constant time.
  *  It also supports methods for peeking at the minimum key,
  *  testing if the priority queue is empty, and iterating through
  *  the keys.
@@ -19,6 +24,7 @@ import java.util.NoSuchElementException;
  *  increase-key and size operations take logarithmic time.
  *  The is-empty, min-index, min-key, and key-of operations take constant time.
  *  Construction takes time proportional to the specified capacity.
+ *  forEachUnordered and the spliterator scan the array indexed by the indexes, in time proportional to the capacity.
  *
  *  @author Tristan Claverie
  */
@@ -65,6 +71,18 @@ public class IndexBinomialMinPQ<Key> implements Iterable<Integer> {
 		this.n = N;
 	}
 
+	/**
+	 * Makes room for the indexes between 0 and capacity-1, so that inserting them doesn't grow the array.
+	 * The range is at least doubled, so that a sequence of growing inserts takes amortized constant time.
+	 * Worst case is O(capacity)
+	 * @param capacity the number of indexes the priority queue must accept
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity <= n) return;
+		n = (int) Math.min(Math.max(capacity, (long) n<<1), Integer.MAX_VALUE-8);
+		nodes = Arrays.copyOf(nodes, n);
+	}
+
 	/**
 	 * Whether the priority queue is empty
 	 * Worst case is O(1)
@@ -78,12 +96,12 @@ public class IndexBinomialMinPQ<Key> implements Iterable<Integer> {
 	 * Does the priority queue contains the index i ?
 	 * Worst case is O(1)
 	 * @param i an index
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @return true if i is on the priority queue, false if not
 	 */
 	public boolean contains(int i) {
-		if (i < 0 || i >= n) throw new IndexOutOfBoundsException();
-		else return nodes[i] != null;
+		if (i < 0) throw new IndexOutOfBoundsException();
+		else return i < n && nodes[i] != null;
 	}
 
 	/**
@@ -106,11 +124,12 @@ public class IndexBinomialMinPQ<Key> implements Iterable<Integer> {
 	 * Worst case is O(log(n))
 	 * @param i an index
 	 * @param key a Key associated with i
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.IllegalArgumentException if the index is already in the queue
 	 */
 	public void insert(int i, Key key) {
-		if (i < 0 || i >= n) throw new IndexOutOfBoundsException();
+		if (i < 0) throw new IndexOutOfBoundsException();
+		if (i >= n) ensureCapacity(i+1);
 		if (contains(i)) throw new IllegalArgumentException("Specified index is already in the queue");
 		Node<Key> x = new Node<>();
 		x.key = key;
@@ -191,13 +210,13 @@ public class IndexBinomialMinPQ<Key> implements Iterable<Integer> {
 	 * Gets the key associated with index i
 	 * Worst case is O(1)
 	 * @param i an index
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.IllegalArgumentException if the index is not in the queue
 	 * @return the key associated with index i
 	 */
 	
 	public Key keyOf(int i) {
-		if (i < 0 || i >= n) throw new IndexOutOfBoundsException();
+		if (i < 0) throw new IndexOutOfBoundsException();
 		if (!contains(i)) throw new IllegalArgumentException("Specified index is not in the queue");
 		return nodes[i].key;
 	}
@@ -207,12 +226,12 @@ public class IndexBinomialMinPQ<Key> implements Iterable<Integer> {
 	 * Worst case is O(log(n))
 	 * @param i an index
 	 * @param key the key to associate with i
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.IllegalArgumentException if the index has no key associated with
 	 */
 	
 	public void changeKey(int i, Key key) {
-		if (i < 0 || i >= n) 		throw new IndexOutOfBoundsException();
+		if (i < 0) 		throw new IndexOutOfBoundsException();
 		if (!contains(i))			throw new IllegalArgumentException("Specified index is not in the queue");
 		if (greater(nodes[i].key, key))  decreaseKey(i, key);
 		else 							 increaseKey(i, key);
@@ -223,13 +242,13 @@ public class IndexBinomialMinPQ<Key> implements Iterable<Integer> {
 	 * Worst case is O(log(n))
 	 * @param i an index
 	 * @param key the key to associate with i
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index has no key associated with
 	 * @throws java.util.IllegalArgumentException if the given key is greater than the current key
 	 */
 	
 	public void decreaseKey(int i, Key key) {
-		if (i < 0 || i >= n) 		throw new IndexOutOfBoundsException();
+		if (i < 0) 		throw new IndexOutOfBoundsException();
 		if (!contains(i))			throw new NoSuchElementException("Specified index is not in the queue");
 		if (greater(key, nodes[i].key))  throw new IllegalArgumentException("Calling with this argument would not decrease the key");
 		Node<Key> x = nodes[i];
@@ -242,13 +261,13 @@ public class IndexBinomialMinPQ<Key> implements Iterable<Integer> {
 	 * Worst case is O(log(n))
 	 * @param i an index
 	 * @param key the key to associate with i
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index has no key associated with
 	 * @throws java.util.IllegalArgumentException if the given key is lower than the current key
 	 */
 	
 	public void increaseKey(int i, Key key) {
-		if (i < 0 || i >= n) 		throw new IndexOutOfBoundsException();
+		if (i < 0) 		throw new IndexOutOfBoundsException();
 		if (!contains(i))			throw new NoSuchElementException("Specified index is not in the queue");
 		if (greater(nodes[i].key, key))  throw new IllegalArgumentException("Calling with this argument would not increase the key");
 		delete(i);
@@ -259,12 +278,12 @@ public class IndexBinomialMinPQ<Key> implements Iterable<Integer> {
 	 * Deletes the key associated the given index
 	 * Worst case is O(log(n))
 	 * @param i an index
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the given index has no key associated with
 	 */
 	
 	public void delete(int i) {
-		if (i < 0 || i >= n) 		throw new IndexOutOfBoundsException();
+		if (i < 0) 		throw new IndexOutOfBoundsException();
 		if (!contains(i))			throw new NoSuchElementException("Specified index is not in the queue");
 		toTheRoot(i);
 		Node<Key> x = erase(i);
@@ -425,6 +444,81 @@ public class IndexBinomialMinPQ<Key> implements Iterable<Integer> {
 	//but won't be used by any heap created by this constructor
 	private IndexBinomialMinPQ() {comp = null;}
 	
+	/******************************************************************
+	 * Unordered traversal
+	 *****************************************************************/
+	
+	/**
+	 * Performs the given action on each index in the priority queue, in no particular order
+	 * The indexes are found by a scan of the array indexed by the indexes
+	 * The priority queue must not be modified by the action
+	 * Worst case is O(N)
+	 * @param action the action to perform on each index
+	 */
+	public void forEachUnordered(IntConsumer action) {
+		for (int i = 0; i < n; i++) if (nodes[i] != null) action.accept(i);
+	}
+	
+	/**
+	 * Gets a Spliterator over the indexes in the priority queue, in no particular order
+	 * Unlike the Iterator, it does not report ORDERED : it scans the array indexed by the indexes,
+	 * and splits the range of indexes in halves
+	 * The priority queue must not be modified while the Spliterator is in use
+	 * Worst case is O(1)
+	 * @return a Spliterator over the indexes in the priority queue, in no particular order
+	 */
+	@Override
+	public Spliterator.OfInt spliterator() {
+		return new IndexSpliterator(0, n);
+	}
+	
+	//Scans the indexes in [lo, hi), skipping the ones which are not in the queue
+	private class IndexSpliterator implements Spliterator.OfInt {
+		private int lo;							//Next index to scan
+		private final int hi;					//End of the range, excluded
+		
+		IndexSpliterator(int lo, int hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			for (; lo < hi; lo++) {
+				if (nodes[lo] != null) {
+					action.accept(lo++);
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		@Override
+		public void forEachRemaining(IntConsumer action) {
+			for (; lo < hi; lo++) if (nodes[lo] != null) action.accept(lo);
+		}
+		
+		@Override
+		public Spliterator.OfInt trySplit() {
+			int mid = (lo + hi) >>> 1;
+			if (mid <= lo) return null;
+			Spliterator.OfInt prefix = new IndexSpliterator(lo, mid);
+			lo = mid;
+			return prefix;
+		}
+		
+		//The number of indexes left to scan, an upper bound of the number of indexes left
+		@Override
+		public long estimateSize() {
+			return hi - lo;
+		}
+		
+		@Override
+		public int characteristics() {
+			return Spliterator.DISTINCT | Spliterator.NONNULL;
+		}
+	}
+	
 	/******************************************************************
 	 * Iterator
 	 *****************************************************************/
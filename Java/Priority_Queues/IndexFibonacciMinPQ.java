@@ -1,7 +1,9 @@
 import java.util.Comparator;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.HashMap;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
 
 
 /**
@@ -9,8 +11,10 @@ import java.util.NoSuchElementException;
  *  It supports the usual insert and delete-the-minimum operations,
  *  along with delete and change-the-key methods. 
  *  In order to let the client refer to keys on the priority queue,
- *  an integer between 0 and N-1 is associated with each key ; the client
+ *  a non-negative integer is associated with each key ; the client
  *  uses this integer to specify which key to delete or change.
+ *  The range of the indexes is given at construction, and grows as needed :
+ *  inserting an index out of the range doubles it, in amortized constant time.
  *  It also supports methods for peeking at the minimum key,
  *  testing if the priority queue is empty, and iterating through
  *  the keys.
@@ -22,6 +26,7 @@ import java.util.NoSuchElementException;
  *  The decrease-key operation takes amortized constant time.
  *  The delete, increase-key, delete-the-minimum, change-key take amortized logarithmic time.
  *  Construction takes time proportional to the specified capacity
+ *  forEachUnordered and the spliterator scan the array indexed by the indexes, in time proportional to the capacity.
  *
  *  @author Tristan Claverie
  */
@@ -32,7 +37,9 @@ public class IndexFibonacciMinPQ<Key> implements Iterable<Integer> {
 	private int size;					//Number of keys in the heap
 	private int n;						//Maximum number of elements in the heap
 	private final Comparator<Key> comp; //Comparator over the keys
-	private HashMap<Integer, Node<Key>> table = new HashMap<>(); //Used for the consolidate operation
+	private Node<Key>[] table = orderTable(1);	//Roots indexed by order, used for the consolidate operation
+	private int tableLimit;				//Largest number of keys whose orders fit in the table
+	private static final double LOG_PHI = Math.log((1 + Math.sqrt(5)) / 2);
 	
 	//Represents a Node of a tree
 	private class Node<Key> {
@@ -51,7 +58,7 @@ public class IndexFibonacciMinPQ<Key> implements Iterable<Integer> {
      * @throws java.lang.IllegalArgumentException if N < 0
      */
 	public IndexFibonacciMinPQ(int N) {
-		if (n < 0) throw new IllegalArgumentException("Cannot create a priority queue of negative size");
+		if (N < 0) throw new IllegalArgumentException("Cannot create a priority queue of negative size");
 		n = N;
 		nodes = (Node<Key>[]) new Node[n];
 		comp = new MyComparator();
@@ -65,12 +72,25 @@ public class IndexFibonacciMinPQ<Key> implements Iterable<Integer> {
      * @throws java.lang.IllegalArgumentException if N < 0
      */
 	public IndexFibonacciMinPQ(Comparator<Key> C, int N) {
-		if (n < 0) throw new IllegalArgumentException("Cannot create a priority queue of negative size");
+		if (N < 0) throw new IllegalArgumentException("Cannot create a priority queue of negative size");
 		n = N;
 		nodes = (Node<Key>[]) new Node[n];
 		comp = C;
 	}
 
+	/**
+	 * Makes room for the indexes between 0 and capacity-1, so that inserting them doesn't grow the array.
+	 * The range is at least doubled, so that a sequence of growing inserts takes amortized constant time.
+	 * Worst case is O(capacity)
+	 * @param capacity the number of indexes the priority queue must accept
+	 */
+	
+	public void ensureCapacity(int capacity) {
+		if (capacity <= n) return;
+		n = (int) Math.min(Math.max(capacity, (long) n<<1), Integer.MAX_VALUE-8);
+		nodes = Arrays.copyOf(nodes, n);
+	}
+
 	/**
 	 * Whether the priority queue is empty
 	 * Worst case is O(1)
@@ -85,13 +105,13 @@ public class IndexFibonacciMinPQ<Key> implements Iterable<Integer> {
 	 * Does the priority queue contains the index i ?
 	 * Worst case is O(1)
 	 * @param i an index
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @return true if i is on the priority queue, false if not
 	 */
 	
 	public boolean contains(int i) {
-		if (i < 0 || i >= n) throw new IndexOutOfBoundsException();
-		else 				 return nodes[i] != null;
+		if (i < 0) throw new IndexOutOfBoundsException();
+		else 				 return i < n && nodes[i] != null;
 	}
 
 	/**
@@ -109,12 +129,13 @@ public class IndexFibonacciMinPQ<Key> implements Iterable<Integer> {
 	 * Worst case is O(1)
 	 * @param i an index
 	 * @param key a Key associated with i
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.IllegalArgumentException if the index is already in the queue
 	 */
 	
 	public void insert(int i, Key key) {
-		if (i < 0 || i >= n) throw new IndexOutOfBoundsException();
+		if (i < 0) throw new IndexOutOfBoundsException();
+		if (i >= n) ensureCapacity(i+1);
 		if (contains(i)) throw new IllegalArgumentException("Specified index is already in the queue");
 		Node<Key> x = new Node<>();
 		x.key = key;
@@ -182,13 +203,13 @@ public class IndexFibonacciMinPQ<Key> implements Iterable<Integer> {
 	 * Get the key associated with index i
 	 * Worst case is O(1)
 	 * @param i an index
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index is not in the queue
 	 * @return the key associated with index i
 	 */
 	
 	public Key keyOf(int i) {
-		if (i < 0 || i >= n) throw new IndexOutOfBoundsException();
+		if (i < 0) throw new IndexOutOfBoundsException();
 		if (!contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
 		return nodes[i].key;
 	}
@@ -199,12 +220,12 @@ public class IndexFibonacciMinPQ<Key> implements Iterable<Integer> {
 	 * If the given key is lower, Worst case is O(1) (amortized)
 	 * @param i an index
 	 * @param key the key to associate with i
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index has no key associated with
 	 */
 	
 	public void changeKey(int i, Key key) {
-		if (i < 0 || i >= n) 		throw new IndexOutOfBoundsException();
+		if (i < 0) 		throw new IndexOutOfBoundsException();
 		if (!contains(i))			throw new NoSuchElementException("Specified index is not in the queue");
 		if (greater(key, nodes[i].key))  increaseKey(i, key);
 		else 							 decreaseKey(i, key);
@@ -215,13 +236,13 @@ public class IndexFibonacciMinPQ<Key> implements Iterable<Integer> {
 	 * Worst case is O(1) (amortized).
 	 * @param i an index
 	 * @param key the key to associate with i
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index has no key associated with
 	 * @throws java.util.IllegalArgumentException if the given key is greater than the current key
 	 */
 	
 	public void decreaseKey(int i, Key key) {
-		if (i < 0 || i >= n) 		throw new IndexOutOfBoundsException();
+		if (i < 0) 		throw new IndexOutOfBoundsException();
 		if (!contains(i))			throw new NoSuchElementException("Specified index is not in the queue");
 		if (greater(key, nodes[i].key))  throw new IllegalArgumentException("Calling with this argument would not decrease the key");
 		Node<Key> x = nodes[i];
@@ -237,13 +258,13 @@ public class IndexFibonacciMinPQ<Key> implements Iterable<Integer> {
 	 * Worst case is O(log(n))
 	 * @param i an index
 	 * @param key the key to associate with i
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index has no key associated with
 	 * @throws java.util.IllegalArgumentException if the given key is lower than the current key
 	 */
 	
 	public void increaseKey(int i, Key key) {
-		if (i < 0 || i >= n) 		throw new IndexOutOfBoundsException();
+		if (i < 0) 		throw new IndexOutOfBoundsException();
 		if (!contains(i))			throw new NoSuchElementException("Specified index is not in the queue");
 		if (greater(nodes[i].key, key))  throw new IllegalArgumentException("Calling with this argument would not increase the key");
 		delete(i);
@@ -254,12 +275,12 @@ public class IndexFibonacciMinPQ<Key> implements Iterable<Integer> {
 	 * Deletes the key associated the given index
 	 * Worst case is O(log(n)) (amortized)
 	 * @param i an index
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the given index has no key associated with
 	 */
 	
 	public void delete(int i) {
-		if (i < 0 || i >= n) 		throw new IndexOutOfBoundsException();
+		if (i < 0) 		throw new IndexOutOfBoundsException();
 		if (!contains(i))			throw new NoSuchElementException("Specified index is not in the queue");
 		Node<Key> x = nodes[i];
 		x.key = null;				//For garbage collection
@@ -323,34 +344,47 @@ public class IndexFibonacciMinPQ<Key> implements Iterable<Integer> {
 	 * Function for consolidating all trees in the root list
 	 ************************************/
 	
+	//Creates a table for the orders of a heap of count keys, and records how many keys it can hold :
+	//a tree of order k has at least phi^k Nodes, so the orders of count keys are at most log-phi(count)
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Node<Key>[] orderTable(int count) {
+		int length = (int) (Math.log(count) / LOG_PHI) + 2;
+		tableLimit = (int) Math.min(Math.exp((length-1) * LOG_PHI), Integer.MAX_VALUE);
+		return (Node<Key>[]) new IndexFibonacciMinPQ.Node[length];
+	}
+
 	//Coalesces the roots, thus reshapes the heap
-	//Caching a HashMap improves greatly performances
+	//The orders are bounded by log-phi(n) : the table is sized to that bound when the heap outgrows it,
+	//so it is reallocated a logarithmic number of times, and consolidating allocates nothing otherwise
 	private void consolidate() {
-		table.clear();
+		if (size > tableLimit) table = orderTable(size);
 		Node<Key> x = head;
 		int maxOrder = 0;
-		min = head;
 		Node<Key> y = null, z = null;
 		do {
 			y = x;
 			x = x.next;
-			z = table.get(y.order);
+			z = table[y.order];
 			while (z != null) {
-				table.remove(y.order);
+				table[y.order] = null;
 				if (greater(y.key, z.key)) {
 					link(y, z);
 					y = z;
 				} else {
 					link(z, y);
 				}
-				z = table.get(y.order);
+				z = table[y.order];
 			}
-			table.put(y.order, y);
+			table[y.order] = y;
 			if (y.order > maxOrder) maxOrder = y.order;
 		} while (x != head);
 		head = null;
-		for (Node<Key> n : table.values()) {
-			min = greater(min.key, n.key) ? n : min;
+		min = null;
+		for (int i = 0; i <= maxOrder; i++) {
+			Node<Key> n = table[i];
+			if (n == null) continue;
+			table[i] = null;
+			if (min == null || greater(min.key, n.key)) min = n;
 			head = insert(n, head);
 		}
 	}
@@ -401,6 +435,81 @@ public class IndexFibonacciMinPQ<Key> implements Iterable<Integer> {
 		return x;
 	}
 	
+	/*************************************
+	 * Unordered traversal
+	 ************************************/
+	
+	/**
+	 * Performs the given action on each index in the priority queue, in no particular order
+	 * The indexes are found by a scan of the array indexed by the indexes
+	 * The priority queue must not be modified by the action
+	 * Worst case is O(N)
+	 * @param action the action to perform on each index
+	 */
+	public void forEachUnordered(IntConsumer action) {
+		for (int i = 0; i < n; i++) if (nodes[i] != null) action.accept(i);
+	}
+	
+	/**
+	 * Gets a Spliterator over the indexes in the priority queue, in no particular order
+	 * Unlike the Iterator, it does not report ORDERED : it scans the array indexed by the indexes,
+	 * and splits the range of indexes in halves
+	 * The priority queue must not be modified while the Spliterator is in use
+	 * Worst case is O(1)
+	 * @return a Spliterator over the indexes in the priority queue, in no particular order
+	 */
+	@Override
+	public Spliterator.OfInt spliterator() {
+		return new IndexSpliterator(0, n);
+	}
+	
+	//Scans the indexes in [lo, hi), skipping the ones which are not in the queue
+	private class IndexSpliterator implements Spliterator.OfInt {
+		private int lo;							//Next index to scan
+		private final int hi;					//End of the range, excluded
+		
+		IndexSpliterator(int lo, int hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			for (; lo < hi; lo++) {
+				if (nodes[lo] != null) {
+					action.accept(lo++);
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		@Override
+		public void forEachRemaining(IntConsumer action) {
+			for (; lo < hi; lo++) if (nodes[lo] != null) action.accept(lo);
+		}
+		
+		@Override
+		public Spliterator.OfInt trySplit() {
+			int mid = (lo + hi) >>> 1;
+			if (mid <= lo) return null;
+			Spliterator.OfInt prefix = new IndexSpliterator(lo, mid);
+			lo = mid;
+			return prefix;
+		}
+		
+		//The number of indexes left to scan, an upper bound of the number of indexes left
+		@Override
+		public long estimateSize() {
+			return hi - lo;
+		}
+		
+		@Override
+		public int characteristics() {
+			return Spliterator.DISTINCT | Spliterator.NONNULL;
+		}
+	}
+	
 	/*************************************
 	 * Iterator
 	 ************************************/
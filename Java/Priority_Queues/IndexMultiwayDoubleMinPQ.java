@@ -0,0 +1,379 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+
+/**
+ *  The IndexMultiwayDoubleMinPQ class represents an indexed priority queue of double keys.
+ *  It supports the usual insert and delete-the-minimum operations,
+ *  along with delete and change-the-key methods.
+ *  In order to let the client refer to keys on the priority queue,
+ *  a non-negative integer is associated with each key ; the client
+ *  uses this integer to specify which key to delete or change.
+ *  The range of the indexes is given at construction, and grows as needed :
+ *  inserting an index out of the range doubles it, in amortized constant time.
+ *  It also supports methods for peeking at the minimum key,
+ *  testing if the priority queue is empty, and iterating through
+ *  the keys.
+ *
+ *  This implementation is the specialization of IndexMultiwayMinPQ for primitive keys :
+ *  the keys are stored in an array of double next to the heap and its inverse,
+ *  so changing a key neither allocates nor follows a reference.
+ *  NaN is not a valid key.
+ *  For simplified notations, logarithm in base d will be referred as log-d
+ *  The delete-the-minimum, delete, change-key and increase-key operations
+ *  take time proportional to d*log-d(n)
+ *  The insert and decrease-key take time proportional to log-d(n)
+ *  The is-empty, min-index, min-key, size, contains and key-of operations take constant time.
+ *  Construction takes time proportional to the specified capacity.
+ *  forEachUnordered and the spliterator visit the indexes in the order of the array, in linear time.
+ *
+ *  The arrays used in this structure have the first d indices empty,
+ *  it apparently helps with caching effects.
+ *
+ *  @author Tristan Claverie
+ */
+
+public class IndexMultiwayDoubleMinPQ implements Iterable<Integer> {
+	private final int d;				//Dimension of the heap
+	private int n;						//Number of keys currently in the queue
+	private int nmax;					//Maximum number of items in the queue
+	private int[] pq;					//Multiway heap
+	private int[] qp;					//Inverse of pq : qp[pq[i]] = pq[qp[i]] = i
+	private double[] keys;				//keys[i] = priority of i
+
+
+	/**
+     * Initializes an empty indexed priority queue with indices between 0 and N-1
+     * Worst case is O(n)
+     * @param N number of keys in the priority queue, index from 0 to N-1
+     * @param D dimension of the heap
+     * @throws java.lang.IllegalArgumentException if N < 0
+     * @throws java.lang.IllegalArgumentException if D < 2
+     */
+	public IndexMultiwayDoubleMinPQ(int N, int D) {
+		if (N < 0) throw new IllegalArgumentException("Maximum number of elements cannot be negative");
+		if (D < 2) throw new IllegalArgumentException("Dimension should be 2 or over");
+		this.d = D;
+		nmax = N;
+		pq = new int[nmax+D];
+		qp = new int[nmax+D];
+		keys = new double[nmax+D];
+		for (int i = 0; i < nmax+D; qp[i++] = -1);
+	}
+
+	/**
+	 * Makes room for the indexes between 0 and capacity-1, so that inserting them doesn't grow the arrays.
+	 * The range is at least doubled, so that a sequence of growing inserts takes amortized constant time.
+	 * Worst case is O(capacity)
+	 * @param capacity the number of indexes the priority queue must accept
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity <= nmax) return;
+		int max = (int) Math.min(Math.max(capacity, (long) nmax<<1), Integer.MAX_VALUE-d);
+		pq = Arrays.copyOf(pq, max+d);
+		qp = Arrays.copyOf(qp, max+d);
+		keys = Arrays.copyOf(keys, max+d);
+		Arrays.fill(qp, nmax+d, max+d, -1);
+		nmax = max;
+	}
+
+	/**
+	 * Whether the priority queue is empty
+	 * Worst case is O(1)
+	 * @return true if the priority queue is empty, false if not
+	 */
+	public boolean isEmpty() {
+		return n == 0;
+	}
+
+	/**
+	 * Does the priority queue contains the index i ?
+	 * Worst case is O(1)
+	 * @param i an index
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
+	 * @return true if i is on the priority queue, false if not
+	 */
+	public boolean contains(int i) {
+		if (i < 0) throw new IndexOutOfBoundsException();
+		return i < nmax && qp[i+d] != -1;
+	}
+
+	/**
+	 * Number of elements currently on the priority queue
+	 * Worst case is O(1)
+	 * @return the number of elements on the priority queue
+	 */
+	public int size() {
+		return n;
+	}
+
+	/**
+	 * Associates a key with an index
+	 * Worst case is O(log-d(n))
+	 * @param i an index
+	 * @param key a key associated with i
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
+	 * @throws java.util.IllegalArgumentException if the index is already in the queue
+	 * @throws java.util.IllegalArgumentException if the key is NaN
+	 */
+	public void insert(int i, double key) {
+		if (i < 0) throw new IndexOutOfBoundsException();
+		if (i >= nmax) ensureCapacity(i+1);
+		if (contains(i)) throw new IllegalArgumentException("Index already there");
+		if (key != key) throw new IllegalArgumentException("Key must not be NaN");
+		keys[i+d] = key;
+		pq[n+d] = i;
+		qp[i+d] = n;
+		swim(n++);
+	}
+
+	/**
+	 * Gets the index associated with the minimum key
+	 * Worst case is O(1)
+	 * @throws java.util.NoSuchElementException if the priority queue is empty
+	 * @return the index associated with the minimum key
+	 */
+	public int minIndex() {
+		if (isEmpty()) throw new NoSuchElementException("Priority queue is empty");
+		return pq[d];
+	}
+
+	/**
+	 * Gets the minimum key currently in the queue
+	 * Worst case is O(1)
+	 * @throws java.util.NoSuchElementException if the priority queue is empty
+	 * @return the minimum key currently in the priority queue
+	 */
+	public double minKey() {
+		if (isEmpty()) throw new NoSuchElementException("Priority queue is empty");
+		return keys[pq[d]+d];
+	}
+
+	/**
+	 * Deletes the minimum key
+	 * Worst case is O(d*log-d(n))
+	 * @throws java.util.NoSuchElementException if the priority queue is empty
+	 * @return the index associated with the minimum key
+	 */
+	public int delMin() {
+		if (isEmpty()) throw new NoSuchElementException("Priority queue is empty");
+		int min = pq[d];
+		exch(0, --n);
+		sink(0);
+		qp[min+d] = -1;
+		pq[n+d] = -1;
+		return min;
+	}
+
+	/**
+	 * Gets the key associated with index i
+	 * Worst case is O(1)
+	 * @param i an index
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
+	 * @throws java.util.NoSuchElementException if the index is not in the queue
+	 * @return the key associated with index i
+	 */
+	public double keyOf(int i) {
+		if (i < 0) throw new IndexOutOfBoundsException();
+		if (! contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
+		return keys[i+d];
+	}
+
+	/**
+	 * Changes the key associated with index i to the given key
+	 * If the given key is greater, Worst case is O(d*log-d(n))
+	 * If the given key is lower,   Worst case is O(log-d(n))
+	 * @param i an index
+	 * @param key the key to associate with i
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
+	 * @throws java.util.NoSuchElementException if the index has no key associated with
+	 * @throws java.util.IllegalArgumentException if the key is NaN
+	 */
+	public void changeKey(int i, double key) {
+		if (i < 0) throw new IndexOutOfBoundsException();
+		if (! contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
+		if (key != key) throw new IllegalArgumentException("Key must not be NaN");
+		double tmp = keys[i+d];
+		keys[i+d] = key;
+		if (key <= tmp) { swim(qp[i+d]);}
+		else 			{ sink(qp[i+d]);}
+	}
+
+	/**
+	 * Decreases the key associated with index i to the given key
+	 * Worst case is O(log-d(n))
+	 * @param i an index
+	 * @param key the key to associate with i
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
+	 * @throws java.util.NoSuchElementException if the index has no key associated with
+	 * @throws java.util.IllegalArgumentException if the given key is not lower than the current key
+	 */
+	public void decreaseKey(int i, double key) {
+		if (i < 0) throw new IndexOutOfBoundsException();
+		if (! contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
+		if (!(key < keys[i+d])) throw new IllegalArgumentException("Calling with this argument would not decrease the Key");
+		keys[i+d] = key;
+		swim(qp[i+d]);
+	}
+
+	/**
+	 * Increases the key associated with index i to the given key
+	 * Worst case is O(d*log-d(n))
+	 * @param i an index
+	 * @param key the key to associate with i
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
+	 * @throws java.util.NoSuchElementException if the index has no key associated with
+	 * @throws java.util.IllegalArgumentException if the given key is not greater than the current key
+	 */
+	public void increaseKey(int i, double key) {
+		if (i < 0) throw new IndexOutOfBoundsException();
+		if (! contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
+		if (!(key > keys[i+d])) throw new IllegalArgumentException("Calling with this argument would not increase the Key");
+		keys[i+d] = key;
+		sink(qp[i+d]);
+	}
+
+	/**
+	 * Deletes the key associated to the given index
+	 * Worst case is O(d*log-d(n))
+	 * @param i an index
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
+	 * @throws java.util.NoSuchElementException if the given index has no key associated with
+	 */
+	public void delete(int i) {
+		if (i < 0) throw new IndexOutOfBoundsException();
+		if (! contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
+		int idx = qp[i+d];
+		exch(idx, --n);
+		swim(idx);
+		sink(idx);
+		qp[i+d] = -1;
+	}
+
+	/***************************
+	 * General helper functions
+	 **************************/
+
+	//Compares two keys
+	private boolean greater(int i, int j) {
+		return keys[pq[i+d]+d] > keys[pq[j+d]+d];
+	}
+
+	//Exchanges two keys
+	private void exch(int x, int y) {
+		int i = x+d, j = y+d;
+		int swap = pq[i];
+		pq[i] = pq[j];
+		pq[j] = swap;
+		qp[pq[i]+d] = x;
+		qp[pq[j]+d] = y;
+	}
+
+	/***************************
+	 * Functions for moving upward or downward
+	 **************************/
+
+	//Moves upward
+	private void swim(int i) {
+		while (i > 0 && greater((i-1)/d, i)) {
+			exch(i, (i-1)/d);
+			i = (i-1)/d;
+		}
+	}
+
+	//Moves downward
+	private void sink(int i) {
+		if (d*i+1 >= n) return;
+		int min = minChild(i);
+		while (min < n && greater(i, min)) {
+			exch(i, min);
+			i = min;
+			min = minChild(i);
+		}
+	}
+
+	/***************************
+	 * Deletes the minimum child
+	 **************************/
+
+	//Return the minimum child of i
+	private int minChild(int i) {
+		int loBound = d*i+1, hiBound = Math.min(d*i+d, n-1);
+		int min = loBound;
+		for (int cur = loBound+1; cur <= hiBound; cur++) {
+			if (greater(min, cur)) min = cur;
+		}
+		return min;
+	}
+
+	/***************************
+	 * Unordered traversal
+	 **************************/
+
+	/**
+	 * Performs the given action on each index in the priority queue, in no particular order
+	 * The priority queue must not be modified by the action
+	 * Worst case is O(n)
+	 * @param action the action to perform on each index
+	 */
+	public void forEachUnordered(IntConsumer action) {
+		for (int i = d; i < n+d; i++) action.accept(pq[i]);
+	}
+
+	/**
+	 * Gets a Spliterator over the indexes in the priority queue, in no particular order
+	 * Unlike the Iterator, it does not report ORDERED : it splits the array of the heap in halves
+	 * The priority queue must not be modified while the Spliterator is in use
+	 * Worst case is O(1)
+	 * @return a Spliterator over the indexes in the priority queue, in no particular order
+	 */
+	@Override
+	public Spliterator.OfInt spliterator() {
+		return Spliterators.spliterator(pq, d, n+d, Spliterator.DISTINCT);
+	}
+
+	/***************************
+	 * Iterator
+	 **************************/
+
+	/**
+	 * Gets an Iterator over the indexes in the priority queue in ascending order
+	 * The Iterator does not implement the remove() method
+	 * iterator() : Worst case is O(n)
+	 * next() : 	Worst case is O(d*log-d(n))
+	 * hasNext() : 	Worst case is O(1)
+	 * @return an Iterator over the indexes in the priority queue in ascending order
+	 */
+
+	public Iterator<Integer> iterator() {
+		return new MyIterator();
+	}
+
+	//Constructs an Iterator over the indices in linear time
+	private class MyIterator implements Iterator<Integer> {
+		IndexMultiwayDoubleMinPQ clone;
+
+		public MyIterator() {
+			clone = new IndexMultiwayDoubleMinPQ(nmax, d);
+			for (int i = 0; i < n; i++) {
+				clone.insert(pq[i+d], keys[pq[i+d]+d]);
+			}
+		}
+
+		public boolean hasNext() {
+			return !clone.isEmpty();
+		}
+
+		public Integer next() {
+			return clone.delMin();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
@@ -1,14 +1,20 @@
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
 
 /**
  *  The IndexMultiwayMinPQ class represents an indexed priority queue of generic keys.
  *  It supports the usual insert and delete-the-minimum operations,
  *  along with delete and change-the-key methods. 
  *  In order to let the client refer to keys on the priority queue,
- *  an integer between 0 and N-1 is associated with each key ; the client
+ *  a non-negative integer is associated with each key ; the client
  *  uses this integer to specify which key to delete or change.
+ *  The range of the indexes is given at construction, and grows as needed :
+ *  inserting an index out of the range doubles it, in amortized constant time.
  *  It also supports methods for peeking at the minimum key,
  *  testing if the priority queue is empty, and iterating through
  *  the keys.
@@ -21,6 +27,7 @@ import java.util.NoSuchElementException;
  *  The insert and decrease-key take time proportional to log-d(n)
  *  The is-empty, min-index, min-key, size, contains and key-of operations take constant time.
  *  Construction takes time proportional to the specified capacity.
+ *  forEachUnordered and the spliterator visit the indexes in the order of the array, in linear time.
  *  
  *  The arrays used in this structure have the first d indices empty,
  *  it apparently helps with caching effects.
@@ -79,6 +86,22 @@ public class IndexMultiwayMinPQ<Key> implements Iterable<Integer> {
 		comp = C;
 	}
 
+	/**
+	 * Makes room for the indexes between 0 and capacity-1, so that inserting them doesn't grow the arrays.
+	 * The range is at least doubled, so that a sequence of growing inserts takes amortized constant time.
+	 * Worst case is O(capacity)
+	 * @param capacity the number of indexes the priority queue must accept
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity <= nmax) return;
+		int max = (int) Math.min(Math.max(capacity, (long) nmax<<1), Integer.MAX_VALUE-d);
+		pq = Arrays.copyOf(pq, max+d);
+		qp = Arrays.copyOf(qp, max+d);
+		keys = Arrays.copyOf(keys, max+d);
+		Arrays.fill(qp, nmax+d, max+d, -1);
+		nmax = max;
+	}
+
 	/**
 	 * Whether the priority queue is empty
 	 * Worst case is O(1)
@@ -92,12 +115,12 @@ public class IndexMultiwayMinPQ<Key> implements Iterable<Integer> {
 	 * Does the priority queue contains the index i ?
 	 * Worst case is O(1)
 	 * @param i an index
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @return true if i is on the priority queue, false if not
 	 */
 	public boolean contains(int i) {
-		if (i < 0 ||i >= nmax) throw new IndexOutOfBoundsException();
-		return qp[i+d] != -1;
+		if (i < 0) throw new IndexOutOfBoundsException();
+		return i < nmax && qp[i+d] != -1;
 	}
 
 	/**
@@ -114,11 +137,12 @@ public class IndexMultiwayMinPQ<Key> implements Iterable<Integer> {
 	 * Worst case is O(log-d(n))
 	 * @param i an index
 	 * @param key a Key associated with i
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.IllegalArgumentException if the index is already in the queue
 	 */
 	public void insert(int i, Key key) {
-		if (i < 0 || i >= nmax) throw new IndexOutOfBoundsException();
+		if (i < 0) throw new IndexOutOfBoundsException();
+		if (i >= nmax) ensureCapacity(i+1);
 		if (contains(i)) throw new IllegalArgumentException("Index already there");
 		keys[i+d] = key;
 		pq[n+d] = i;
@@ -169,12 +193,12 @@ public class IndexMultiwayMinPQ<Key> implements Iterable<Integer> {
 	 * Gets the key associated with index i
 	 * Worst case is O(1)
 	 * @param i an index
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.IllegalArgumentException if the index is not in the queue
 	 * @return the key associated with index i
 	 */
 	public Key keyOf(int i) {
-		if (i < 0 || i >= nmax) throw new IndexOutOfBoundsException();
+		if (i < 0) throw new IndexOutOfBoundsException();
 		if (! contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
 		return keys[i+d];
 	}
@@ -185,11 +209,11 @@ public class IndexMultiwayMinPQ<Key> implements Iterable<Integer> {
 	 * If the given key is lower,   Worst case is O(log-d(n))
 	 * @param i an index
 	 * @param key the key to associate with i
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.IllegalArgumentException if the index has no key associated with
 	 */
 	public void changeKey(int i, Key key) {
-		if (i < 0 || i >= nmax) throw new IndexOutOfBoundsException();
+		if (i < 0) throw new IndexOutOfBoundsException();
 		if (! contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
 		Key tmp = keys[i+d];
 		keys[i+d] = key;
@@ -202,12 +226,12 @@ public class IndexMultiwayMinPQ<Key> implements Iterable<Integer> {
 	 * Worst case is O(log-d(n))
 	 * @param i an index
 	 * @param key the key to associate with i
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index has no key associated with
 	 * @throws java.util.IllegalArgumentException if the given key is greater than the current key
 	 */
 	public void decreaseKey(int i, Key key) {
-		if (i < 0 || i >=nmax) throw new IndexOutOfBoundsException();
+		if (i < 0) throw new IndexOutOfBoundsException();
 		if (! contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
 		if (comp.compare(keys[i+d], key) <= 0) throw new IllegalArgumentException("Calling with this argument would not decrease the Key");
 		keys[i+d] = key;
@@ -219,12 +243,12 @@ public class IndexMultiwayMinPQ<Key> implements Iterable<Integer> {
 	 * Worst case is O(d*log-d(n))
 	 * @param i an index
 	 * @param key the key to associate with i
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index has no key associated with
 	 * @throws java.util.IllegalArgumentException if the given key is lower than the current key
 	 */
 	public void increaseKey(int i, Key key) {
-		if (i < 0 || i >=nmax) throw new IndexOutOfBoundsException();
+		if (i < 0) throw new IndexOutOfBoundsException();
 		if (! contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
 		if (comp.compare(keys[i+d], key) >= 0) throw new IllegalArgumentException("Calling with this argument would not increase the Key");
 		keys[i+d] = key;
@@ -235,11 +259,11 @@ public class IndexMultiwayMinPQ<Key> implements Iterable<Integer> {
 	 * Deletes the key associated to the given index
 	 * Worst case is O(d*log-d(n))
 	 * @param i an index
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the given index has no key associated with
 	 */
 	public void delete(int i) {
-		if (i < 0 || i >= nmax) throw new IndexOutOfBoundsException();
+		if (i < 0) throw new IndexOutOfBoundsException();
 		if (! contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
 		int idx = qp[i+d];
 		exch(idx, --n);
@@ -305,6 +329,32 @@ public class IndexMultiwayMinPQ<Key> implements Iterable<Integer> {
 		return min;
 	}
 	
+	/***************************
+	 * Unordered traversal
+	 **************************/
+	
+	/**
+	 * Performs the given action on each index in the priority queue, in no particular order
+	 * The priority queue must not be modified by the action
+	 * Worst case is O(n)
+	 * @param action the action to perform on each index
+	 */
+	public void forEachUnordered(IntConsumer action) {
+		for (int i = d; i < n+d; i++) action.accept(pq[i]);
+	}
+	
+	/**
+	 * Gets a Spliterator over the indexes in the priority queue, in no particular order
+	 * Unlike the Iterator, it does not report ORDERED : it splits the array of the heap in halves
+	 * The priority queue must not be modified while the Spliterator is in use
+	 * Worst case is O(1)
+	 * @return a Spliterator over the indexes in the priority queue, in no particular order
+	 */
+	@Override
+	public Spliterator.OfInt spliterator() {
+		return Spliterators.spliterator(pq, d, n+d, Spliterator.DISTINCT);
+	}
+	
 	/***************************
 	 * Iterator
 	 **************************/
@@ -0,0 +1,477 @@
+package tools;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/**
+ *  The IndexPairingDoubleMinPQ class represents an indexed priority queue of double keys.
+ *  It supports the usual insert and delete-the-minimum
+ *  operations, along with delete and change-the-key
+ *  methods. In order to let the client refer to keys on the priority queue,
+ *  a non-negative integer is associated with each key ; the client
+ *  uses this integer to specify which key to delete or change.
+ *  The range of the indexes is given at construction, and grows as needed :
+ *  inserting an index out of the range doubles it, in amortized constant time.
+ *  It also supports methods for peeking at the minimum key,
+ *  testing if the priority queue is empty, and iterating through
+ *  the keys.
+ *
+ *  This implementation is the array-based version of IndexPairingMinPQ :
+ *  there is no Node, the index of a key is its node. The child, sibling and previous
+ *  links are stored in arrays of int indexed by the index, next to an array of double
+ *  holding the keys, so an index costs 20 bytes whatever the number of keys on the queue.
+ *  NaN is not a valid key.
+ *  The delete-the-minimum operation is implemented with an iterative two pass algorithm.
+ *  The delete-the-minimum, delete, change-key, and increase-key
+ *  operations take amortized logarithmic time.
+ *  The insert, decrease-key, is-empty, size, min-index, min-key, and key-of
+ *  operations take constant time.
+ *
+ *  Construction takes time proportional to the specified capacity.
+ *  forEachUnordered and the spliterator scan the array indexed by the indexes, in time proportional to the capacity.
+ *
+ *  @author Tristan Claverie
+ */
+
+public class IndexPairingDoubleMinPQ implements Iterable<Integer> {
+	private static final int NONE = -1;		//No link
+	private static final int ABSENT = -2;	//Value of previous for the indices not on the queue
+
+	private int size;						//Number of elements currently on the queue
+	private int head = NONE;				//Index of the minimum key
+	private int[] child;				//child[i] = first child of i
+	private int[] sibling;			//sibling[i] = right sibling of i
+	private int[] previous;			//previous[i] = either the parent or the left sibling of i
+	private double[] keys;			//keys[i] = priority of i
+
+	/**
+     * Initializes an empty indexed priority queue with indices between 0 and NMAX-1
+     * Worst case is O(n)
+     *
+     * @param NMAX number of keys in the priority queue, index from 0 to NMAX-1
+     *
+     * @throws java.util.IllegalArgumentException if NMAX <= 0
+     */
+	public IndexPairingDoubleMinPQ(int NMAX) {
+		if (NMAX <= 0) throw new IllegalArgumentException("Specified capacity must be strictly positive");
+		child = new int[NMAX];
+		sibling = new int[NMAX];
+		previous = new int[NMAX];
+		keys = new double[NMAX];
+		for (int i = 0; i < NMAX; i++) {
+			child[i] = NONE;
+			sibling[i] = NONE;
+			previous[i] = ABSENT;
+		}
+	}
+
+	//Copy constructor, used by the iterator
+	private IndexPairingDoubleMinPQ(IndexPairingDoubleMinPQ that) {
+		size = that.size;
+		head = that.head;
+		child = that.child.clone();
+		sibling = that.sibling.clone();
+		previous = that.previous.clone();
+		keys = that.keys.clone();
+	}
+
+	/**
+	 * Makes room for the indexes between 0 and capacity-1, so that inserting them doesn't grow the arrays.
+	 * The range is at least doubled, so that a sequence of growing inserts takes amortized constant time.
+	 * Worst case is O(capacity)
+	 *
+	 * @param capacity the number of indexes the priority queue must accept
+	 */
+	public void ensureCapacity(int capacity) {
+		int nmax = keys.length;
+		if (capacity <= nmax) return;
+		int max = (int) Math.min(Math.max(capacity, (long) nmax<<1), Integer.MAX_VALUE-8);
+		child = Arrays.copyOf(child, max);
+		sibling = Arrays.copyOf(sibling, max);
+		previous = Arrays.copyOf(previous, max);
+		keys = Arrays.copyOf(keys, max);
+		Arrays.fill(child, nmax, max, NONE);
+		Arrays.fill(sibling, nmax, max, NONE);
+		Arrays.fill(previous, nmax, max, ABSENT);
+	}
+
+	/**
+	 * Number of elements currently on the priority queue
+	 * Worst case is O(1)
+	 *
+	 * @return the number of elements on the priority queue
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Whether the priority queue is empty
+	 * Worst case is O(1)
+	 *
+	 * @return true if the priority queue is empty, false if not
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Does the priority queue contains the index i ?
+	 * Worst case is O(1)
+	 *
+	 * @param i an index
+	 *
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
+	 *
+	 * @return true if i is on the priority queue, false if not
+	 */
+	public boolean contains(int i) {
+		if (i < 0) throw new IndexOutOfBoundsException("Specified index is invalid");
+		return i < keys.length && previous[i] != ABSENT;
+	}
+
+	/**
+	 * Get the key associated with index i
+	 * Worst case is O(1)
+	 *
+	 * @param i an index
+	 *
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
+	 * @throws java.util.NoSuchElementException if the index is not in the queue
+	 *
+	 * @return the key associated with index i
+	 */
+	public double keyOf(int i) {
+		if (!contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
+		return keys[i];
+	}
+
+	/**
+	 * Get the minimum key currently in the queue
+	 * Worst case is O(1)
+	 *
+	 * @throws java.util.NoSuchElementException if the priority queue is empty
+	 *
+	 * @return the minimum key currently in the priority queue
+	 */
+	public double minKey() {
+		if (head == NONE) throw new NoSuchElementException("Priority Queue is empty");
+		return keys[head];
+	}
+
+	/**
+	 * Get the index associated with the minimum key
+	 * Worst case is O(1)
+	 *
+	 * @throws java.util.NoSuchElementException if the priority queue is empty
+	 *
+	 * @return the index associated with the minimum key
+	 */
+	public int minIndex() {
+		if (head == NONE) throw new NoSuchElementException("Priority Queue is empty");
+		return head;
+	}
+
+	/**
+	 * Associates a key with an index
+	 * Worst case is O(1)
+	 *
+	 * @param i an index
+	 * @param key a key associated with i
+	 *
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
+	 * @throws java.util.IllegalArgumentException if the index is already in the queue
+	 * @throws java.util.IllegalArgumentException if the key is NaN
+	 */
+	public void insert(int i, double key) {
+		if (i >= keys.length) ensureCapacity(i+1);
+		if (contains(i)) throw new IllegalArgumentException("Index is already in the queue");
+		if (key != key) throw new IllegalArgumentException("Key must not be NaN");
+		keys[i] = key;
+		previous[i] = NONE;
+		head = meld(head, i);
+		size++;
+	}
+
+	/**
+	 * Deletes the minimum key
+	 * Worst case is O(log(n)) (amortized)
+	 *
+	 * @throws java.util.NoSuchElementException if the priority queue is empty
+	 *
+	 * @return the index associated with the minimum key
+	 */
+	public int delMin() {
+		if (head == NONE) throw new NoSuchElementException("Priority Queue is empty");
+		int min = head;
+		head = mergePairs(child[min]);
+		clear(min);
+		size--;
+		return min;
+	}
+
+	/**
+	 * Decreases the key associated with index i to the given key
+	 * Worst case is O(1)
+	 *
+	 * @param i an index
+	 * @param key the key to associate with i
+	 *
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
+	 * @throws java.util.NoSuchElementException if the index has no key associated with
+	 * @throws java.util.IllegalArgumentException if the given key is not lower than the current key
+	 */
+	public void decreaseKey(int i, double key) {
+		if (!contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
+		if (!(key < keys[i])) throw new IllegalArgumentException("Calling with this argument would not decrease the Key");
+		keys[i] = key;
+		if (head != i) head = meld(head, cut(i));
+	}
+
+	/**
+	 * Increases the key associated with index i to the given key
+	 * Worst case is O(log(n)) (amortized)
+	 *
+	 * @param i an index
+	 * @param key the key to associate with i
+	 *
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
+	 * @throws java.util.NoSuchElementException if the index has no key associated with
+	 * @throws java.util.IllegalArgumentException if the given key is not greater than the current key
+	 */
+	public void increaseKey(int i, double key) {
+		if (!contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
+		if (!(key > keys[i])) throw new IllegalArgumentException("Calling with this argument would not increase the Key");
+		delete(i);
+		insert(i, key);
+	}
+
+	/**
+	 * Changes the key associated with index i to the given key
+	 * Worst case is O(log(n)) (amortized)
+	 *
+	 * @param i an index
+	 * @param key the key to associate with i
+	 *
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
+	 * @throws java.util.NoSuchElementException if the index has no key associated with
+	 * @throws java.util.IllegalArgumentException if the key is NaN
+	 */
+	public void changeKey(int i, double key) {
+		if (!contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
+		if (key != key) throw new IllegalArgumentException("Key must not be NaN");
+		if (key > keys[i]) 		increaseKey(i, key);
+		else if (key < keys[i]) decreaseKey(i, key);
+	}
+
+	/**
+	 * Deletes the key associated the given index
+	 * Worst case is O(log(n)) (amortized)
+	 *
+	 * @param i an index
+	 *
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
+	 * @throws java.util.NoSuchElementException if the given index has no key associated with
+	 */
+	public void delete(int i) {
+		if (!contains(i)) throw new NoSuchElementException("Specified index is not in the queue");
+		if (head == i) head = mergePairs(child[i]);
+		else 		   head = meld(head, mergePairs(child[cut(i)]));
+		clear(i);
+		size--;
+	}
+
+	/*******************************
+	 * General helper function
+	 ******************************/
+
+	//Links two roots together
+	private int meld(int x, int y) {
+		if (x == NONE) return y;
+		if (y == NONE) return x;
+		return keys[x] > keys[y] ? link(y, x) : link(x, y);
+	}
+
+	//Two pass algorithm, without recursion
+	private int mergePairs(int x) {
+		if (x == NONE) return NONE;
+		//First pass : melds the trees by pairs from left to right,
+		//the results are stacked through the sibling links
+		int pairs = NONE;
+		while (x != NONE) {
+			int y = sibling[x], next = NONE;
+			sibling[x] = NONE;
+			if (y != NONE) {
+				next = sibling[y];
+				sibling[y] = NONE;
+				x = meld(x, y);
+			}
+			sibling[x] = pairs;
+			pairs = x;
+			x = next;
+		}
+		//Second pass : melds the pairs from right to left
+		int root = pairs;
+		pairs = sibling[root];
+		sibling[root] = NONE;
+		while (pairs != NONE) {
+			int next = sibling[pairs];
+			sibling[pairs] = NONE;
+			root = meld(root, pairs);
+			pairs = next;
+		}
+		previous[root] = NONE;
+		return root;
+	}
+
+	//Assuming the child holds a greater key than root,
+	//the root becomes the parent of the child
+	private int link(int root, int x) {
+		int first = child[root];
+		sibling[x] = first;
+		if (first != NONE) previous[first] = x;
+		child[root] = x;
+		previous[x] = root;
+		return root;
+	}
+
+	//Removes the specified tree from the list it belongs to
+	//and returns its root
+	private int cut(int x) {
+		int p = previous[x], s = sibling[x];
+		if (p == NONE) return x;
+		if (s != NONE) previous[s] = p;
+		if (child[p] == x) child[p] = s;
+		else 			   sibling[p] = s;
+		previous[x] = NONE;
+		sibling[x] = NONE;
+		return x;
+	}
+
+	//Marks an index as no longer on the queue
+	private void clear(int i) {
+		child[i] = NONE;
+		sibling[i] = NONE;
+		previous[i] = ABSENT;
+	}
+
+	/*******************************
+	 * Unordered traversal
+	 ******************************/
+	
+	/**
+	 * Performs the given action on each index in the priority queue, in no particular order
+	 * The indexes are found by a scan of the array indexed by the indexes
+	 * The priority queue must not be modified by the action
+	 * Worst case is O(NMAX)
+	 * 
+	 * @param action the action to perform on each index
+	 */
+	public void forEachUnordered(IntConsumer action) {
+		for (int i = 0; i < keys.length; i++) if (previous[i] != ABSENT) action.accept(i);
+	}
+	
+	/**
+	 * Gets a Spliterator over the indexes in the priority queue, in no particular order
+	 * Unlike the Iterator, it does not report ORDERED : it scans the array indexed by the indexes,
+	 * and splits the range of indexes in halves
+	 * The priority queue must not be modified while the Spliterator is in use
+	 * Worst case is O(1)
+	 * 
+	 * @return a Spliterator over the indexes in the priority queue, in no particular order
+	 */
+	@Override
+	public Spliterator.OfInt spliterator() {
+		return new IndexSpliterator(0, keys.length);
+	}
+	
+	//Scans the indexes in [lo, hi), skipping the ones which are not in the queue
+	private class IndexSpliterator implements Spliterator.OfInt {
+		private int lo;							//Next index to scan
+		private final int hi;					//End of the range, excluded
+		
+		IndexSpliterator(int lo, int hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			for (; lo < hi; lo++) {
+				if (previous[lo] != ABSENT) {
+					action.accept(lo++);
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		@Override
+		public void forEachRemaining(IntConsumer action) {
+			for (; lo < hi; lo++) if (previous[lo] != ABSENT) action.accept(lo);
+		}
+		
+		@Override
+		public Spliterator.OfInt trySplit() {
+			int mid = (lo + hi) >>> 1;
+			if (mid <= lo) return null;
+			Spliterator.OfInt prefix = new IndexSpliterator(lo, mid);
+			lo = mid;
+			return prefix;
+		}
+		
+		//The number of indexes left to scan, an upper bound of the number of indexes left
+		@Override
+		public long estimateSize() {
+			return hi - lo;
+		}
+		
+		@Override
+		public int characteristics() {
+			return Spliterator.DISTINCT | Spliterator.NONNULL;
+		}
+	}
+	
+	/*******************************
+	 * Iterator
+	 ******************************/
+
+	/**
+     * Returns an iterator that iterates over the keys on the priority queue
+     * in ascending order and returns the indexes associated with.
+     * The iterator doesn't implement remove() since it's optional.
+     * iterator() : Worst case is O(NMAX)
+	 * next() : 	Worst case is O(log(n)) (amortized)
+	 * hasNext() : 	Worst case is O(1)
+	 *
+     * @return an iterator that iterates over the keys in ascending order
+     */
+	@Override
+	public Iterator<Integer> iterator() {
+		return new MyIterator();
+	}
+
+	private class MyIterator implements Iterator<Integer> {
+		IndexPairingDoubleMinPQ copy = new IndexPairingDoubleMinPQ(IndexPairingDoubleMinPQ.this);
+
+		@Override
+		public boolean hasNext() {
+			return !copy.isEmpty();
+		}
+
+		@Override
+		public Integer next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			return copy.delMin();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
@@ -1,16 +1,21 @@
 package tools;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
 
 /**
  *  The IndexPairingMinPQ class represents an indexed priority queue of generic keys.
  *  It supports the usual insert and delete-the-minimum
  *  operations, along with delete and change-the-key 
  *  methods. In order to let the client refer to keys on the priority queue,
- *  an integer between 0 and NMAX-1 is associated with each key ; the client
+ *  a non-negative integer is associated with each key ; the client
  *  uses this integer to specify which key to delete or change.
+ *  The range of the indexes is given at construction, and grows as needed :
+ *  inserting an index out of the range doubles it, in amortized constant time.
  *  It also supports methods for peeking at the minimum key,
  *  testing if the priority queue is empty, and iterating through
  *  the keys.
@@ -18,13 +23,17 @@ import java.util.NoSuchElementException;
  *  This implementation uses a child-sibling representation
  *  with another pointer which points either to the parent node or to the
  *  left sibling
- *  The delete-the-minimum operation is implemented with the two pass algorithm
+ *  The trees left by a delete-the-minimum are combined with the PairingStrategy
+ *  given at construction, two pass by default, without recursion.
+ *  With the auxiliary two pass strategy, the trees of the auxiliary list
+ *  are the children of a sentinel Node, so that they can be cut like any other.
  *  The delete-the-minimum, delete, change-key, and increase-key
  *  operations take amortized logarithmic time.
  *  The insert, decrease-key, is-empty, size, min-index, min-key, and key-of
  *  operations take constant time.
  *  
  *  Construction takes time proportional to the specified capacity.
+ *  forEachUnordered and the spliterator scan the array indexed by the indexes, in time proportional to the capacity.
  *  
  *  @author Tristan Claverie
  */
@@ -35,6 +44,8 @@ public class IndexPairingMinPQ<Key> implements Iterable<Integer> {
 	private Node<Key> head;						//Head of the queue
 	private final Comparator<Key> comp;			//A Comparator over the keys
 	private Node<Key>[] keys;					//Associates an index to a Node
+	private final PairingStrategy strategy;		//How the trees are combined by delete-the-minimum
+	private final Node<Key> pending;			//Sentinel whose children are the auxiliary list
 
 	//Represents the nodes of the heap
 	private class Node<Key> {
@@ -61,6 +72,8 @@ public class IndexPairingMinPQ<Key> implements Iterable<Integer> {
 		if (NMAX <= 0) throw new IllegalArgumentException("Specified capacity must be strictly positive");
 		comp = new MyComparator();
 		keys = (Node<Key>[]) new Node[NMAX];
+		strategy = PairingStrategy.TWO_PASS;
+		pending = new Node<Key>(-1, null);
 	}
 	
 	/**
@@ -78,6 +91,41 @@ public class IndexPairingMinPQ<Key> implements Iterable<Integer> {
 		if (C == null) throw new IllegalArgumentException("Specified Comparator must not be null");
 		comp = C;
 		keys = (Node<Key>[]) new Node[NMAX];
+		strategy = PairingStrategy.TWO_PASS;
+		pending = new Node<Key>(-1, null);
+	}
+	
+	/**
+     * Initializes an empty indexed priority queue with indices between 0 and NMAX-1
+     * Worst case is O(n)
+     * 
+     * @param NMAX number of keys in the priority queue, index from 0 to NMAX-1
+     * @param C a Comparator over the keys, null for the natural order
+     * @param strategy how the trees are combined by delete-the-minimum
+     * 
+     * @throws java.util.IllegalArgumentException if NMAX <= 0
+     * @throws java.util.IllegalArgumentException if the strategy is null
+     */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public IndexPairingMinPQ(int NMAX, Comparator<Key> C, PairingStrategy strategy) {
+		if (NMAX <= 0) throw new IllegalArgumentException("Specified capacity must be strictly positive");
+		if (strategy == null) throw new IllegalArgumentException("Specified strategy must not be null");
+		comp = (C == null) ? new MyComparator() : C;
+		keys = (Node<Key>[]) new Node[NMAX];
+		this.strategy = strategy;
+		pending = new Node<Key>(-1, null);
+	}
+	
+	/**
+	 * Makes room for the indexes between 0 and capacity-1, so that inserting them doesn't grow the array.
+	 * The range is at least doubled, so that a sequence of growing inserts takes amortized constant time.
+	 * Worst case is O(capacity)
+	 * 
+	 * @param capacity the number of indexes the priority queue must accept
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity <= keys.length) return;
+		keys = Arrays.copyOf(keys, (int) Math.min(Math.max(capacity, (long) keys.length<<1), Integer.MAX_VALUE-8));
 	}
 	
 	/**
@@ -106,13 +154,13 @@ public class IndexPairingMinPQ<Key> implements Iterable<Integer> {
 	 * 
 	 * @param i an index
 	 * 
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * 
 	 * @return true if i is on the priority queue, false if not
 	 */
 	public boolean contains(int i) {
-		if(i < 0 || i >= keys.length) throw new IndexOutOfBoundsException("Specified index is invalid");
-		return keys[i] != null;
+		if(i < 0) throw new IndexOutOfBoundsException("Specified index is invalid");
+		return i < keys.length && keys[i] != null;
 	}
 	
 	/**
@@ -121,13 +169,13 @@ public class IndexPairingMinPQ<Key> implements Iterable<Integer> {
 	 * 
 	 * @param i an index
 	 * 
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index is not in the queue
 	 * 
 	 * @return the key associated with index i
 	 */
 	public Key keyOf(int i) {
-		if(i < 0 || i >= keys.length) throw new IndexOutOfBoundsException("Specified index is invalid");
+		if(i < 0) throw new IndexOutOfBoundsException("Specified index is invalid");
 		if (!contains(i) ) throw new NoSuchElementException();
 		return keys[i].key;
 	}
@@ -165,17 +213,18 @@ public class IndexPairingMinPQ<Key> implements Iterable<Integer> {
 	 * @param i an index
 	 * @param key a Key associated with i
 	 * 
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.IllegalArgumentException if the index is already in the queue
 	 * @throws java.util.IllegalArgumentException if the key is null
 	 */
 	public void insert(int i, Key k) {
 		if (k == null) throw new IllegalArgumentException("Specified key must not be null");
-		if (i < 0 || i > keys.length) throw new IndexOutOfBoundsException("Specified index is invalid");
+		if (i < 0) throw new IndexOutOfBoundsException("Specified index is invalid");
+		if (i >= keys.length) ensureCapacity(i+1);
 		if (contains(i)) throw new IllegalArgumentException("Index is already is the queue");
 		Node<Key> insert = new Node<Key>(i, k);
 		keys[i] = insert;
-		head = meld(head, insert);
+		add(insert);
 		size++;
 	}
 	
@@ -191,8 +240,7 @@ public class IndexPairingMinPQ<Key> implements Iterable<Integer> {
 		if (head == null) throw new NoSuchElementException("Priority Queue is empty");
 		int min = head.index;
 		keys[min] = null;
-		head = mergePairs(head.child);
-		if (head != null) head.previous = null;
+		head = removeHead();
 		size--;
 		return min;
 	}
@@ -204,20 +252,18 @@ public class IndexPairingMinPQ<Key> implements Iterable<Integer> {
 	 * @param i an index
 	 * @param key the key to associate with i
 	 * 
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index has no key associated with
 	 * @throws java.util.IllegalArgumentException if the given key is greater than the current key
 	 * @throws java.util.IllegalArgumentException if the key is null
 	 */
 	public void decreaseKey(int i, Key k) {
 		if (k == null) throw new IllegalArgumentException("Specified key must not be null");
-		if (i < 0 || i > keys.length) throw new IndexOutOfBoundsException("Specified index is invalid");
+		if (i < 0) throw new IndexOutOfBoundsException("Specified index is invalid");
 		if (!contains(i)) throw new IllegalArgumentException("Specified index has no key associated with");
 		if (comp.compare(keys[i].key, k) < 0) throw new IllegalArgumentException("Specified key is not stricly lower the the existing one");
 		keys[i].key = k;
-		if (head.index != i) {
-			head = meld(head, cut(keys[i]));
-		}
+		if (head.index != i) add(cut(keys[i]));
 	}
 	
 	/**
@@ -227,14 +273,14 @@ public class IndexPairingMinPQ<Key> implements Iterable<Integer> {
 	 * @param i an index
 	 * @param key the key to associate with i
 	 * 
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index has no key associated with
 	 * @throws java.util.IllegalArgumentException if the given key is lower than the current key
 	 * @throws java.util.IllegalArgumentException if the key is null
 	 */
 	public void increaseKey(int i, Key k) {
 		if (k == null) throw new IllegalArgumentException("Specified key must not be null");
-		if (i < 0 || i > keys.length) throw new IndexOutOfBoundsException("Specified index is invalid");
+		if (i < 0) throw new IndexOutOfBoundsException("Specified index is invalid");
 		if (!contains(i)) throw new IllegalArgumentException("Specified index has no key associated with");
 		if (comp.compare(keys[i].key, k) > 0) throw new IllegalArgumentException("Specified key is not stricly greater the the existing one");
 		delete(i);
@@ -248,13 +294,13 @@ public class IndexPairingMinPQ<Key> implements Iterable<Integer> {
 	 * @param i an index
 	 * @param key the key to associate with i
 	 * 
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the index has no key associated with
 	 * @throws java.util.IllegalArgumentException if the key is null
 	 */
 	public void changeKey(int i, Key k) {
 		if (k == null) throw new IllegalArgumentException("Specified key must not be null");
-		if (i < 0 || i > keys.length) throw new IndexOutOfBoundsException("Specified index is invalid");
+		if (i < 0) throw new IndexOutOfBoundsException("Specified index is invalid");
 		if (!contains(i)) throw new IllegalArgumentException("Specified index has no key associated with");
 		if (comp.compare(k, keys[i].key) > 0) increaseKey(i, k);
 		else 								  decreaseKey(i, k);
@@ -266,15 +312,14 @@ public class IndexPairingMinPQ<Key> implements Iterable<Integer> {
 	 * 
 	 * @param i an index
 	 * 
-	 * @throws java.lang.IndexOutOfBoundsException if the specified index is invalid
+	 * @throws java.lang.IndexOutOfBoundsException if the specified index is negative
 	 * @throws java.util.NoSuchElementException if the given index has no key associated with
 	 */
 	public void delete(int i) {
-		if (i < 0 || i > keys.length) throw new IndexOutOfBoundsException("Specified index is invalid");
+		if (i < 0) throw new IndexOutOfBoundsException("Specified index is invalid");
 		if (!contains(i)) throw new IllegalArgumentException("Specified index has no key associated with");
-		if (head.index == i) head = null;
-		head = meld(head, mergePairs(cut(keys[i]).child));
-		if(head != null) head.previous = null;
+		if (head.index == i) head = removeHead();
+		else				 head = meld(head, combine(cut(keys[i]).child));
 		keys[i] = null;
 		size--;
 	}
@@ -297,11 +342,82 @@ public class IndexPairingMinPQ<Key> implements Iterable<Integer> {
 		return greater(x.key, y.key) ? link(y, x) : link(x, y);
 	}
 	
-	//Two pass algorithm
-	private Node<Key> mergePairs(Node<Key> x) {
+	//Puts a tree on the queue : in the auxiliary list if the strategy has one
+	//and the tree does not hold the minimum, melded with the head otherwise
+	private void add(Node<Key> x) {
+		if (strategy == PairingStrategy.AUXILIARY_TWO_PASS && head != null && !greater(head.key, x.key)) {
+			link(pending, x);
+		}
+		else head = meld(head, x);
+	}
+	
+	//Combines the children of the head and the auxiliary list, returns the new head
+	private Node<Key> removeHead() {
+		Node<Key> x = combine(head.child);
+		head.child = null;
+		if (pending.child != null) {
+			x = meld(x, multipass(pending.child));
+			pending.child = null;
+		}
+		if (x != null) x.previous = null;
+		return x;
+	}
+	
+	//Combines a list of trees with the strategy of the queue, returns a single root
+	private Node<Key> combine(Node<Key> x) {
+		Node<Key> root = (strategy == PairingStrategy.MULTIPASS) ? multipass(x) : twoPass(x);
+		if (root != null) root.previous = null;
+		return root;
+	}
+	
+	//Two pass algorithm, without recursion
+	private Node<Key> twoPass(Node<Key> x) {
 		if (x == null) return null;
-		if (x.sibling == null) return x;
-		return meld(mergePairs(x.sibling.sibling), meld(x, x.sibling));
+		//First pass : melds the trees by pairs from left to right,
+		//the results are stacked through the sibling links
+		Node<Key> pairs = null;
+		while (x != null) {
+			Node<Key> y = x.sibling, next = null;
+			x.sibling = null;
+			if (y != null) {
+				next = y.sibling;
+				y.sibling = null;
+				x = meld(x, y);
+			}
+			x.sibling = pairs;
+			pairs = x;
+			x = next;
+		}
+		//Second pass : melds the pairs from right to left
+		Node<Key> root = pairs;
+		pairs = root.sibling;
+		root.sibling = null;
+		while (pairs != null) {
+			Node<Key> next = pairs.sibling;
+			pairs.sibling = null;
+			root = meld(root, pairs);
+			pairs = next;
+		}
+		return root;
+	}
+	
+	//Multipass algorithm : melds the first two trees and puts the result
+	//at the end of the list, until one tree is left
+	private Node<Key> multipass(Node<Key> x) {
+		if (x == null) return null;
+		Node<Key> last = x;
+		while (last.sibling != null) last = last.sibling;
+		while (x != last) {
+			Node<Key> y = x.sibling, next = y.sibling;
+			x.sibling = null;
+			y.sibling = null;
+			x = meld(x, y);
+			if (next == null) return x;
+			last.sibling = x;
+			last = x;
+			x = next;
+		}
+		return x;
 	}
 	
 	//Assuming the child holds a greater key than root,
@@ -315,7 +431,7 @@ public class IndexPairingMinPQ<Key> implements Iterable<Integer> {
 	}
 	
 	//Removes the specified node from the list it belongs to
-	//and returns its
+	//and returns it, without parent nor siblings
 	private Node<Key> cut(Node<Key> toCut) {
 		if (toCut.previous == null) return toCut;
 		if (toCut.sibling != null) toCut.sibling.previous = toCut.previous;
@@ -324,9 +440,88 @@ public class IndexPairingMinPQ<Key> implements Iterable<Integer> {
 		} else {
 			toCut.previous.sibling = toCut.sibling;
 		}
+		toCut.previous = null;
+		toCut.sibling = null;
 		return toCut;
 	}
 	
+	/*******************************
+	 * Unordered traversal
+	 ******************************/
+	
+	/**
+	 * Performs the given action on each index in the priority queue, in no particular order
+	 * The indexes are found by a scan of the array indexed by the indexes
+	 * The priority queue must not be modified by the action
+	 * Worst case is O(NMAX)
+	 * 
+	 * @param action the action to perform on each index
+	 */
+	public void forEachUnordered(IntConsumer action) {
+		for (int i = 0; i < keys.length; i++) if (keys[i] != null) action.accept(i);
+	}
+	
+	/**
+	 * Gets a Spliterator over the indexes in the priority queue, in no particular order
+	 * Unlike the Iterator, it does not report ORDERED : it scans the array indexed by the indexes,
+	 * and splits the range of indexes in halves
+	 * The priority queue must not be modified while the Spliterator is in use
+	 * Worst case is O(1)
+	 * 
+	 * @return a Spliterator over the indexes in the priority queue, in no particular order
+	 */
+	@Override
+	public Spliterator.OfInt spliterator() {
+		return new IndexSpliterator(0, keys.length);
+	}
+	
+	//Scans the indexes in [lo, hi), skipping the ones which are not in the queue
+	private class IndexSpliterator implements Spliterator.OfInt {
+		private int lo;							//Next index to scan
+		private final int hi;					//End of the range, excluded
+		
+		IndexSpliterator(int lo, int hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			for (; lo < hi; lo++) {
+				if (keys[lo] != null) {
+					action.accept(lo++);
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		@Override
+		public void forEachRemaining(IntConsumer action) {
+			for (; lo < hi; lo++) if (keys[lo] != null) action.accept(lo);
+		}
+		
+		@Override
+		public Spliterator.OfInt trySplit() {
+			int mid = (lo + hi) >>> 1;
+			if (mid <= lo) return null;
+			Spliterator.OfInt prefix = new IndexSpliterator(lo, mid);
+			lo = mid;
+			return prefix;
+		}
+		
+		//The number of indexes left to scan, an upper bound of the number of indexes left
+		@Override
+		public long estimateSize() {
+			return hi - lo;
+		}
+		
+		@Override
+		public int characteristics() {
+			return Spliterator.DISTINCT | Spliterator.NONNULL;
+		}
+	}
+	
 	/*******************************
 	 * Iterator
 	 ******************************/
@@ -350,7 +545,7 @@ public class IndexPairingMinPQ<Key> implements Iterable<Integer> {
 		IndexPairingMinPQ<Key> copy;
 		
 		public MyIterator() {
-			copy = new IndexPairingMinPQ<Key>(keys.length, comp);
+			copy = new IndexPairingMinPQ<Key>(keys.length, comp, strategy);
 			for (Node<Key> node : keys) {
 				if (node != null) copy.insert(node.index, node.key); 
 			}
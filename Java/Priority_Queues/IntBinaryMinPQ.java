@@ -0,0 +1,228 @@
+package tools;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ *  The IntBinaryMinPQ class represents a priority queue of int keys.
+ *  It supports the usual insert and delete-the-minimum
+ *  operations, along with methods for peeking at the minimum key,
+ *  testing if the priority queue is empty, and iterating through
+ *  the keys.
+ *
+ *  This implementation is the specialization of BinMinPQ for primitive keys :
+ *  the keys are stored in an array of int, so there is neither boxing
+ *  nor Comparator involved, and the insert and delete-the-minimum operations
+ *  do not allocate anything, apart from resizing the array.
+ *  All operations are using half exchanges, in order to reduce the number of memory access
+ *  The insert and delete-the-minimum operations take
+ *  logarithmic time.
+ *  The min, size, and is-empty operations take constant time.
+ *  Construction takes time proportional to the specified capacity or the number of
+ *  items used to initialize the data structure.
+ *
+ *  @author Tristan Claverie
+ */
+public class IntBinaryMinPQ implements Iterable<Integer> {
+	private int size;							// Number of elements currently on the queue
+	private int[] pq;							// Array storing the Priority Queue
+
+	/**
+	 * Constructs an empty Priority Queue
+	 * Worst case is O(1)
+	 */
+	public IntBinaryMinPQ() {
+		pq = new int[2];
+	}
+
+	/**
+	 * Constructs an empty Priority Queue able to hold the given number of keys
+	 * without resizing
+	 * Worst case is O(n)
+	 *
+	 * @param capacity the initial capacity
+	 *
+	 * @throws java.util.IllegalArgumentException if capacity < 0
+	 */
+	public IntBinaryMinPQ(int capacity) {
+		if (capacity < 0) throw new IllegalArgumentException("Capacity must not be negative");
+		pq = new int[capacity+2];
+	}
+
+	/**
+	 * Initializes a Priority Queue with the specified array
+	 * Worst case is O(n)
+	 *
+	 * @param a an array of keys
+	 */
+	public IntBinaryMinPQ(int[] a) {
+		size = a.length;
+		pq = new int[size+2];
+		for(int i = 0; i < size; pq[i+1] = a[i++]);
+		for(int i = size>>1; i > 0; sink(i--));
+	}
+
+	/**
+     * Is the priority queue empty?
+     * Worst case is O(1)
+     *
+     * @return true if the priority queue is empty; false otherwise
+     */
+	public boolean isEmpty() {
+		return size==0;
+	}
+
+	/**
+     * Returns the number of keys on the priority queue.
+     * Worst case is O(1)
+     *
+     * @return the number of keys on the priority queue
+     */
+	public int size() {
+		return size;
+	}
+
+	/**
+     * Returns a smallest key on the priority queue.
+     * Worst case is O(1)
+     *
+     * @return a smallest key on the priority queue
+     *
+     * @throws java.util.NoSuchElementException if priority queue is empty
+     */
+	public int minKey() {
+		if (isEmpty()) throw new NoSuchElementException("Priority Queue is empty");
+		return pq[1];
+	}
+
+	/**
+     * Adds a new key to the priority queue.
+     * Worst case is O(log(n))
+     *
+     * @param key the key to add to the priority queue
+     */
+	public void insert(int key) {
+		if (size+1 == pq.length) resize(size<<1);
+		pq[++size] = key;
+		swim(size);
+	}
+
+	/**
+     * Removes and returns a smallest key on the priority queue.
+     * Worst case is O(log(n))
+     *
+     * @return the smallest key on the priority queue
+     *
+     * @throws java.util.NoSuchElementException if the priority queue is empty
+     */
+	public int delMin() {
+		if (isEmpty()) throw new NoSuchElementException("Priority Queue is empty");
+		int k = pq[1];
+		pq[1] = pq[size--];
+		int leaf = sinkAll(1);
+		swim(leaf);
+		if (size == (pq.length-1)>>2 && size != 0) resize(size<<1);
+		return k;
+	}
+
+	/*******************************
+	 * Functions for moving downward and upward
+	 ******************************/
+
+	//Moves a key upward
+	private void swim(int i) {
+		int k = pq[i];
+		while(i > 1 && k < pq[i>>1]) {
+			pq[i] = pq[i>>1];
+			i = i>>1;
+		}
+		pq[i] = k;
+	}
+
+	//Moves a key downward
+	private void sink(int i) {
+		int j = i;
+		int k = pq[i];
+		while(i <= size>>1) {
+			j = i<<1;
+			if (j < size && pq[j] > pq[j+1]) j++;
+			if (pq[j] > k) break;
+			pq[i] = pq[j];
+			i = j;
+		}
+		pq[i] = k;
+	}
+
+	//Moves a key all the way to a leaf and returns the index of the leaf
+	private int sinkAll(int i) {
+		int j;
+		int k = pq[i];
+		while(i <= size>>1) {
+			j = i<<1;
+			if (j < size && pq[j] > pq[j+1]) j++;
+			pq[i] = pq[j];
+			i = j;
+		}
+		pq[i] = k;
+		return i;
+	}
+
+	/*******************************
+	 * Function for maintaining the array of keys
+	 ******************************/
+
+	//Resizes the array to the specified capacity
+	private void resize(int n) {
+		int[] array = new int[n+1];
+		for(int i = 1; i <= size; array[i] = pq[i++]);
+		pq = array;
+	}
+
+	/*******************************
+	 * Iterator
+	 ******************************/
+
+	/**
+     * Returns an iterator that iterates over the keys on the priority queue
+     * in ascending order.
+     * The keys can be read without boxing through nextInt().
+     * The iterator doesn't implement remove() since it's optional.
+     * iterator() : Worst case is O(n)
+	 * next() : 	Worst case is O(log(n))
+	 * hasNext() : 	Worst case is O(1)
+	 *
+     * @return an iterator that iterates over the keys in ascending order
+     */
+	@Override
+	public PrimitiveIterator.OfInt iterator() {
+		return new MyIterator();
+	}
+
+	private class MyIterator implements PrimitiveIterator.OfInt {
+		IntBinaryMinPQ copy;
+
+		public MyIterator() {
+			copy = new IntBinaryMinPQ();
+			int[] array = new int[size+2];
+			for (int i = 1; i <= size; array[i] = pq[i++]);
+			copy.size = size;
+			copy.pq = array;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !copy.isEmpty();
+		}
+
+		@Override
+		public int nextInt() {
+			return copy.delMin();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
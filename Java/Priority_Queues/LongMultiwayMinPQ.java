@@ -0,0 +1,295 @@
+package tools;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ *  The LongMultiwayMinPQ class represents a priority queue of long keys.
+ *  It supports the usual insert and delete-the-minimum
+ *  operations, along with methods for peeking at the minimum key,
+ *  testing if the priority queue is empty, and iterating through
+ *  the keys.
+ *
+ *  This implementation is a multiway heap of dimension 2, 4 or 8 specialized for primitive keys,
+ *  laid out so that the children of a key fill one aligned group of d slots :
+ *  the root is placed so that every group of children starts at a multiple of d*8 bytes
+ *  from the start of the array object (its 16 bytes header included). The 8 children of a key
+ *  in a heap of dimension 8 are then one cache line, when the array starts on a cache line,
+ *  which is the case of the large arrays allocated in their own regions by G1.
+ *  A delete-the-minimum on a heap much larger than the caches costs about one cache miss per level,
+ *  and there are three times fewer levels than in a binary heap.
+ *  The slots after the last key hold Long.MAX_VALUE, so the smallest child is found
+ *  by a tournament over the whole group, without bound checks and with conditional moves
+ *  rather than branches : the comparisons of a round are independent of each other.
+ *  The index arithmetic is done with shifts, and the delete-the-minimum moves the last key
+ *  all the way down to a leaf before moving it up, as LongBinaryMinPQ does.
+ *  The insert takes time proportional to log-d(n), the delete-the-minimum to d*log-d(n).
+ *  The min, size, and is-empty operations take constant time.
+ *  Construction takes time proportional to the specified capacity or the number of
+ *  items used to initialize the data structure.
+ *
+ *  @author Tristan Claverie
+ */
+public class LongMultiwayMinPQ implements Iterable<Long> {
+	private final int d;						// Dimension of the heap, 2, 4 or 8
+	private final int log;						// log2(d), the index arithmetic is done with shifts
+	private final int root;						// Index of the root, the groups of children start at a multiple of d
+	private int n;								// Number of elements currently on the queue
+	private long[] pq;							// Array storing the Priority Queue, Long.MAX_VALUE after the last key
+	private static final int HEADER = 2;		// Length of the header of a long[] in slots of 8 bytes (HotSpot, 64 bits)
+
+	/**
+	 * Constructs an empty Priority Queue
+	 * Worst case is O(d)
+	 *
+	 * @param D dimension of the heap
+	 *
+	 * @throws java.util.IllegalArgumentException if D is not 2, 4 or 8
+	 */
+	public LongMultiwayMinPQ(int D) {
+		this(D, 0);
+	}
+
+	/**
+	 * Constructs an empty Priority Queue able to hold the given number of keys
+	 * without resizing
+	 * Worst case is O(n)
+	 *
+	 * @param D dimension of the heap
+	 * @param capacity the initial capacity
+	 *
+	 * @throws java.util.IllegalArgumentException if D is not 2, 4 or 8, or if capacity < 0
+	 */
+	public LongMultiwayMinPQ(int D, int capacity) {
+		if (D != 2 && D != 4 && D != 8) throw new IllegalArgumentException("Dimension should be 2, 4 or 8");
+		if (capacity < 0) throw new IllegalArgumentException("Capacity must not be negative");
+		d = D;
+		log = Integer.numberOfTrailingZeros(D);
+		root = (2*D - HEADER%D - 1) % D;
+		pq = new long[root+capacity+D];
+		Arrays.fill(pq, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Initializes a Priority Queue with the specified array
+	 * Worst case is O(n)
+	 *
+	 * @param a an array of keys
+	 * @param D dimension of the heap
+	 *
+	 * @throws java.util.IllegalArgumentException if D is not 2, 4 or 8
+	 */
+	public LongMultiwayMinPQ(long[] a, int D) {
+		this(D, a.length);
+		n = a.length;
+		System.arraycopy(a, 0, pq, root, n);
+		if (n > 1) for (int i = parent(root+n-1); i >= root; sink(i--));
+	}
+
+	/**
+     * Is the priority queue empty?
+     * Worst case is O(1)
+     *
+     * @return true if the priority queue is empty; false otherwise
+     */
+	public boolean isEmpty() {
+		return n==0;
+	}
+
+	/**
+     * Returns the number of keys on the priority queue.
+     * Worst case is O(1)
+     *
+     * @return the number of keys on the priority queue
+     */
+	public int size() {
+		return n;
+	}
+
+	/**
+     * Returns a smallest key on the priority queue.
+     * Worst case is O(1)
+     *
+     * @return a smallest key on the priority queue
+     *
+     * @throws java.util.NoSuchElementException if priority queue is empty
+     */
+	public long minKey() {
+		if (isEmpty()) throw new NoSuchElementException("Priority Queue is empty");
+		return pq[root];
+	}
+
+	/**
+     * Adds a new key to the priority queue.
+     * Worst case is O(log-d(n))
+     *
+     * @param key the key to add to the priority queue
+     */
+	public void insert(long key) {
+		if (root+n+d >= pq.length) resize(Math.max(n<<1, d));
+		pq[root+n] = key;
+		swim(root+n++);
+	}
+
+	/**
+     * Removes and returns a smallest key on the priority queue.
+     * Worst case is O(d*log-d(n))
+     *
+     * @return the smallest key on the priority queue
+     *
+     * @throws java.util.NoSuchElementException if the priority queue is empty
+     */
+	public long delMin() {
+		if (isEmpty()) throw new NoSuchElementException("Priority Queue is empty");
+		long k = pq[root];
+		int last = root + --n;
+		pq[root] = pq[last];
+		pq[last] = Long.MAX_VALUE;
+		if (n > 1) swim(sinkAll(root));
+		if (n != 0 && root+n+d <= pq.length>>2) resize(n<<1);
+		return k;
+	}
+
+	/*******************************
+	 * General helper functions
+	 ******************************/
+
+	//Index of the parent of i
+	private int parent(int i) {
+		return ((i-root-1)>>log) + root;
+	}
+
+	//Index of the first child of i, the d children are in the same aligned group
+	private int child(int i) {
+		return ((i-root)<<log) + root+1;
+	}
+
+	/*******************************
+	 * Functions for moving downward and upward
+	 ******************************/
+
+	//Moves a key upward
+	private void swim(int i) {
+		long k = pq[i];
+		for (int p; i > root && k < pq[p = parent(i)]; i = p) pq[i] = pq[p];
+		pq[i] = k;
+	}
+
+	//Moves a key downward
+	private void sink(int i) {
+		long k = pq[i];
+		for (int c = child(i), last = root+n-1; c <= last; c = child(i)) {
+			int j = minChild(c);
+			if (pq[j] >= k) break;
+			pq[i] = pq[j];
+			i = j;
+		}
+		pq[i] = k;
+	}
+
+	//Moves a key all the way to a leaf and returns the index of the leaf,
+	//without comparing it to the children : the last key almost always goes back to the bottom
+	private int sinkAll(int i) {
+		long k = pq[i];
+		for (int c = child(i), last = root+n-1; c <= last; c = child(i)) {
+			int j = minChild(c);
+			pq[i] = pq[j];
+			i = j;
+		}
+		pq[i] = k;
+		return i;
+	}
+
+	/***************************
+	 * Finds the minimum child
+	 **************************/
+
+	//Index of the smallest key of the group starting at c. The group is read whole,
+	//the free slots holding Long.MAX_VALUE, and on ties the leftmost key wins :
+	//a free slot is never chosen over a key
+	private int minChild(int c) {
+		switch (d) {
+		case 8:		return minChild8(c);
+		case 4:		return minChild4(c);
+		default:	return (pq[c+1] < pq[c]) ? c+1 : c;
+		}
+	}
+
+	private int minChild4(int c) {
+		long[] a = pq;
+		int i = (a[c+1] < a[c]) ? c+1 : c;
+		int j = (a[c+3] < a[c+2]) ? c+3 : c+2;
+		return (a[j] < a[i]) ? j : i;
+	}
+
+	private int minChild8(int c) {
+		long[] a = pq;
+		int i = (a[c+1] < a[c]) ? c+1 : c;
+		int j = (a[c+3] < a[c+2]) ? c+3 : c+2;
+		int k = (a[c+5] < a[c+4]) ? c+5 : c+4;
+		int l = (a[c+7] < a[c+6]) ? c+7 : c+6;
+		i = (a[j] < a[i]) ? j : i;
+		k = (a[l] < a[k]) ? l : k;
+		return (a[k] < a[i]) ? k : i;
+	}
+
+	/*******************************
+	 * Function for maintaining the array of keys
+	 ******************************/
+
+	//Resizes the array to the specified capacity, the root keeps its index
+	//so the groups stay aligned
+	private void resize(int capacity) {
+		long[] array = new long[root+capacity+d];
+		System.arraycopy(pq, root, array, root, n);
+		Arrays.fill(array, root+n, array.length, Long.MAX_VALUE);
+		pq = array;
+	}
+
+	/*******************************
+	 * Iterator
+	 ******************************/
+
+	/**
+     * Returns an iterator that iterates over the keys on the priority queue
+     * in ascending order.
+     * The keys can be read without boxing through nextLong().
+     * The iterator doesn't implement remove() since it's optional.
+     * iterator() : Worst case is O(n)
+	 * next() : 	Worst case is O(d*log-d(n))
+	 * hasNext() : 	Worst case is O(1)
+	 *
+     * @return an iterator that iterates over the keys in ascending order
+     */
+	@Override
+	public PrimitiveIterator.OfLong iterator() {
+		return new MyIterator();
+	}
+
+	private class MyIterator implements PrimitiveIterator.OfLong {
+		LongMultiwayMinPQ copy;
+
+		public MyIterator() {
+			copy = new LongMultiwayMinPQ(d, n);
+			System.arraycopy(pq, root, copy.pq, root, n);
+			copy.n = n;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !copy.isEmpty();
+		}
+
+		@Override
+		public long nextLong() {
+			return copy.delMin();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
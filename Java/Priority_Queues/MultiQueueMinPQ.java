@@ -0,0 +1,319 @@
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ *  The MultiQueueMinPQ class represents a relaxed priority queue of generic keys
+ *  which can be used by several threads at the same time.
+ *  It supports the usual insert and delete-the-minimum operations.
+ *  It also supports methods for peeking at the minimum key,
+ *  testing if the priority queue is empty, and iterating through
+ *  the keys.
+ *  It is possible to build the priority queue using a Comparator.
+ *  If not, the natural order relation between the keys will be used.
+ *
+ *  This implementation is a MultiQueue (Rihani, Sanders and Dementiev) :
+ *  the keys are spread over c*threads shards, each one being a MultiwayMinPQ
+ *  guarded by its own lock. An insert puts the key in a random shard,
+ *  a delete-the-minimum compares the minimum keys of a few random shards
+ *  and deletes the smallest one. The locks are only tried : a thread which finds
+ *  a shard busy picks other shards instead of waiting.
+ *  The minimum key of each shard is cached in a volatile field, so that the shards
+ *  can be compared, and the empty ones skipped, without taking any lock.
+ *
+ *  The delete-the-minimum operation does not always return the smallest key of the queue,
+ *  but one which is close to it : the rank error is the number of keys smaller than
+ *  the one returned. It grows with the number of shards per thread and decreases
+ *  with the number of shards compared by a delete-the-minimum (the choices).
+ *  When tracking is enabled, every delete-the-minimum then counts the keys smaller than
+ *  the one returned, shard by shard under the lock of the shard : only the subtrees
+ *  of a shard whose root is smaller are visited. As the shards are not locked all at once,
+ *  a key moved by a concurrent operation may be missed or counted twice.
+ *
+ *  For simplified notations, logarithm in base 4 will be referred as log-4
+ *  The insert takes expected time proportional to log-4(n)
+ *  The delete-the-minimum operation takes expected time proportional to choices + 4*log-4(n)
+ *  The min-key operation takes time proportional to the number of shards.
+ *  The is-empty and size operations take time proportional to the number of threads.
+ *
+ *  @author Tristan Claverie
+ */
+@SuppressWarnings("unchecked")
+public class MultiQueueMinPQ<Key> implements Iterable<Key> {
+	private static final int D = 4;				//Dimension of the shards
+	private final Shard[] shards;				//Sequential queues holding the keys
+	private final int choices;					//Number of shards compared by delMin
+	private final LongAdder n;					//Number of keys currently in the queue
+	private final Comparator<Key> comp;			//Comparator over the keys
+	private volatile boolean tracking;			//Whether the rank error is measured
+	private final LongAdder deletions;			//Number of delMin measured
+	private final LongAdder rankErrors;			//Sum of the rank errors measured
+	private final AtomicLong maxRankError;		//Maximum rank error measured
+
+	/**
+     * Initializes an empty priority queue for the given number of threads,
+     * with 2 shards per thread and 2 choices
+     * Worst case is O(threads)
+     * @param threads number of threads using the queue
+     * @throws java.lang.IllegalArgumentException if threads < 1
+     */
+	public MultiQueueMinPQ(int threads) {
+		this(null, threads, 2, 2);
+	}
+
+	/**
+     * Initializes an empty priority queue for the given number of threads
+     * Worst case is O(c*threads)
+     * @param threads number of threads using the queue
+     * @param c number of shards per thread
+     * @param choices number of shards compared by a delete-the-minimum
+     * @throws java.lang.IllegalArgumentException if threads < 1, c < 1 or choices < 1
+     */
+	public MultiQueueMinPQ(int threads, int c, int choices) {
+		this(null, threads, c, choices);
+	}
+
+	/**
+     * Initializes an empty priority queue for the given number of threads
+     * Worst case is O(c*threads)
+     * @param C a Comparator over the keys
+     * @param threads number of threads using the queue
+     * @param c number of shards per thread
+     * @param choices number of shards compared by a delete-the-minimum
+     * @throws java.lang.IllegalArgumentException if threads < 1, c < 1 or choices < 1
+     */
+	@SuppressWarnings("rawtypes")
+	public MultiQueueMinPQ(Comparator<Key> C, int threads, int c, int choices) {
+		if (threads < 1) throw new IllegalArgumentException("Number of threads should be 1 or over");
+		if (c < 1) throw new IllegalArgumentException("Number of shards per thread should be 1 or over");
+		if (choices < 1) throw new IllegalArgumentException("Number of choices should be 1 or over");
+		comp = (C == null) ? new MyComparator() : C;
+		this.choices = choices;
+		shards = (Shard[]) new MultiQueueMinPQ.Shard[c*threads];
+		for (int i = 0; i < shards.length; i++) shards[i] = new Shard();
+		n = new LongAdder();
+		deletions = new LongAdder();
+		rankErrors = new LongAdder();
+		maxRankError = new AtomicLong();
+	}
+
+	/**
+	 * Whether the priority queue is empty
+	 * The result is exact when no other thread is updating the queue
+	 * Worst case is O(threads)
+	 * @return true if the priority queue is empty, false if not
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Number of elements currently on the priority queue
+	 * The result is exact when no other thread is updating the queue
+	 * Worst case is O(threads)
+	 * @return the number of elements on the priority queue
+	 */
+	public int size() {
+		return (int) Math.max(0, n.sum());
+	}
+
+	/**
+	 * Puts a Key on the priority queue
+	 * Expected worst case is O(log-4(n))
+	 * @param key a Key
+	 * @throws java.lang.IllegalArgumentException if the key is null
+	 */
+	public void insert(Key key) {
+		if (key == null) throw new IllegalArgumentException("Can't insert a null key");
+		ThreadLocalRandom rnd = ThreadLocalRandom.current();
+		while (true) {
+			Shard s = shards[rnd.nextInt(shards.length)];
+			if (!s.lock.tryLock()) continue;
+			try {
+				s.pq.insert(key);
+				s.min = s.pq.minKey();
+			} finally {
+				s.lock.unlock();
+			}
+			n.increment();
+			return;
+		}
+	}
+
+	/**
+	 * Gets the minimum key currently in the queue
+	 * Worst case is O(c*threads)
+	 * @throws java.util.NoSuchElementException if the priority queue is empty
+	 * @return the minimum key currently in the priority queue
+	 */
+	public Key minKey() {
+		Key min = null;
+		for (Shard s : shards) {
+			Key k = s.min;
+			if (k != null && (min == null || comp.compare(k, min) < 0)) min = k;
+		}
+		if (min == null) throw new NoSuchElementException("Priority queue is empty");
+		return min;
+	}
+
+	/**
+	 * Deletes a key close to the minimum
+	 * Expected worst case is O(choices + 4*log-4(n))
+	 * @throws java.util.NoSuchElementException if the priority queue is empty
+	 * @return a key close to the minimum
+	 */
+	public Key delMin() {
+		ThreadLocalRandom rnd = ThreadLocalRandom.current();
+		while (true) {
+			Shard best = null;
+			Key bestMin = null;
+			for (int i = 0; i < choices; i++) {
+				Shard s = shards[rnd.nextInt(shards.length)];
+				Key k = s.min;
+				if (k != null && (bestMin == null || comp.compare(k, bestMin) < 0)) {
+					best = s;
+					bestMin = k;
+				}
+			}
+			//Every shard tried was empty, takes any shard which is not
+			if (best == null) {
+				int start = rnd.nextInt(shards.length);
+				for (int i = 0; i < shards.length && best == null; i++) {
+					Shard s = shards[(start+i) % shards.length];
+					if (s.min != null) best = s;
+				}
+				if (best == null) throw new NoSuchElementException("Priority queue is empty");
+			}
+			if (!best.lock.tryLock()) continue;
+			Key min;
+			try {
+				if (best.pq.isEmpty()) continue;
+				min = best.pq.delMin();
+				best.min = best.pq.isEmpty() ? null : best.pq.minKey();
+			} finally {
+				best.lock.unlock();
+			}
+			n.decrement();
+			if (tracking) track(min);
+			return min;
+		}
+	}
+
+	/***************************
+	 * Rank error
+	 **************************/
+
+	/**
+	 * Enables or disables the measure of the rank error
+	 * When enabled, a delete-the-minimum takes time proportional to the number of shards
+	 * plus d times its rank error, and locks every shard in turn
+	 * Worst case is O(1)
+	 * @param enabled whether the rank error is measured
+	 */
+	public void setRankErrorTracking(boolean enabled) {
+		tracking = enabled;
+	}
+
+	/**
+	 * Forgets the rank errors measured so far
+	 * Worst case is O(1)
+	 */
+	public void resetRankErrors() {
+		deletions.reset();
+		rankErrors.reset();
+		maxRankError.set(0);
+	}
+
+	/**
+	 * Average rank error of the delete-the-minimum measured so far
+	 * The rank error of a delete-the-minimum is the number of keys smaller than the one returned
+	 * Worst case is O(threads)
+	 * @return the average rank error, 0 if nothing was measured
+	 */
+	public double meanRankError() {
+		long count = deletions.sum();
+		return count == 0 ? 0 : (double) rankErrors.sum() / count;
+	}
+
+	/**
+	 * Maximum rank error of the delete-the-minimum measured so far
+	 * Worst case is O(1)
+	 * @return the maximum rank error, 0 if nothing was measured
+	 */
+	public long maxRankError() {
+		return maxRankError.get();
+	}
+
+	//Counts the keys smaller than the one deleted, the shards whose minimum is not smaller are skipped
+	private void track(Key deleted) {
+		long error = 0;
+		for (Shard s : shards) {
+			Key k = s.min;
+			if (k == null || comp.compare(k, deleted) >= 0) continue;
+			s.lock.lock();
+			try {
+				error += s.pq.countLess(deleted);
+			} finally {
+				s.lock.unlock();
+			}
+		}
+		deletions.increment();
+		rankErrors.add(error);
+		maxRankError.accumulateAndGet(error, Math::max);
+	}
+
+	/***************************
+	 * Shards
+	 **************************/
+
+	//Sequential queue with its lock and a cached minimum, null when empty
+	private final class Shard {
+		final ReentrantLock lock = new ReentrantLock();
+		final MultiwayMinPQ<Key> pq = new MultiwayMinPQ<Key>(comp, D);
+		volatile Key min;
+	}
+
+	/***************************
+	 * Iterator
+	 **************************/
+
+	/**
+	 * Gets an Iterator over the keys in the priority queue in ascending order
+	 * The keys are copied shard by shard, the updates made to a shard
+	 * after it has been copied are not reflected.
+	 * The Iterator does not implement the remove() method
+	 * iterator() : Worst case is O(n*log-4(n))
+	 * next() :		Worst case is O(4*log-4(n))
+	 * hasNext() : 	Worst case is O(1)
+	 * @return an Iterator over the keys in the priority queue in ascending order
+	 */
+	public Iterator<Key> iterator() {
+		MultiwayMinPQ<Key> copy = new MultiwayMinPQ<Key>(comp, D);
+		for (Shard s : shards) {
+			s.lock.lock();
+			try {
+				for (Key k : s.pq) copy.insert(k);
+			} finally {
+				s.lock.unlock();
+			}
+		}
+		return copy.iterator();
+	}
+
+	/***************************
+	 * Comparator
+	 **************************/
+
+	//default Comparator
+	private class MyComparator implements Comparator<Key> {
+		@Override
+		public int compare(Key key1, Key key2) {
+			return ((Comparable<Key>) key1).compareTo(key2);
+		}
+	}
+
+}
@@ -1,6 +1,11 @@
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.Comparator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 
 /**
  *  The MultiwayMinPQ class represents a priority queue of generic keys.
@@ -17,6 +22,10 @@ import java.util.NoSuchElementException;
  *  The insert takes time proportional to log-d(n)
  *  The is-empty, min-key and size operations take constant time.
  *  Constructor takes time proportional to the specified capacity.
+ *  insertAll appends a batch of keys at once, swims them while the batch is no larger than the heap,
+ *  and re-heapifies the subtrees holding them otherwise : it takes time proportional to m*log-d(n)
+ *  for a batch of m keys, and linear time in the size of the batch once it is larger than the heap.
+ *  forEachUnordered and the spliterator visit the keys in the order of the array, in linear time.
  *
  *  @author Tristan Claverie
  */
@@ -27,6 +36,7 @@ public class MultiwayMinPQ<Key> implements Iterable<Key> {
 	private int order;					//Number of levels of the tree
 	private Key[] keys;					//Array of keys
 	private final Comparator<Key> comp;	//Comparator over the keys
+	private static final int SORT_SHIFT = 1;	//delMin(k) sorts the array if k >= n>>SORT_SHIFT
 	
 	
 	/**
@@ -60,7 +70,7 @@ public class MultiwayMinPQ<Key> implements Iterable<Key> {
 	
 	/**
      * Initializes a priority queue with given indexes
-     * Worst case is O(n*log-d(n))
+     * Worst case is O(n)
      * @param D dimension of the heap
      * @param a an array of keys
      * @throws java.lang.IllegalArgumentException if D < 2
@@ -71,12 +81,12 @@ public class MultiwayMinPQ<Key> implements Iterable<Key> {
 		order = 1;
 		keys = (Key[]) new Comparable[D << 1];
 		comp = new MyComparator();
-		for (Key k : a) insert(k);
+		insertAll(a);
 	}
 	
 	/**
      * Initializes a priority queue with given indexes
-     * Worst case is O(a*log-d(n))
+     * Worst case is O(n)
      * @param D dimension of the heap
      * @param C a Comparator over the keys
      * @param a an array of keys
@@ -88,7 +98,7 @@ public class MultiwayMinPQ<Key> implements Iterable<Key> {
 		order = 1;
 		keys = (Key[]) new Comparable[D << 1];
 		comp = C;
-		for (Key k : a) insert(k);
+		insertAll(a);
 	}
 
 	/**
@@ -123,6 +133,42 @@ public class MultiwayMinPQ<Key> implements Iterable<Key> {
 		}
 	}
 
+	/**
+	 * Puts the keys of the array on the priority queue
+	 * See insertAll(Collection)
+	 * Worst case is O(m*log-d(n)), m being the number of keys, and O(m) if m is larger than the heap
+	 * @param a an array of keys
+	 */
+	public void insertAll(Key[] a) {
+		insertAll(Arrays.asList(a));
+	}
+	
+	/**
+	 * Puts the keys of the collection on the priority queue
+	 * The array grows once for the whole batch, and the keys are appended to the heap.
+	 * A batch no larger than the heap is then swum key by key, a random key only swims up
+	 * a constant number of levels on average. A larger one is merged by heapifying
+	 * the subtrees which hold the new keys, from the bottom up
+	 * Unlike BinaryMinPQ, the heapify is about as fast as the swims on random keys here, slightly faster
+	 * on small batches, as a node has d children to compare anyway. The threshold is kept the same as in
+	 * BinaryMinPQ, where swimming is clearly faster ; the heapify path guarantees the O(m) bound, which a
+	 * batch of keys smaller than the heap, in descending order, would break by swimming each of them up to the root
+	 * Worst case is O(m*log-d(n)), m being the number of keys, and O(m) if m is larger than the heap
+	 * @param c a collection of keys
+	 */
+	public void insertAll(Collection<? extends Key> c) {
+		int o = order, capacity = keys.length-d;
+		while (n+c.size() >= capacity) capacity = getN(++o);
+		if (o != order) {
+			resize(capacity+d);
+			order = o;
+		}
+		int first = n;
+		for (Key key : c) keys[d + n++] = key;
+		if (n-first <= first)	for (int i = first; i < n; swim(i++));
+		else 					heapify(first, n-1);
+	}
+
 	/**
 	 * Gets the minimum key currently in the queue
 	 * Worst case is O(1)
@@ -134,6 +180,17 @@ public class MultiwayMinPQ<Key> implements Iterable<Key> {
 		return keys[d];
 	}
 
+	/**
+	 * Number of keys strictly smaller than the given key
+	 * Only the subtrees whose root is smaller than the key are visited
+	 * Worst case is O(d*r), r being the number of keys counted
+	 * @param key a Key
+	 * @return the number of keys smaller than key
+	 */
+	public int countLess(Key key) {
+		return countLess(0, key);
+	}
+
 	/**
 	 * Deletes the minimum key
 	 * Worst case is O(d*log-d(n))
@@ -154,6 +211,54 @@ public class MultiwayMinPQ<Key> implements Iterable<Key> {
 		return min;
 	}
 	
+	/**
+	 * Deletes the k smallest keys and adds them to the collection, in ascending order
+	 * The keys are deleted by a loop of delete-the-minimum which shrinks the array only once at the end.
+	 * If the batch is a large part of the queue, the array is sorted instead : the k first keys are deleted,
+	 * and the others, once moved to the front, still form a heap
+	 * Worst case is O(k*d*log-d(n)), or O(n*log(n)) when the array is sorted
+	 * @param k the number of keys to delete
+	 * @param out the collection the keys are added to
+	 * @throws java.lang.IllegalArgumentException if k < 0
+	 * @return the number of keys deleted, k or the size of the queue if it is smaller
+	 */
+	public int delMin(int k, Collection<? super Key> out) {
+		if (k < 0) throw new IllegalArgumentException("Number of keys must not be negative");
+		k = Math.min(k, n);
+		if (k == 0) return 0;
+		if (k >= n>>SORT_SHIFT) {
+			Arrays.sort(keys, d, n+d, comp);
+			for (int i = d; i < k+d; out.add(keys[i++]));
+			System.arraycopy(keys, k+d, keys, d, n-k);
+			Arrays.fill(keys, n-k+d, n+d, null);
+			n -= k;
+		} else {
+			for (int i = 0; i < k; i++) {
+				exch(0, --n);
+				sink(0);
+				out.add(keys[n+d]);
+				keys[n+d] = null;
+			}
+		}
+		int o = order;
+		while (o > 1 && n <= getN(o-2)) o--;
+		if (o != order) {
+			resize(getN(o)+d);
+			order = o;
+		}
+		return k;
+	}
+	
+	/**
+	 * Deletes all the keys and adds them to the collection, in ascending order
+	 * Worst case is O(n*log(n))
+	 * @param out the collection the keys are added to
+	 * @return the number of keys deleted
+	 */
+	public int drainTo(Collection<? super Key> out) {
+		return delMin(n, out);
+	}
+	
 	/***************************
 	 * General helper functions
 	 **************************/
@@ -179,6 +284,14 @@ public class MultiwayMinPQ<Key> implements Iterable<Key> {
 		return (1-((int)Math.pow(d, order+1)))/(1-d);
 	}
 	
+	//Counts the keys smaller than key in the subtree of i
+	private int countLess(int i, Key key) {
+		if (i >= n || comp.compare(keys[i+d], key) >= 0) return 0;
+		int count = 1;
+		for (int c = d*i+1; c <= d*i+d && c < n; c++) count += countLess(c, key);
+		return count;
+	}
+	
 	/***************************
 	 * Functions for moving upward or downward
 	 **************************/
@@ -203,6 +316,15 @@ public class MultiwayMinPQ<Key> implements Iterable<Key> {
 		}
 	}
 	
+	//Restores the heap above the keys appended at positions first..last : the parents of the new keys
+	//are sunk, then their parents, and so on up to the root. Every position is sunk after its children
+	private void heapify(int first, int last) {
+		for (int lo = (first-1)/d, hi = (last-1)/d; ; lo = (lo-1)/d, hi = (hi-1)/d) {
+			for (int i = hi; i >= lo; sink(i--));
+			if (lo == 0) break;
+		}
+	}
+	
 	/***************************
 	 * Deletes the minimum child
 	 **************************/
@@ -276,6 +398,32 @@ public class MultiwayMinPQ<Key> implements Iterable<Key> {
 		}
 	}
 	
+	/***************************
+	 * Unordered traversal
+	 **************************/
+	
+	/**
+	 * Performs the given action on each key in the priority queue, in no particular order
+	 * The priority queue must not be modified by the action
+	 * Worst case is O(n)
+	 * @param action the action to perform on each key
+	 */
+	public void forEachUnordered(Consumer<? super Key> action) {
+		for (int i = d; i < n+d; i++) action.accept(keys[i]);
+	}
+	
+	/**
+	 * Gets a Spliterator over the keys in the priority queue, in no particular order
+	 * Unlike the Iterator, it does not report ORDERED : it splits the array of the heap in halves
+	 * The priority queue must not be modified while the Spliterator is in use
+	 * Worst case is O(1)
+	 * @return a Spliterator over the keys in the priority queue, in no particular order
+	 */
+	@Override
+	public Spliterator<Key> spliterator() {
+		return Spliterators.spliterator(keys, d, n+d, 0);
+	}
+	
 	/***************************
 	 * Comparator
 	 **************************/
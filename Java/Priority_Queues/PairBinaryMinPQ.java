@@ -0,0 +1,275 @@
+package tools;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ *  The PairBinaryMinPQ class represents a priority queue of values
+ *  ordered by a long priority.
+ *  It supports the usual insert and delete-the-minimum (poll)
+ *  operations, along with methods for peeking at the value of minimum priority,
+ *  testing if the priority queue is empty, and iterating through
+ *  the values.
+ *
+ *  This implementation uses a binary heap stored as two parallel arrays :
+ *  an array of long for the priorities and an array of Object for the values.
+ *  The heap is ordered by reading the priorities only, which are contiguous in memory,
+ *  so there is neither a wrapper object per value nor a Comparator involved.
+ *  All operations are using half exchanges, in order to reduce the number of memory access
+ *  The insert and poll operations take logarithmic time.
+ *  The peek, min-priority, size, and is-empty operations take constant time.
+ *  Construction takes time proportional to the specified capacity or the number of
+ *  items used to initialize the data structure.
+ *
+ *  @author Tristan Claverie
+ */
+@SuppressWarnings("unchecked")
+public class PairBinaryMinPQ<Value> implements Iterable<Value> {
+	private int size;							// Number of elements currently on the queue
+	private long[] pq;							// Priorities of the heap
+	private Object[] values;					// values[i] is the value of priority pq[i]
+
+	/**
+	 * Constructs an empty Priority Queue
+	 * Worst case is O(1)
+	 */
+	public PairBinaryMinPQ() {
+		pq = new long[2];
+		values = new Object[2];
+	}
+
+	/**
+	 * Constructs an empty Priority Queue able to hold the given number of values
+	 * without resizing
+	 * Worst case is O(n)
+	 *
+	 * @param capacity the initial capacity
+	 *
+	 * @throws java.util.IllegalArgumentException if capacity < 0
+	 */
+	public PairBinaryMinPQ(int capacity) {
+		if (capacity < 0) throw new IllegalArgumentException("Capacity must not be negative");
+		pq = new long[capacity+2];
+		values = new Object[capacity+2];
+	}
+
+	/**
+	 * Initializes a Priority Queue with the specified priorities and values
+	 * Worst case is O(n)
+	 *
+	 * @param priorities an array of priorities
+	 * @param a an array of values, a[i] having the priority priorities[i]
+	 *
+	 * @throws java.util.IllegalArgumentException if the arrays have different lengths
+	 */
+	public PairBinaryMinPQ(long[] priorities, Value[] a) {
+		if (priorities.length != a.length) throw new IllegalArgumentException("Arrays must have the same length");
+		size = a.length;
+		pq = new long[size+2];
+		values = new Object[size+2];
+		for(int i = 0; i < size; i++) {
+			pq[i+1] = priorities[i];
+			values[i+1] = a[i];
+		}
+		for(int i = size>>1; i > 0; sink(i--));
+	}
+
+	/**
+     * Is the priority queue empty?
+     * Worst case is O(1)
+     *
+     * @return true if the priority queue is empty; false otherwise
+     */
+	public boolean isEmpty() {
+		return size==0;
+	}
+
+	/**
+     * Returns the number of values on the priority queue.
+     * Worst case is O(1)
+     *
+     * @return the number of values on the priority queue
+     */
+	public int size() {
+		return size;
+	}
+
+	/**
+     * Returns a value of minimum priority.
+     * Worst case is O(1)
+     *
+     * @return a value of minimum priority
+     *
+     * @throws java.util.NoSuchElementException if priority queue is empty
+     */
+	public Value peek() {
+		if (isEmpty()) throw new NoSuchElementException("Priority Queue is empty");
+		return (Value) values[1];
+	}
+
+	/**
+     * Returns the minimum priority on the priority queue.
+     * Worst case is O(1)
+     *
+     * @return the minimum priority
+     *
+     * @throws java.util.NoSuchElementException if priority queue is empty
+     */
+	public long minPriority() {
+		if (isEmpty()) throw new NoSuchElementException("Priority Queue is empty");
+		return pq[1];
+	}
+
+	/**
+     * Adds a new value with the given priority to the priority queue.
+     * Worst case is O(log(n))
+     *
+     * @param priority the priority of the value
+     * @param value the value to add to the priority queue
+     */
+	public void insert(long priority, Value value) {
+		if (size+1 == pq.length) resize(size<<1);
+		pq[++size] = priority;
+		values[size] = value;
+		swim(size);
+	}
+
+	/**
+     * Removes and returns a value of minimum priority.
+     * Worst case is O(log(n))
+     *
+     * @return a value of minimum priority
+     *
+     * @throws java.util.NoSuchElementException if the priority queue is empty
+     */
+	public Value poll() {
+		if (isEmpty()) throw new NoSuchElementException("Priority Queue is empty");
+		Value v = (Value) values[1];
+		pq[1] = pq[size];
+		values[1] = values[size];
+		values[size--] = null;
+		int leaf = sinkAll(1);
+		swim(leaf);
+		if (size == (pq.length-1)>>2 && size != 0) resize(size<<1);
+		return v;
+	}
+
+	/*******************************
+	 * Functions for moving downward and upward
+	 ******************************/
+
+	//Moves a pair upward
+	private void swim(int i) {
+		long k = pq[i];
+		Object v = values[i];
+		while(i > 1 && k < pq[i>>1]) {
+			pq[i] = pq[i>>1];
+			values[i] = values[i>>1];
+			i = i>>1;
+		}
+		pq[i] = k;
+		values[i] = v;
+	}
+
+	//Moves a pair downward
+	private void sink(int i) {
+		int j = i;
+		long k = pq[i];
+		Object v = values[i];
+		while(i <= size>>1) {
+			j = i<<1;
+			if (j < size && pq[j] > pq[j+1]) j++;
+			if (pq[j] > k) break;
+			pq[i] = pq[j];
+			values[i] = values[j];
+			i = j;
+		}
+		pq[i] = k;
+		values[i] = v;
+	}
+
+	//Moves a pair all the way to a leaf and returns the index of the leaf
+	private int sinkAll(int i) {
+		int j;
+		long k = pq[i];
+		Object v = values[i];
+		while(i <= size>>1) {
+			j = i<<1;
+			if (j < size && pq[j] > pq[j+1]) j++;
+			pq[i] = pq[j];
+			values[i] = values[j];
+			i = j;
+		}
+		pq[i] = k;
+		values[i] = v;
+		return i;
+	}
+
+	/*******************************
+	 * Function for maintaining the arrays
+	 ******************************/
+
+	//Resizes the arrays to the specified capacity
+	private void resize(int n) {
+		long[] array = new long[n+1];
+		Object[] objects = new Object[n+1];
+		for(int i = 1; i <= size; i++) {
+			array[i] = pq[i];
+			objects[i] = values[i];
+		}
+		pq = array;
+		values = objects;
+	}
+
+	/*******************************
+	 * Iterator
+	 ******************************/
+
+	/**
+     * Returns an iterator that iterates over the values on the priority queue
+     * in ascending order of priority.
+     * The iterator doesn't implement remove() since it's optional.
+     * iterator() : Worst case is O(n)
+	 * next() : 	Worst case is O(log(n))
+	 * hasNext() : 	Worst case is O(1)
+	 *
+     * @return an iterator that iterates over the values in ascending order of priority
+     */
+	@Override
+	public Iterator<Value> iterator() {
+		return new MyIterator();
+	}
+
+	private class MyIterator implements Iterator<Value> {
+		PairBinaryMinPQ<Value> copy;
+
+		public MyIterator() {
+			copy = new PairBinaryMinPQ<Value>();
+			long[] array = new long[size+2];
+			Object[] objects = new Object[size+2];
+			for (int i = 1; i <= size; i++) {
+				array[i] = pq[i];
+				objects[i] = values[i];
+			}
+			copy.size = size;
+			copy.pq = array;
+			copy.values = objects;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !copy.isEmpty();
+		}
+
+		@Override
+		public Value next() {
+			return copy.poll();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
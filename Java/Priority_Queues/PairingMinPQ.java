@@ -1,8 +1,13 @@
 package tools;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 
 /**
@@ -13,10 +18,17 @@ import java.util.NoSuchElementException;
  *  the keys.
  *  
  *  This implementation uses a binary tree representation with two pointers.
+ *  The trees left by a delete-the-minimum are combined with the PairingStrategy
+ *  given at construction, two pass by default, without recursion.
  *  The delete-the-minimum operations take amortized logarithmic time.
  *  The insert, min, size, and is-empty operations take constant time.
  *  Construction takes time proportional to the number of
  *  items used to initialize the data structure.
+ *  forEachUnordered and the spliterator walk the trees with an explicit stack, in linear time.
+ *
+ *  The priority queue can be built with a pool of Nodes : the Nodes of the deleted keys
+ *  are kept in a free list, up to the capacity of the pool, and reused by the next inserts.
+ *  Once the pool is warm, a sequence of inserts and delete-the-minimum allocates nothing.
  *
  *  @author Tristan Claverie
  */
@@ -25,6 +37,11 @@ public class PairingMinPQ<Key> implements Iterable<Key> {
 	private Node head;						//Head of the Priority Queue
 	private int size;						//Number of elements currently on the queue
 	private final Comparator<Key> comp;		//A Comparator over the keys
+	private final PairingStrategy strategy;	//How the trees are combined by delete-the-minimum
+	private Node pending;					//Auxiliary list of trees, linked by sibling (auxiliary two pass only)
+	private final int poolCapacity;			//Maximum number of free Nodes kept
+	private Node free;						//Free list of Nodes, linked by sibling
+	private int freeSize;					//Number of Nodes in the free list
 	
 	//Represents a Node of the heap
 	private class Node {
@@ -38,6 +55,8 @@ public class PairingMinPQ<Key> implements Iterable<Key> {
 	 */
 	public PairingMinPQ() {
 		comp = new MyComparator();
+		poolCapacity = 0;
+		strategy = PairingStrategy.TWO_PASS;
 	}
 	
 	/**
@@ -48,6 +67,73 @@ public class PairingMinPQ<Key> implements Iterable<Key> {
 	 */
 	public PairingMinPQ(Comparator<Key> C) {
 		comp = C;
+		poolCapacity = 0;
+		strategy = PairingStrategy.TWO_PASS;
+	}
+	
+	/**
+	 * Constructs an empty Priority Queue with a pool of Nodes
+	 * Worst case is O(1)
+	 * 
+	 * @param poolCapacity maximum number of free Nodes kept for reuse
+	 * 
+	 * @throws java.lang.IllegalArgumentException if poolCapacity < 0
+	 */
+	public PairingMinPQ(int poolCapacity) {
+		if (poolCapacity < 0) throw new IllegalArgumentException("Capacity of the pool should be 0 or over");
+		comp = new MyComparator();
+		this.poolCapacity = poolCapacity;
+		strategy = PairingStrategy.TWO_PASS;
+	}
+	
+	/**
+	 * Constructs an empty Priority Queue with the given Comparator and a pool of Nodes
+	 * Worst case is O(1)
+	 * 
+	 * @param C a Comparator over the keys
+	 * @param poolCapacity maximum number of free Nodes kept for reuse
+	 * 
+	 * @throws java.lang.IllegalArgumentException if poolCapacity < 0
+	 */
+	public PairingMinPQ(Comparator<Key> C, int poolCapacity) {
+		if (poolCapacity < 0) throw new IllegalArgumentException("Capacity of the pool should be 0 or over");
+		comp = C;
+		this.poolCapacity = poolCapacity;
+		strategy = PairingStrategy.TWO_PASS;
+	}
+	
+	/**
+	 * Constructs an empty Priority Queue with the given strategy
+	 * Worst case is O(1)
+	 * 
+	 * @param strategy how the trees are combined by delete-the-minimum
+	 * 
+	 * @throws java.lang.IllegalArgumentException if the strategy is null
+	 */
+	public PairingMinPQ(PairingStrategy strategy) {
+		if (strategy == null) throw new IllegalArgumentException("Specified strategy must not be null");
+		comp = new MyComparator();
+		poolCapacity = 0;
+		this.strategy = strategy;
+	}
+	
+	/**
+	 * Constructs an empty Priority Queue with the given Comparator, strategy and pool of Nodes
+	 * Worst case is O(1)
+	 * 
+	 * @param C a Comparator over the keys, null for the natural order
+	 * @param strategy how the trees are combined by delete-the-minimum
+	 * @param poolCapacity maximum number of free Nodes kept for reuse
+	 * 
+	 * @throws java.lang.IllegalArgumentException if the strategy is null
+	 * @throws java.lang.IllegalArgumentException if poolCapacity < 0
+	 */
+	public PairingMinPQ(Comparator<Key> C, PairingStrategy strategy, int poolCapacity) {
+		if (strategy == null) throw new IllegalArgumentException("Specified strategy must not be null");
+		if (poolCapacity < 0) throw new IllegalArgumentException("Capacity of the pool should be 0 or over");
+		comp = (C == null) ? new MyComparator() : C;
+		this.poolCapacity = poolCapacity;
+		this.strategy = strategy;
 	}
 	
 	/**
@@ -58,6 +144,8 @@ public class PairingMinPQ<Key> implements Iterable<Key> {
 	 */
 	public PairingMinPQ(Key[] a) {
 		comp = new MyComparator();
+		poolCapacity = 0;
+		strategy = PairingStrategy.TWO_PASS;
 		for (Key k : a) insert(k);
 	}
 	
@@ -70,6 +158,8 @@ public class PairingMinPQ<Key> implements Iterable<Key> {
 	 */
 	public PairingMinPQ(Comparator<Key> C, Key[] a) {
 		comp = C;
+		poolCapacity = 0;
+		strategy = PairingStrategy.TWO_PASS;
 		for (Key k : a) insert(k);
 	}
 	
@@ -115,9 +205,12 @@ public class PairingMinPQ<Key> implements Iterable<Key> {
      */
 	public void insert(Key k) {
 		if (k == null) throw new IllegalArgumentException("Given key mut not be null");
-		Node insert = new Node();
-		insert.key = k;
-		head = meld(head, insert);
+		Node x = node(k);
+		if (strategy == PairingStrategy.AUXILIARY_TWO_PASS && head != null && !greater(head.key, k)) {
+			x.sibling = pending;
+			pending = x;
+		}
+		else head = meld(head, x);
 		size++;
 	}
 	
@@ -131,12 +224,58 @@ public class PairingMinPQ<Key> implements Iterable<Key> {
      */
 	public Key delMin() {
 		if (isEmpty()) throw new NoSuchElementException();
-		Key min = head.key;
-		head = mergePairs(head.child);
+		Node x = head;
+		Key min = x.key;
+		head = (strategy == PairingStrategy.MULTIPASS) ? multipass(x.child) : twoPass(x.child);
+		if (pending != null) {
+			head = meld(head, multipass(pending));
+			pending = null;
+		}
 		size--;
+		recycle(x);
 		return min;
 	}
 	
+	/**
+     * Removes the k smallest keys on the priority queue and adds them to the collection,
+     * in ascending order.
+     * A small batch is a loop of delete-the-minimum. If the batch is at least half of the queue,
+     * the Nodes are linked in one list by a walk of the trees, their keys are copied to an array and sorted once,
+     * the k first are removed and the others are written back in ascending order into the Nodes left,
+     * which are chained : they form a path,
+     * which the next delete-the-minimum walks down in constant time.
+     * Worst case is O(k*log(n)) (amortized), or O(n*log(n)) when the keys are sorted
+     * 
+     * @param k the number of keys to remove
+     * @param out the collection the keys are added to
+     * 
+     * @return the number of keys removed, k or the size of the queue if it is smaller
+     * 
+     * @throws java.util.IllegalArgumentException if k < 0
+     */
+	public int delMin(int k, Collection<? super Key> out) {
+		if (k < 0) throw new IllegalArgumentException("Number of keys must not be negative");
+		int n = size;
+		k = Math.min(k, n);
+		if (k == 0) return 0;
+		if (k >= n>>1) sortedDelMin(k, out);
+		else 		   for (int i = 0; i < k; i++) out.add(delMin());
+		return k;
+	}
+	
+	/**
+     * Removes all the keys on the priority queue and adds them to the collection,
+     * in ascending order.
+     * Worst case is O(n*log(n))
+     * 
+     * @param out the collection the keys are added to
+     * 
+     * @return the number of keys removed
+     */
+	public int drainTo(Collection<? super Key> out) {
+		return delMin(size, out);
+	}
+	
 	/**
 	 * Merges two heap together and returns the result.
 	 * The two heaps are destroyed in the process.
@@ -150,7 +289,8 @@ public class PairingMinPQ<Key> implements Iterable<Key> {
 	 */
 	public PairingMinPQ<Key> union(PairingMinPQ<Key> that) {
 		if (that == null) throw new IllegalArgumentException();
-		this.head = meld(this.head, that.head);
+		this.head = meld(this.head, meld(that.head, that.multipass(that.pending)));
+		that.pending = null;
 		this.size += that.size;
 		return this;
 	}
@@ -166,6 +306,48 @@ public class PairingMinPQ<Key> implements Iterable<Key> {
 		return comp.compare(k1, k2) > 0;
 	}
 	
+	//Deletes the k smallest keys by sorting all of them : the Nodes are linked in one list and their keys sorted,
+	//the first k Nodes are recycled and the others get the other keys back in ascending order, each Node
+	//the child of the previous one, which is the heap the inserts from the largest to the smallest key would build
+	@SuppressWarnings("unchecked")
+	private void sortedDelMin(int k, Collection<? super Key> out) {
+		Node x = head;
+		if (x == null) x = pending;
+		else 		   x.sibling = pending;
+		x = flatten(x);
+		Key[] a = (Key[]) new Object[size];
+		int i = 0;
+		for (Node y = x; y != null; y = y.sibling) a[i++] = y.key;
+		Arrays.sort(a, comp);
+		for (i = 0; i < k; i++) {
+			Node y = x.sibling;
+			out.add(a[i]);
+			recycle(x);
+			x = y;
+		}
+		head = x;
+		pending = null;
+		size -= k;
+		for (; x != null; x = x.child) {
+			x.key = a[i++];
+			x.child = x.sibling;
+			x.sibling = null;
+		}
+	}
+	
+	//Links all the Nodes of a list in one list by sibling : the children of each Node are spliced in after it
+	private Node flatten(Node x) {
+		for (Node y = x; y != null; y = y.sibling) {
+			if (y.child == null) continue;
+			Node last = y.child;
+			while (last.sibling != null) last = last.sibling;
+			last.sibling = y.sibling;
+			y.sibling = y.child;
+			y.child = null;
+		}
+		return x;
+	}
+	
 	//Links two nodes together
 	private Node meld(Node x, Node y) {
 		if (x == null) return y;
@@ -173,21 +355,211 @@ public class PairingMinPQ<Key> implements Iterable<Key> {
 		return greater(x.key, y.key) ? link(y, x) : link(x, y);
 	}
 	
-	//Two-pass algorithm
-	private Node mergePairs(Node x) {
+	//Two-pass algorithm, without recursion
+	private Node twoPass(Node x) {
+		if (x == null) return null;
+		//First pass : melds the trees by pairs from left to right,
+		//the results are stacked through the sibling links
+		Node pairs = null;
+		while (x != null) {
+			Node y = x.sibling, next = null;
+			x.sibling = null;
+			if (y != null) {
+				next = y.sibling;
+				y.sibling = null;
+				x = meld(x, y);
+			}
+			x.sibling = pairs;
+			pairs = x;
+			x = next;
+		}
+		//Second pass : melds the pairs from right to left
+		Node root = pairs;
+		pairs = root.sibling;
+		root.sibling = null;
+		while (pairs != null) {
+			Node next = pairs.sibling;
+			pairs.sibling = null;
+			root = meld(root, pairs);
+			pairs = next;
+		}
+		return root;
+	}
+	
+	//Multipass algorithm : melds the first two trees and puts the result
+	//at the end of the list, until one tree is left
+	private Node multipass(Node x) {
 		if (x == null) return null;
-		if (x.sibling == null) return x;
-		return meld(mergePairs(x.sibling.sibling), meld(x, x.sibling));
+		Node last = x;
+		while (last.sibling != null) last = last.sibling;
+		while (x != last) {
+			Node y = x.sibling, next = y.sibling;
+			x.sibling = null;
+			y.sibling = null;
+			x = meld(x, y);
+			if (next == null) return x;
+			last.sibling = x;
+			last = x;
+			x = next;
+		}
+		return x;
 	}
 	
 	//Assuming the child holds a greater key than root,
-	//the root becomes the parent of the child
+	//the root becomes the parent of the child, it has no sibling from then on
 	private Node link(Node root, Node child) {
+		root.sibling = null;
 		child.sibling = root.child;
 		root.child = child;
 		return root;
 	}
 
+	/*******************************
+	 * Pool of Nodes
+	 ******************************/
+	
+	//Takes a Node from the free list, or allocates one if it is empty
+	private Node node(Key key) {
+		Node x = free;
+		if (x == null) x = new Node();
+		else {
+			free = x.sibling;
+			x.sibling = null;
+			freeSize--;
+		}
+		x.key = key;
+		return x;
+	}
+	
+	//Puts a Node back in the free list, unless the pool is full
+	private void recycle(Node x) {
+		x.key = null;
+		x.child = null;
+		if (freeSize == poolCapacity) {
+			x.sibling = null;
+			return;
+		}
+		x.sibling = free;
+		free = x;
+		freeSize++;
+	}
+
+	/*******************************
+	 * Unordered traversal
+	 ******************************/
+	
+	/**
+	 * Performs the given action on each key in the priority queue, in no particular order
+	 * The trees are walked with an explicit stack, without recursion
+	 * The priority queue must not be modified by the action
+	 * Worst case is O(n)
+	 * 
+	 * @param action the action to perform on each key
+	 */
+	public void forEachUnordered(Consumer<? super Key> action) {
+		spliterator().forEachRemaining(action);
+	}
+	
+	/**
+	 * Gets a Spliterator over the keys in the priority queue, in no particular order
+	 * Unlike the Iterator, it does not report ORDERED : it walks the trees, and splits
+	 * by sharing the subtrees left to visit
+	 * The priority queue must not be modified while the Spliterator is in use
+	 * Worst case is O(1)
+	 * 
+	 * @return a Spliterator over the keys in the priority queue, in no particular order
+	 */
+	@Override
+	public Spliterator<Key> spliterator() {
+		NodeSpliterator walk = new NodeSpliterator(size);
+		if (head != null) walk.trees.push(head);
+		walk.aux = pending;
+		return walk;
+	}
+	
+	//Walks the trees with an explicit stack of the subtrees left to visit
+	//The auxiliary list is followed by its sibling links, one tree at a time, rather than stacked up front
+	private class NodeSpliterator implements Spliterator<Key> {
+		private final ArrayDeque<Node> trees = new ArrayDeque<>();	//Roots of the subtrees left to visit
+		private final ArrayDeque<Node> alone = new ArrayDeque<>();	//Nodes left to visit, whose children are already in trees
+		private Node aux;											//Auxiliary trees left to visit, linked by sibling
+		private long estimate;										//Estimated number of keys left
+		
+		NodeSpliterator(long estimate) {
+			this.estimate = estimate;
+		}
+		
+		//Pushes the children of a Node on the stack and returns the Node
+		private Node open(Node x) {
+			for (Node c = x.child; c != null; c = c.sibling) trees.push(c);
+			return x;
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super Key> action) {
+			Node x = alone.poll();
+			if (x == null) {
+				if (!trees.isEmpty()) x = open(trees.pop());
+				else if (aux == null) return false;
+				else {
+					x = open(aux);
+					aux = aux.sibling;
+				}
+			}
+			if (estimate > 0) estimate--;
+			action.accept(x.key);
+			return true;
+		}
+		
+		@Override
+		public void forEachRemaining(Consumer<? super Key> action) {
+			for (Node x = alone.poll(); x != null; x = alone.poll()) action.accept(x.key);
+			while (true) {
+				while (!trees.isEmpty()) action.accept(open(trees.pop()).key);
+				if (aux == null) break;
+				action.accept(open(aux).key);
+				aux = aux.sibling;
+			}
+			estimate = 0;
+		}
+		
+		//Gives half of the subtrees left to a new Spliterator.
+		//The auxiliary trees left are given whole, keeping one of them if nothing else is left.
+		//A single subtree is opened first, so that its children can be shared.
+		@Override
+		public Spliterator<Key> trySplit() {
+			if (aux != null && (aux.sibling != null || !trees.isEmpty() || !alone.isEmpty())) {
+				if (trees.isEmpty() && alone.isEmpty()) {
+					trees.push(aux);
+					aux = aux.sibling;
+				}
+				NodeSpliterator prefix = new NodeSpliterator(estimate >>>= 1);
+				prefix.aux = aux;
+				aux = null;
+				return prefix;
+			}
+			if (aux != null) {
+				trees.push(aux);
+				aux = null;
+			}
+			while (trees.size() == 1 && trees.peek().child != null) alone.push(open(trees.pop()));
+			if (trees.size() < 2) return null;
+			NodeSpliterator prefix = new NodeSpliterator(estimate >>>= 1);
+			for (int i = trees.size()>>1; i > 0; i--) prefix.trees.push(trees.pollLast());
+			return prefix;
+		}
+		
+		@Override
+		public long estimateSize() {
+			return estimate;
+		}
+		
+		@Override
+		public int characteristics() {
+			return 0;
+		}
+	}
+	
 	/*******************************
 	 * Iterator
 	 ******************************/
@@ -210,18 +582,18 @@ public class PairingMinPQ<Key> implements Iterable<Key> {
 	private class MyIterator implements Iterator<Key> {
 		PairingMinPQ<Key> copy;
 		
+		//Copies the keys with an explicit stack, as the trees can be very wide
 		public MyIterator() {
-			copy = new PairingMinPQ<>(comp);
-			copy.head = clone(head);
-		}
-		
-		private Node clone(Node x) {
-			if (x == null) return null;
-			Node node = new Node();
-			node.key = x.key;
-			node.sibling = clone(x.sibling);
-			node.child = clone(x.child);
-			return node;
+			copy = new PairingMinPQ<>(comp, strategy, 0);
+			ArrayDeque<Node> stack = new ArrayDeque<>();
+			if (head != null) stack.push(head);
+			if (pending != null) stack.push(pending);
+			while (!stack.isEmpty()) {
+				Node x = stack.pop();
+				copy.insert(x.key);
+				if (x.child != null) stack.push(x.child);
+				if (x.sibling != null) stack.push(x.sibling);
+			}
 		}
 		
 		public boolean hasNext() {
@@ -0,0 +1,26 @@
+package tools;
+
+/**
+ *  The PairingStrategy enum lists the ways a pairing heap can combine the trees
+ *  left by a delete-the-minimum into a single tree.
+ *  It is given to PairingMinPQ and IndexPairingMinPQ at construction.
+ *  None of them is recursive : a root with millions of children is combined
+ *  without growing the call stack.
+ *
+ *  TWO_PASS : the trees are melded by pairs from left to right,
+ *  then the pairs are melded from right to left (Fredman, Sedgewick, Sleator and Tarjan).
+ *  MULTIPASS : the first two trees are melded and the result is put at the end of the list,
+ *  until one tree is left.
+ *  AUXILIARY_TWO_PASS : the keys inserted, and the ones whose key is decreased,
+ *  are put in an auxiliary list unless they become the minimum. The auxiliary list
+ *  is combined with the multipass algorithm by the next delete-the-minimum, the children
+ *  of the minimum with the two pass algorithm (Stasko and Vitter).
+ *  An insert-heavy phase then only appends to a list.
+ *
+ *  @author Tristan Claverie
+ */
+public enum PairingStrategy {
+	TWO_PASS,
+	MULTIPASS,
+	AUXILIARY_TWO_PASS
+}
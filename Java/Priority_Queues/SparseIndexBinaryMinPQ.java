@@ -0,0 +1,542 @@
+package tools;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+/**
+ *  The SparseIndexBinaryMinPQ class represents an indexed priority queue of generic keys.
+ *  It supports the usual insert and delete-the-minimum
+ *  operations, along with delete and change-the-key
+ *  methods. In order to let the client refer to keys on the priority queue,
+ *  a long is associated with each key ; the client
+ *  uses this long to specify which key to delete or change.
+ *  Unlike IndexBinaryMinPQ, the indexes are not taken in a range : any long is a valid index,
+ *  so sparse identifiers can be used as they are, without translating them to integers first.
+ *  It also supports methods for peeking at the minimum key,
+ *  testing if the priority queue is empty, and iterating through
+ *  the keys.
+ *
+ *  This implementation uses a binary heap of slots along with an open-addressing hash table
+ *  with linear probing, which replaces the qp array of IndexBinaryMinPQ : a slot holds an index,
+ *  its key and its position in the heap, and a position of -1 marks a free slot.
+ *  A lookup is then a single probe in three parallel primitive arrays, and no object is allocated
+ *  apart from resizing. The table is kept at most half full, and a deleted slot is filled
+ *  by shifting back the following slots of its cluster, so there is no tombstone.
+ *  All operations on the heap are using half exchanges, in order to reduce the number of memory access.
+ *  The insert, delete-the-minimum, delete,
+ *  change-key, decrease-key, and increase-key
+ *  operations take logarithmic time (expected, and amortized for insert).
+ *  The is-empty, size, min-index, min-key operations take constant time,
+ *  the contains and key-of operations take expected constant time.
+ *  The table and the heap cost between 36 and 72 bytes per index, the keys excluded.
+ *
+ *  Construction takes time proportional to the specified capacity.
+ *  The iterator does not copy the heap : the k first indexes take time proportional to k*log(k).
+ *  forEachUnordered visits the indexes in the order of the heap, in linear time.
+ *
+ *  @author Tristan Claverie
+ */
+
+@SuppressWarnings("unchecked")
+public class SparseIndexBinaryMinPQ<Key> implements Iterable<Long> {
+	private static final int FREE = -1;				//Position of a free slot
+	private static final int MAX_TABLE = 1 << 30;	//Maximum number of slots
+	private int N;									//Number of elements currently in the queue
+	private long[] ids;								//ids[s] = index held by slot s
+	private Key[] keys;								//keys[s] = key of the index held by slot s
+	private int[] qp;								//qp[s] = position of slot s in the heap, FREE if s is free
+	private int[] pq;								//pq[i] = slot at position i in the heap, from 1
+	private int shift;								//64 - log2(number of slots)
+	private final Comparator<Key> comp;				//Comparator over the keys
+	private int modCount;							//Number of modifications, checked by the iterators
+
+	/**
+	 * Initializes an empty indexed priority queue
+	 * Worst case is O(1)
+	 */
+	public SparseIndexBinaryMinPQ() {
+		this(8);
+	}
+
+	/**
+	 * Initializes an empty indexed priority queue able to hold the given number of indexes
+	 * without resizing
+	 * Worst case is O(n)
+	 *
+	 * @param capacity the initial capacity
+	 *
+	 * @throws java.util.IllegalArgumentException if capacity < 0 or capacity > 2^29
+	 */
+	public SparseIndexBinaryMinPQ(int capacity) {
+		comp = new MyComparator();
+		allocate(tableSize(capacity));
+	}
+
+	/**
+	 * Initializes an empty indexed priority queue able to hold the given number of indexes
+	 * without resizing
+	 * Worst case is O(n)
+	 *
+	 * @param capacity the initial capacity
+	 * @param C a Comparator over the keys
+	 *
+	 * @throws java.util.IllegalArgumentException if capacity < 0 or capacity > 2^29
+	 * @throws java.util.IllegalArgumentException if C is null
+	 */
+	public SparseIndexBinaryMinPQ(int capacity, Comparator<Key> C) {
+		if (C == null) throw new IllegalArgumentException("Comparator must not be null");
+		comp = C;
+		allocate(tableSize(capacity));
+	}
+
+	/**
+	 * Makes room for the given number of indexes, so that inserting them doesn't resize the table.
+	 * Worst case is O(capacity)
+	 *
+	 * @param capacity the number of indexes the priority queue must hold
+	 *
+	 * @throws java.util.IllegalArgumentException if capacity > 2^29
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > pq.length-1) resize(tableSize(capacity));
+	}
+
+	/**
+	 * Number of elements currently on the priority queue
+	 * Worst case is O(1)
+	 *
+	 * @return the number of elements on the priority queue
+	 */
+	public int size() {
+		return N;
+	}
+
+	/**
+	 * Whether the priority queue is empty
+	 * Worst case is O(1)
+	 *
+	 * @return true if the priority queue is empty, false if not
+	 */
+	public boolean isEmpty() {
+		return N==0;
+	}
+
+	/**
+	 * Does the priority queue contains the index i ?
+	 * Worst case is O(1) (expected)
+	 *
+	 * @param i an index
+	 *
+	 * @return true if i is on the priority queue, false if not
+	 */
+	public boolean contains(long i) {
+		return qp[probe(i)] != FREE;
+	}
+
+	/**
+	 * Get the key associated with index i
+	 * Worst case is O(1) (expected)
+	 *
+	 * @param i an index
+	 *
+	 * @throws java.util.NoSuchElementException if the index is not in the queue
+	 *
+	 * @return the key associated with index i
+	 */
+	public Key keyOf(long i) {
+		return keys[slotOf(i)];
+	}
+
+	/**
+	 * Get the index associated with the minimum key
+	 * Worst case is O(1)
+	 *
+	 * @throws java.util.NoSuchElementException if the priority queue is empty
+	 *
+	 * @return the index associated with the minimum key
+	 */
+	public long minIndex() {
+		if (isEmpty()) throw new NoSuchElementException("Priority Queue is empty");
+		return ids[pq[1]];
+	}
+
+	/**
+	 * Get the minimum key currently in the queue
+	 * Worst case is O(1)
+	 *
+	 * @throws java.util.NoSuchElementException if the priority queue is empty
+	 *
+	 * @return the minimum key currently in the priority queue
+	 */
+	public Key minKey() {
+		if (isEmpty()) throw new NoSuchElementException("Priority Queue is empty");
+		return keys[pq[1]];
+	}
+
+	/**
+	 * Associates a key with an index
+	 * Worst case is O(log(n)) (expected, amortized)
+	 *
+	 * @param i an index
+	 * @param key a Key associated with i
+	 *
+	 * @throws java.util.IllegalArgumentException if the index is already in the queue
+	 * @throws java.util.IllegalArgumentException if the key is null
+	 * @throws java.lang.IllegalStateException if the queue already holds 2^29 indexes
+	 */
+	public void insert(long i, Key key) {
+		if (key == null) throw new IllegalArgumentException("Given key must not be null");
+		int s = probe(i);
+		if (qp[s] != FREE) throw new IllegalArgumentException("Index already in the Priority Queue");
+		if (N == pq.length-1) {
+			if (qp.length == MAX_TABLE) throw new IllegalStateException("Priority Queue is full");
+			resize(qp.length<<1);
+			s = probe(i);
+		}
+		ids[s] = i;
+		keys[s] = key;
+		pq[++N] = s;
+		swim(N, s);
+		modCount++;
+	}
+
+	/**
+	 * Deletes the minimum key
+	 * Worst case is O(log(n)) (expected)
+	 *
+	 * @throws java.util.NoSuchElementException if the priority queue is empty
+	 *
+	 * @return the index associated with the minimum key
+	 */
+	public long delMin() {
+		if (N==0) throw new NoSuchElementException("Priority Queue is empty");
+		int min = pq[1];
+		long i = ids[min];
+		remove(min);
+		return i;
+	}
+
+	/**
+	 * Deletes the key associated the given index
+	 * Worst case is O(log(n)) (expected)
+	 *
+	 * @param i an index
+	 *
+	 * @throws java.util.NoSuchElementException if the given index has no key associated with
+	 */
+	public void delete(long i) {
+		remove(slotOf(i));
+	}
+
+	/**
+	 * Decreases the key associated with index i to the given key
+	 * Worst case is O(log(n)) (expected)
+	 *
+	 * @param i an index
+	 * @param key the key to associate with i
+	 *
+	 * @throws java.util.NoSuchElementException if the index has no key associated with
+	 * @throws java.util.IllegalArgumentException if the given key is greater than the current key
+	 * @throws java.util.IllegalArgumentException if the key is null
+	 */
+	public void decreaseKey(long i, Key key) {
+		int s = slotOf(i);
+		if (key == null) throw new IllegalArgumentException("Key must not be null");
+		if (comp.compare(key, keys[s]) > 0) throw new IllegalArgumentException("Key should be lower than the existing one when calling decreaseKey()");
+		keys[s] = key;
+		swim(qp[s], s);
+		modCount++;
+	}
+
+	/**
+	 * Increases the key associated with index i to the given key
+	 * Worst case is O(log(n)) (expected)
+	 *
+	 * @param i an index
+	 * @param key the key to associate with i
+	 *
+	 * @throws java.util.NoSuchElementException if the index has no key associated with
+	 * @throws java.util.IllegalArgumentException if the given key is lower than the current key
+	 * @throws java.util.IllegalArgumentException if the key is null
+	 */
+	public void increaseKey(long i, Key key) {
+		int s = slotOf(i);
+		if (key == null) throw new IllegalArgumentException("Key must not be null");
+		if (comp.compare(key, keys[s]) < 0) throw new IllegalArgumentException("Key should be greater than the existing one when calling increaseKey()");
+		keys[s] = key;
+		int leaf = sinkAll(qp[s], s);
+		swim(leaf, s);
+		modCount++;
+	}
+
+	/**
+	 * Changes the key associated with index i to the given key
+	 * Worst case is O(log(n)) (expected)
+	 *
+	 * @param i an index
+	 * @param key the key to associate with i
+	 *
+	 * @throws java.util.NoSuchElementException if the index has no key associated with
+	 * @throws java.util.IllegalArgumentException if the key is null
+	 */
+	public void changeKey(long i, Key key) {
+		int s = slotOf(i);
+		if (key == null) throw new IllegalArgumentException("Key must not be null");
+		Key k = keys[s];
+		keys[s] = key;
+		int leaf = qp[s];
+		if (comp.compare(key, k) > 0) leaf = sinkAll(qp[s], s);
+		swim(leaf, pq[leaf]);
+		modCount++;
+	}
+
+	/*************************************
+	 * General helper function
+	 ************************************/
+
+	private boolean greater(int s, int t) {
+		return comp.compare(keys[s], keys[t]) > 0;
+	}
+
+	//Number of slots needed to hold the given number of indexes, a power of 2
+	private static int tableSize(int capacity) {
+		if (capacity < 0) throw new IllegalArgumentException("Capacity must not be negative");
+		if (capacity > MAX_TABLE>>1) throw new IllegalArgumentException("Capacity must not be greater than 2^29");
+		return Math.max(Integer.highestOneBit(Math.max(capacity, 1)-1)<<2, 4);
+	}
+
+	//Creates an empty table of the given number of slots
+	private void allocate(int slots) {
+		ids = new long[slots];
+		keys = (Key[]) new Object[slots];
+		qp = new int[slots];
+		Arrays.fill(qp, FREE);
+		pq = new int[(slots>>1)+1];
+		shift = 64 - Integer.numberOfTrailingZeros(slots);
+	}
+
+	/*************************************
+	 * Hash table
+	 ************************************/
+
+	//Home slot of the index i : Fibonacci hashing, the upper bits of the product are the best mixed
+	private int hash(long i) {
+		return (int) ((i * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+
+	//Slot holding the index i, or the free slot ending its cluster if i is not in the table
+	private int probe(long i) {
+		int mask = qp.length-1, s = hash(i);
+		while (qp[s] != FREE && ids[s] != i) s = (s+1) & mask;
+		return s;
+	}
+
+	//Slot holding the index i
+	private int slotOf(long i) {
+		int s = probe(i);
+		if (qp[s] == FREE) throw new NoSuchElementException("Index not in the Priority Queue");
+		return s;
+	}
+
+	//Removes the slot s from the heap and from the table
+	private void remove(int s) {
+		int idx = qp[s];
+		pq[idx] = pq[N--];
+		qp[pq[idx]] = idx;
+		int leaf = sinkAll(idx, pq[idx]);
+		swim(leaf, pq[leaf]);
+		free(s);
+		modCount++;
+	}
+
+	//Frees the slot s, then shifts back the following slots of the cluster
+	//whose probe sequence went through s, updating their positions in the heap
+	private void free(int s) {
+		int mask = qp.length-1;
+		keys[s] = null;
+		qp[s] = FREE;
+		for (int j = (s+1) & mask; qp[j] != FREE; j = (j+1) & mask) {
+			if (((j - hash(ids[j])) & mask) < ((j - s) & mask)) continue;
+			ids[s] = ids[j];
+			keys[s] = keys[j];
+			qp[s] = qp[j];
+			pq[qp[s]] = s;
+			keys[j] = null;
+			qp[j] = FREE;
+			s = j;
+		}
+	}
+
+	//Rebuilds the table with the given number of slots, the heap keeps its shape
+	private void resize(int slots) {
+		long[] oldIds = ids;
+		Key[] oldKeys = keys;
+		int[] heap = pq;
+		allocate(slots);
+		int mask = slots-1;
+		for (int i = 1; i <= N; i++) {
+			int old = heap[i], s = hash(oldIds[old]);
+			while (qp[s] != FREE) s = (s+1) & mask;
+			ids[s] = oldIds[old];
+			keys[s] = oldKeys[old];
+			qp[s] = i;
+			pq[i] = s;
+		}
+	}
+
+	/*************************************
+	 * Functions for moving upward and downward
+	 ************************************/
+
+	//Moves a slot upward
+	private void swim(int i, int s) {
+		while(i > 1 && greater(pq[i>>1], s)) {
+			pq[i] = pq[i>>1];
+			qp[pq[i]] = i;
+			i = i>>1;
+		}
+		pq[i] = s;
+		qp[s] = i;
+	}
+
+	//Moves a slot all the way to a leaf and returns the position of the leaf
+	private int sinkAll(int i, int s) {
+		int j = 0;
+		while(i <= N>>1) {
+			j = i<<1;
+			if (j < N && greater(pq[j], pq[j+1])) j++;
+			pq[i] = pq[j];
+			qp[pq[i]] = i;
+			i = j;
+		}
+		pq[i] = s;
+		qp[s] = i;
+		return i;
+	}
+
+	/*************************************
+	 * Iterator
+	 ************************************/
+
+	/**
+	 * Get an Iterator over the indexes in the priority queue in ascending order
+	 * The indexes can be read without boxing through nextLong()
+	 * The Iterator reads the heap without copying it, it fails with a
+	 * ConcurrentModificationException if the priority queue is modified
+	 * The Iterator does not implement the remove() method
+	 * iterator() : Worst case is O(1)
+	 * next() : 	Worst case is O(log(k)), k being the number of indexes already returned
+	 * hasNext() : 	Worst case is O(1)
+	 *
+	 * @return an Iterator over the indexes in the priority queue in ascending order
+	 */
+	@Override
+	public PrimitiveIterator.OfLong iterator() {
+		return new MyIterator();
+	}
+
+	//Walks the heap through a frontier : a binary heap of the positions whose parent
+	//has already been returned, ordered by their keys, as in IndexBinaryMinPQ
+	private class MyIterator implements PrimitiveIterator.OfLong {
+		private int[] frontier = new int[16];	//Frontier, from index 1
+		private int n;							//Number of positions in the frontier
+		private final int expected = modCount;	//Number of modifications of the queue when created
+
+		public MyIterator() {
+			if (N > 0) frontier[++n] = 1;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return n > 0;
+		}
+
+		@Override
+		public long nextLong() {
+			if (modCount != expected) throw new ConcurrentModificationException();
+			if (n == 0) throw new NoSuchElementException();
+			int p = frontier[1], child = p<<1;
+			if (child <= N) {
+				frontier[1] = child;
+				down(1);
+				if (child < N) up(add(child+1));
+			} else {
+				frontier[1] = frontier[n--];
+				if (n > 0) down(1);
+			}
+			return ids[pq[p]];
+		}
+
+		//Appends a position to the frontier and returns its index
+		private int add(int p) {
+			if (n+1 == frontier.length) frontier = Arrays.copyOf(frontier, frontier.length<<1);
+			frontier[++n] = p;
+			return n;
+		}
+
+		//Is the key at frontier[i] lower than the key at frontier[j] ?
+		private boolean less(int i, int j) {
+			return comp.compare(keys[pq[frontier[i]]], keys[pq[frontier[j]]]) < 0;
+		}
+
+		private void up(int i) {
+			while (i > 1 && less(i, i>>1)) {
+				exch(i, i>>1);
+				i >>= 1;
+			}
+		}
+
+		private void down(int i) {
+			while (i<<1 <= n) {
+				int j = i<<1;
+				if (j < n && less(j+1, j)) j++;
+				if (!less(j, i)) break;
+				exch(i, j);
+				i = j;
+			}
+		}
+
+		private void exch(int i, int j) {
+			int swap = frontier[i];
+			frontier[i] = frontier[j];
+			frontier[j] = swap;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/*************************************
+	 * Unordered traversal
+	 ************************************/
+
+	/**
+	 * Performs the given action on each index in the priority queue, in no particular order
+	 * The priority queue must not be modified by the action
+	 * Worst case is O(n)
+	 *
+	 * @param action the action to perform on each index
+	 */
+	public void forEachUnordered(LongConsumer action) {
+		for (int i = 1; i <= N; i++) action.accept(ids[pq[i]]);
+	}
+
+	/***************************
+	 * Comparator
+	 **************************/
+
+	//default Comparator
+	private class MyComparator implements Comparator<Key> {
+		@Override
+		public int compare(Key key1, Key key2) {
+			return ((Comparable<Key>)key1).compareTo(key2);
+		}
+	}
+
+}
@@ -1,26 +1,55 @@
 package main;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
 /**
  * RedBlackBST class implements a lightweight version of
  * a standard red-black BST.
  * It supports the methods get, put and delete in O(log N)
- * worst-case time.
+ * worst-case time, along with the ordered methods min, max, floor,
+ * ceiling, rank, select and size(lo, hi) in O(log N), and keys(lo, hi)
+ * in O(log N + R), R being the number of keys returned.
+ * A symbol table can also be built from keys in ascending order with fromSorted,
+ * in O(N) : the tree is perfectly balanced, the nodes of the deepest level when it
+ * is not complete being red, the others black, so every path holds as many black nodes.
+ * Symbol tables are joined around a key and split at a key in O(log N), and
+ * union, intersection and difference take O(M log(N/M + 1)), M being the size of the
+ * smaller table. They are built on the join of Blelloch, Ferizovic and Sun : the shorter
+ * tree is hung at the same black height in the spine of the taller one, and the red
+ * violation this may cause goes up by rotations. These operations consume their
+ * arguments, the nodes are moved from a table to the other, never copied.
  * 
- * The nodes are implemented using an array of childs and a color,
+ * The nodes hold their two childs in fields, reached by direction through
+ * child(dir) and setChild(dir, x), and a color,
  * there is no such thing as a parent pointer.
+ * With compressed references, a node takes 40 bytes : it used to take 56, an array
+ * of two childs (24 bytes) being allocated beside it, and the node holding a
+ * pointer to the tree as it was an inner class. One load per level less as well.
+ * Each node also holds the size of its subtree, for the ordered methods.
+ * As put and delete go down in one pass, they count the node added or removed
+ * in every subtree they go through, and rotate recomputes the sizes of the two
+ * nodes it moves. When the key turns out to be present (put) or absent (delete),
+ * a second walk down to the key cancels the count.
  * This is pimarily Julienne Walker's structure on eternallyconfuzzled.com,
  * which I used in order to improve the implementation of deletion.
  * 
- * The get method is implemented using a simple search in a BST.
- * The put method is implemented recursively in the bottom-up way,
- * which is todays's standard for a red-black BST.
- * The delete method is implemented recursively in a top-down way.
- * Its peculiarity is that its core is only 24 lines long, while usual
- * implementations easily go over 100.
+ * The get method is implemented using a simple iterative search in a BST.
+ * The put method is implemented iteratively in the top-down way of
+ * Julienne Walker : the 4-nodes are split on the way down, so the new
+ * node is added as a red leaf and there is nothing to fix on the way up.
+ * The delete method is implemented iteratively in a top-down way.
+ * Its peculiarity is that its core is short (24 lines when written
+ * recursively), while usual implementations easily go over 100.
  * The basic idea is simply to make the current node or its child a
  * red one, because deleting a red node is easy.
  * This is achieved in only one-pass, that is after deletion of the
  * leaf there is no need to fixup the tree.
+ * As both operations are one-pass, they are loops keeping a pointer to
+ * the parent : no call frame per level, and no allocation apart from the new node.
  * 
  * I believe this implementation is slightly slower than a usual one because
  * the number of rotations during a delete operation is not bounded, whereas
@@ -80,30 +109,37 @@ package main;
  * It makes use of several helper functions :
  * isRed : 3
  * cmpToDir : 3
- * rotate : 8
+ * rotate : 10
  * flipColors : 5
  * min(node) : 4
  * blacken : 4
  * rotateDel : 7
+ * link : 4
+ * size(node) : 3
+ * recount : 9
  * 
  * insertion :
- * put(key, val) : 4
- * put(node, key, val) : 18
+ * put(key, val) : 5
+ * put(key, val, node) : 34
  * 
- * Insertion represents a total of 22 LOCs, and use 4 helpers
- * which amount for 19 lines (isRed, cmpToDir, rotate, flipColors)
+ * Insertion represents a total of 39 LOCs, and use 6 helpers
+ * which amount for 33 lines (isRed, cmpToDir, rotate, flipColors, size, recount)
  * 
  * deletion :
  * delete(key) : 6
- * delete(node, key) : 24
+ * delete(key, node) : 34
  * 
- * Deletion represents a total of 30 LOCs, and use 7 helpers
- * which amount for 34 lines
+ * Deletion represents a total of 40 LOCs, and use 10 helpers
+ * which amount for 52 lines
  * 
  * ********************
- * The number of lines needed for insertion are roughly the same, however
- * the big difference comes from the deletion operation, which is lower with this
- * implementation.
+ * The iterative versions are longer than the recursive ones they replaced
+ * (22 LOCs for insertion, 30 for deletion), because the parent and grandparents
+ * are kept in variables instead of the call stack, and the sizes of the subtrees
+ * add 2 lines to each operation and 14 to the helpers, while the LLRB counts
+ * above do not track them. Insertion is now longer than
+ * the LLRB one, however the big difference comes from the deletion operation,
+ * which is lower with this implementation.
  * I would finally add that this implementation does not search for the existence of
  * a node before entering the delete operation (the case is handled properly),
  * therefore it saves log N compares.
@@ -122,18 +158,38 @@ public class RedBlackBST<Key extends Comparable<Key>, Value> {
 
     private Node<Key, Value> root; // root of the BST
     
-    private class Node<Key, Value> {
+    // Second results of the join helpers, which return the root of a tree
+    private int height;                  // black height of the tree returned
+    private Node<Key, Value> low, high; // lower and greater parts of the last split
+    private int lowHeight, highHeight;  // their black heights
+    
+    private static class Node<Key, Value> {
         Key key;       // key
         Value val;     // value coupled with key
-        Node<Key, Value>[] childs; // links to the childs subtrees
+        Node<Key, Value> left, right; // links to the childs subtrees
         boolean color; // color of the parent link
+        int size;      // number of nodes in the subtree
         
-        @SuppressWarnings("unchecked")
         public Node(Key key, Value val) {
             this.key = key;
             this.val = val;
             this.color = RED;
-            this.childs = (Node<Key, Value>[]) new Node[2];
+            this.size = 1;
+        }
+        
+        /**
+         * Child in the direction dir : left for 0, right for 1
+         */
+        Node<Key, Value> child(int dir) {
+            return dir == 0 ? left : right;
+        }
+        
+        /**
+         * Replace the child in the direction dir
+         */
+        void setChild(int dir, Node<Key, Value> x) {
+            if (dir == 0) left = x;
+            else right = x;
         }
     }
     
@@ -142,27 +198,93 @@ public class RedBlackBST<Key extends Comparable<Key>, Value> {
      */
     public RedBlackBST() {}
     
+    /**
+     * Creates a symbol table from keys sorted in strictly ascending order,
+     * in time proportional to their number : the tree is built balanced
+     * without comparing the keys, apart from checking their order
+     * @param keys the keys, in strictly ascending order
+     * @param vals the values, vals[i] being coupled with keys[i]
+     * @return a symbol table holding the couples (keys[i], vals[i])
+     * @throws java.lang.IllegalArgumentException if there are not as many values as keys
+     * @throws java.lang.IllegalArgumentException if the keys are not in strictly ascending order
+     */
+    public static <Key extends Comparable<Key>, Value> RedBlackBST<Key,Value> fromSorted(Key[] keys, Value[] vals) {
+        if (keys.length != vals.length) throw new IllegalArgumentException("There must be as many values as keys");
+        return fromSorted(Arrays.asList(keys), Arrays.asList(vals));
+    }
+    
+    /**
+     * Creates a symbol table from keys sorted in strictly ascending order,
+     * in time proportional to their number, the couples being read once.
+     * A stream can be given through its iterator
+     * @param keys the keys, in strictly ascending order
+     * @param vals the values, in the order of their keys
+     * @return a symbol table holding the couples read
+     * @throws java.lang.IllegalArgumentException if there are not as many values as keys
+     * @throws java.lang.IllegalArgumentException if the keys are not in strictly ascending order
+     */
+    public static <Key extends Comparable<Key>, Value> RedBlackBST<Key,Value> fromSorted(Iterator<Key> keys, Iterator<Value> vals) {
+        List<Key> k = new ArrayList<Key>();
+        List<Value> v = new ArrayList<Value>();
+        while (keys.hasNext() && vals.hasNext()) {
+            k.add(keys.next());
+            v.add(vals.next());
+        }
+        if (keys.hasNext() || vals.hasNext()) throw new IllegalArgumentException("There must be as many values as keys");
+        return fromSorted(k, v);
+    }
+    
+    /**
+     * Check the order of the keys, then build the tree
+     */
+    private static <Key extends Comparable<Key>, Value> RedBlackBST<Key,Value> fromSorted(List<Key> keys, List<Value> vals) {
+        for (int i = 1; i < keys.size(); i++)
+            if (keys.get(i-1).compareTo(keys.get(i)) >= 0) throw new IllegalArgumentException("Keys must be in strictly ascending order");
+        RedBlackBST<Key,Value> st = new RedBlackBST<Key,Value>();
+        // The levels above the deepest one are complete, the deepest one is red
+        int red = 31 - Integer.numberOfLeadingZeros(keys.size() + 1);
+        st.root = build(keys, vals, 0, keys.size()-1, 0, red);
+        return st;
+    }
+    
+    /**
+     * Build a perfectly balanced subtree from the couples between lo and hi,
+     * the nodes at the given level being red
+     */
+    private static <Key extends Comparable<Key>, Value> Node<Key,Value> build(List<Key> keys, List<Value> vals, int lo, int hi, int level, int red) {
+        if (lo > hi) return null;
+        int mid = (lo + hi) >>> 1;
+        Node<Key,Value> x = new Node<Key,Value>(keys.get(mid), vals.get(mid));
+        x.left = build(keys, vals, lo, mid-1, level+1, red);
+        x.right = build(keys, vals, mid+1, hi, level+1, red);
+        x.color = (level == red) ? RED : BLACK;
+        x.size = hi - lo + 1;
+        return x;
+    }
+    
     /**
      * Get value associated with key
      * @param k the key
      * @return the value associated, null is non-existant
      */
     public Value get(Key k) {
-        Node<Key,Value> x = search(root, k);
+        Node<Key,Value> x = search(k);
         if (x == null) return null;
         return x.val;
     }
     
     /**
-     * Recursively search among subtrees to find the
-     * node containing k
+     * Walk down from the root to find the node containing k,
+     * null if there is none
      */
-    private Node<Key,Value> search(Node<Key,Value> node, Key k) {
-        if (node == null) return null;
-        int cmp = k.compareTo(node.key);
-        if (cmp == 0) return node;
-        int dir = cmpToDir(cmp);
-        return search(node.childs[dir], k);
+    private Node<Key,Value> search(Key k) {
+        Node<Key,Value> x = root;
+        while (x != null) {
+            int cmp = k.compareTo(x.key);
+            if (cmp == 0) return x;
+            x = x.child(cmpToDir(cmp));
+        }
+        return null;
     }
     
     /**
@@ -172,35 +294,56 @@ public class RedBlackBST<Key extends Comparable<Key>, Value> {
      * @param v value
      */
     public void put(Key k, Value v) {
-        root = put(root, k, v);
+        if (root == null) root = new Node<Key,Value>(k, v);
+        else put(k, v, root);
         root.color = BLACK;
     }
     
     /**
-     * Helper to insert a node in the symbol table
+     * Top-down insertion below a non-empty root : the 4-nodes are split
+     * on the way down, so the new node can be hung as a red leaf without
+     * any fixup on the way up
      */
-    private Node<Key,Value> put(Node<Key,Value> node, Key k, Value v) {
-        if (node == null) return new Node<Key,Value>(k, v);
-        int cmp = k.compareTo(node.key);
-        // If the key exists, replace the value
-        if (cmp == 0) node.val = v;
-        
-        else {
-            int dir = cmpToDir(cmp);
-            // Recursive call
-            node.childs[dir] = put(node.childs[dir], k, v);
+    private void put(Key k, Value v, Node<Key,Value> q) {
+        // Great-grandparent (null while the grandparent is the root), grandparent and parent of q
+        Node<Key,Value> t = null, g = null, p = null;
+        int dir = 0, last = 0;
+        boolean added = false;
+        while (true) {
+            if (q == null) {
+                q = new Node<Key,Value>(k, v);
+                p.setChild(dir, q);
+                added = true;
+            } else {
+                // Count the new node in the subtrees it goes through
+                q.size++;
+                // Split the 4-node
+                if (isRed(q.left) && isRed(q.right)) flipColors(q);
+            }
             
-            // Fix up the tree on the way up
-            if (isRed(node.childs[dir])) {
-                if (isRed(node.childs[dir^1]))
-                    flipColors(node);
-                else {
-                    if (isRed(node.childs[dir].childs[dir^1])) node.childs[dir] = rotate(node.childs[dir], dir);
-                    if (isRed(node.childs[dir].childs[dir])) node = rotate(node, dir^1);
-                }
+            // Fix the red violation the split or the new node may have caused
+            if (isRed(q) && isRed(p)) {
+                if (q != p.child(last)) g.setChild(last, rotate(g.child(last), last));
+                Node<Key,Value> x = rotate(g, last^1);
+                if (t == null) root = x;
+                else t.setChild(t.right == g ? 1 : 0, x);
+            }
+            if (added) return;
+            
+            int cmp = k.compareTo(q.key);
+            // If the key exists, replace the value
+            if (cmp == 0) {
+                q.val = v;
+                recount(k, -1);
+                return;
             }
+            last = dir;
+            dir = cmpToDir(cmp);
+            if (g != null) t = g;
+            g = p;
+            p = q;
+            q = q.child(dir);
         }
-        return node;
     }
     
     /**
@@ -209,44 +352,309 @@ public class RedBlackBST<Key extends Comparable<Key>, Value> {
      */
     public void delete(Key k) {
         if (root == null) return;
-        if (!isRed(root.childs[0]) && !isRed(root.childs[1])) root.color = RED;
-        root = delete(root, k);
+        if (!isRed(root.left) && !isRed(root.right)) root.color = RED;
+        delete(k, root);
         if (root != null) root.color = BLACK;
     }
     
     /**
-     * Recursive call for deletion
+     * Top-down deletion in one pass : the node reached is fixed
+     * before going down, then linked to its parent
      */
-    private Node<Key,Value> delete(Node<Key,Value> node, Key k) {
-        if (node == null) return null;
-        int cmp = k.compareTo(node.key);
-        // Hit the key
-        if (cmp == 0) {
-            if (node.childs[1] == null) return blacken(node.childs[0]);
-            // If it is not a leaf, replace the node by its successor and deletes
-            // the successor
-            Node<Key,Value> x = min(node.childs[1]);
-            node.key = x.key;
-            node.val = x.val;
-            k = node.key;
+    private void delete(Key k, Node<Key,Value> node) {
+        Node<Key,Value> parent = null;
+        int pdir = 0;
+        while (node != null) {
+            // Uncount the deleted node from the subtrees it goes through
+            node.size--;
+            int cmp = k.compareTo(node.key);
+            // Hit the key
+            if (cmp == 0) {
+                if (node.right == null) {
+                    link(parent, pdir, blacken(node.left));
+                    return;
+                }
+                // If it is not a leaf, replace the node by its successor and deletes
+                // the successor
+                Node<Key,Value> x = min(node.right);
+                node.key = x.key;
+                node.val = x.val;
+                k = node.key;
+            }
+            
+            // Fixup the tree on the way down
+            int dir = cmpToDir(cmp);
+            if (!isRed(node.child(dir))) {
+                if (isRed(node.child(dir^1))) {
+                    if (!isRed(node)) node = rotate(node, dir);
+                } else if(node.child(dir) != null && !isRed(node.child(dir).left) && !isRed(node.child(dir).right)) {
+                    if (node.child(dir^1) != null && (isRed(node.child(dir^1).child(dir^1)) || isRed(node.child(dir^1).child(dir))))
+                        node = rotateDel(node, dir);
+                    else
+                        flipColors(node);
+                }
+            }
+            
+            // Go down
+            link(parent, pdir, node);
+            parent = node;
+            pdir = dir;
+            node = node.child(dir);
         }
-        
-        // Fixup the tree on the way down
-        int dir = cmpToDir(cmp);
-        if (!isRed(node.childs[dir])) {
-            if (isRed(node.childs[dir^1])) {
-                if (!isRed(node)) node = rotate(node, dir);
-            } else if(node.childs[dir] != null && !isRed(node.childs[dir].childs[0]) && !isRed(node.childs[dir].childs[1])) {
-                if (node.childs[dir^1] != null && (isRed(node.childs[dir^1].childs[dir^1]) || isRed(node.childs[dir^1].childs[dir])))
-                    node = rotateDel(node, dir);
-                else
-                    flipColors(node);
+        // The key was not there
+        recount(k, 1);
+    }
+    
+    /***************************
+     * Order statistics
+     **************************/
+    
+    /**
+     * Number of keys in the symbol table
+     * @return the number of keys
+     */
+    public int size() {
+        return size(root);
+    }
+    
+    /**
+     * Is the symbol table empty ?
+     * @return true if there is no key, false if not
+     */
+    public boolean isEmpty() {
+        return root == null;
+    }
+    
+    /**
+     * Does the symbol table contain the key ?
+     * @param k the key
+     * @return true if k is present, false if not
+     */
+    public boolean contains(Key k) {
+        return search(k) != null;
+    }
+    
+    /**
+     * Smallest key
+     * @return the smallest key, null if the symbol table is empty
+     */
+    public Key min() {
+        if (root == null) return null;
+        return min(root).key;
+    }
+    
+    /**
+     * Largest key
+     * @return the largest key, null if the symbol table is empty
+     */
+    public Key max() {
+        if (root == null) return null;
+        Node<Key,Value> x = root;
+        while (x.right != null) x = x.right;
+        return x.key;
+    }
+    
+    /**
+     * Largest key lower than or equal to k
+     * @param k the key
+     * @return the floor of k, null if every key is greater than k
+     */
+    public Key floor(Key k) {
+        Node<Key,Value> x = root, best = null;
+        while (x != null) {
+            int cmp = k.compareTo(x.key);
+            if (cmp == 0) return x.key;
+            if (cmp > 0) best = x;
+            x = x.child(cmpToDir(cmp));
+        }
+        return best == null ? null : best.key;
+    }
+    
+    /**
+     * Smallest key greater than or equal to k
+     * @param k the key
+     * @return the ceiling of k, null if every key is lower than k
+     */
+    public Key ceiling(Key k) {
+        Node<Key,Value> x = root, best = null;
+        while (x != null) {
+            int cmp = k.compareTo(x.key);
+            if (cmp == 0) return x.key;
+            if (cmp < 0) best = x;
+            x = x.child(cmpToDir(cmp));
+        }
+        return best == null ? null : best.key;
+    }
+    
+    /**
+     * Number of keys strictly lower than k
+     * @param k the key
+     * @return the rank of k
+     */
+    public int rank(Key k) {
+        Node<Key,Value> x = root;
+        int r = 0;
+        while (x != null) {
+            int cmp = k.compareTo(x.key);
+            if (cmp == 0) return r + size(x.left);
+            if (cmp > 0) r += size(x.left) + 1;
+            x = x.child(cmpToDir(cmp));
+        }
+        return r;
+    }
+    
+    /**
+     * Key of the given rank, the smallest having rank 0
+     * @param i the rank
+     * @return the key of rank i, null if i is not between 0 and size()-1
+     */
+    public Key select(int i) {
+        if (i < 0 || i >= size()) return null;
+        Node<Key,Value> x = root;
+        while (true) {
+            int l = size(x.left);
+            if (i == l) return x.key;
+            if (i < l) x = x.left;
+            else {
+                i -= l + 1;
+                x = x.right;
             }
         }
-        
-        // Recursive call
-        node.childs[dir] = delete(node.childs[dir], k);
-        return node;
+    }
+    
+    /**
+     * Number of keys between lo and hi, both included
+     * @param lo the lowest key
+     * @param hi the highest key
+     * @return the number of keys in [lo, hi]
+     */
+    public int size(Key lo, Key hi) {
+        if (lo.compareTo(hi) > 0) return 0;
+        if (contains(hi)) return rank(hi) - rank(lo) + 1;
+        return rank(hi) - rank(lo);
+    }
+    
+    /**
+     * All the keys, in ascending order
+     * @return the keys of the symbol table
+     */
+    public Iterable<Key> keys() {
+        if (root == null) return new ArrayList<Key>();
+        return keys(min(), max());
+    }
+    
+    /**
+     * Keys between lo and hi, both included, in ascending order
+     * The subtrees out of the range are not visited : the cost is
+     * proportional to log N plus the number of keys returned
+     * @param lo the lowest key
+     * @param hi the highest key
+     * @return the keys in [lo, hi]
+     */
+    public Iterable<Key> keys(Key lo, Key hi) {
+        ArrayList<Key> keys = new ArrayList<Key>();
+        ArrayDeque<Node<Key,Value>> stack = new ArrayDeque<Node<Key,Value>>();
+        Node<Key,Value> x = root;
+        while (x != null || !stack.isEmpty()) {
+            if (x != null) {
+                // Go left while the keys may be in the range
+                if (lo.compareTo(x.key) <= 0) {
+                    stack.push(x);
+                    x = x.left;
+                } else x = x.right;
+            } else {
+                x = stack.pop();
+                if (hi.compareTo(x.key) < 0) break;
+                keys.add(x.key);
+                x = x.right;
+            }
+        }
+        return keys;
+    }
+    
+    /***************************
+     * Split, join and set operations
+     **************************/
+    
+    /**
+     * Join two symbol tables around a key greater than every key of left and
+     * lower than every key of right, in O(log N).
+     * The two symbol tables are consumed : they are empty afterwards
+     * @param left the symbol table of the lower keys
+     * @param k the key
+     * @param v the value coupled with k
+     * @param right the symbol table of the greater keys
+     * @return a symbol table holding the couples of left, (k, v) and the couples of right
+     * @throws java.lang.IllegalArgumentException if k is not between the keys of left and those of right
+     */
+    public static <Key extends Comparable<Key>, Value> RedBlackBST<Key,Value> join(RedBlackBST<Key,Value> left, Key k, Value v, RedBlackBST<Key,Value> right) {
+        if (left == right) throw new IllegalArgumentException("Cannot join a symbol table with itself");
+        if (!left.isEmpty() && left.max().compareTo(k) >= 0) throw new IllegalArgumentException("Keys of left must be lower than k");
+        if (!right.isEmpty() && right.min().compareTo(k) <= 0) throw new IllegalArgumentException("Keys of right must be greater than k");
+        RedBlackBST<Key,Value> st = new RedBlackBST<Key,Value>();
+        st.root = st.join(left.root, left.blackHeight(), new Node<Key,Value>(k, v), right.root, right.blackHeight());
+        left.root = null;
+        right.root = null;
+        return st;
+    }
+    
+    /**
+     * Split the symbol table at k, in O(log N) : the keys lower than k stay here,
+     * the others are moved to the symbol table returned.
+     * Splitting at lo then at hi carves the range [lo, hi) out of a symbol table
+     * @param k the key
+     * @return a symbol table holding the couples whose key is greater than or equal to k
+     */
+    public RedBlackBST<Key,Value> split(Key k) {
+        Node<Key,Value> x = split(root, blackHeight(), k);
+        RedBlackBST<Key,Value> st = new RedBlackBST<Key,Value>();
+        root = low;
+        st.root = (x == null) ? high : join(null, 0, x, high, highHeight);
+        low = high = null;
+        return st;
+    }
+    
+    /**
+     * Add the couples of other to this symbol table, the values of other replacing
+     * those of the keys already present.
+     * It takes O(M log(N/M + 1)) time, M and N being the sizes of the smaller
+     * and the larger symbol tables, instead of M log(N + M) for M puts.
+     * The other symbol table is consumed : it is empty afterwards
+     * @param other the symbol table to add
+     */
+    public void union(RedBlackBST<Key,Value> other) {
+        if (other == this) return;
+        root = union(root, blackHeight(), other.root, other.blackHeight());
+        low = high = null;
+        other.root = null;
+    }
+    
+    /**
+     * Keep in this symbol table only the keys present in other, with their values
+     * in this symbol table, in O(M log(N/M + 1)).
+     * The other symbol table is consumed : it is empty afterwards
+     * @param other the symbol table whose keys are kept
+     */
+    public void intersection(RedBlackBST<Key,Value> other) {
+        if (other == this) return;
+        root = intersection(root, blackHeight(), other.root, other.blackHeight());
+        low = high = null;
+        other.root = null;
+    }
+    
+    /**
+     * Remove from this symbol table the keys present in other, in O(M log(N/M + 1)).
+     * The other symbol table is consumed : it is empty afterwards
+     * @param other the symbol table whose keys are removed
+     */
+    public void difference(RedBlackBST<Key,Value> other) {
+        if (other == this) {
+            root = null;
+            return;
+        }
+        root = difference(root, blackHeight(), other.root, other.blackHeight());
+        low = high = null;
+        other.root = null;
     }
     
     /***************************
@@ -266,8 +674,8 @@ public class RedBlackBST<Key extends Comparable<Key>, Value> {
      * Minimum node of this subtree
      */
     private Node<Key,Value> min(Node<Key,Value> node) {
-        if (node.childs[0] == null) return node;
-        return min(node.childs[0]);
+        while (node.left != null) node = node.left;
+        return node;
     }
     
     /**
@@ -277,12 +685,180 @@ public class RedBlackBST<Key extends Comparable<Key>, Value> {
      */
     private Node<Key,Value> rotateDel(Node<Key,Value> node, int dir) {
         flipColors(node);
-        if (isRed(node.childs[dir^1].childs[dir])) node.childs[dir^1] = rotate(node.childs[dir^1], dir^1);
+        if (isRed(node.child(dir^1).child(dir))) node.setChild(dir^1, rotate(node.child(dir^1), dir^1));
         node = rotate(node, dir);
         flipColors(node);
         return node;
     }
     
+    /***************************
+     * Join specific helpers
+     **************************/
+    
+    /**
+     * Number of black nodes on a path from the root to a null link
+     */
+    private int blackHeight() {
+        int h = 0;
+        for (Node<Key,Value> x = root; x != null; x = x.left)
+            if (!isRed(x)) h++;
+        return h;
+    }
+    
+    /**
+     * Make x, of black height h, the root of a tree : a red root is blackened,
+     * which adds one black node to every path. Sets height and returns x
+     */
+    private Node<Key,Value> asRoot(Node<Key,Value> x, int h) {
+        if (isRed(x)) {
+            x.color = BLACK;
+            h++;
+        }
+        height = h;
+        return x;
+    }
+    
+    /**
+     * Join l and r around the node m, whose key is between theirs.
+     * The shorter tree is hung in the spine of the taller one, at the
+     * first black node of the same black height, so it costs O(1 + |hl - hr|)
+     */
+    private Node<Key,Value> join(Node<Key,Value> l, int hl, Node<Key,Value> m, Node<Key,Value> r, int hr) {
+        if (hl >= hr) return asRoot(joinSpine(l, hl, m, r, hr, 1), hl);
+        return asRoot(joinSpine(r, hr, m, l, hl, 0), hr);
+    }
+    
+    /**
+     * Join l and r, the keys of l being lower than those of r :
+     * the minimum of r is split out to join them around
+     */
+    private Node<Key,Value> join(Node<Key,Value> l, int hl, Node<Key,Value> r, int hr) {
+        if (r == null) return asRoot(l, hl);
+        Node<Key,Value> m = split(r, hr, min(r).key);
+        return join(l, hl, m, high, highHeight);
+    }
+    
+    /**
+     * Walk down the spine of t in direction dir to the first black node (or null)
+     * of black height hs, and replace it by m, red, having it and s as its childs.
+     * The red violation this may cause is fixed by a rotation on the way up,
+     * only the root returned may still be red with a red child
+     */
+    private Node<Key,Value> joinSpine(Node<Key,Value> t, int ht, Node<Key,Value> m, Node<Key,Value> s, int hs, int dir) {
+        if (ht == hs && !isRed(t)) {
+            m.setChild(dir^1, t);
+            m.setChild(dir, s);
+            m.color = RED;
+            m.size = size(t) + size(s) + 1;
+            return m;
+        }
+        Node<Key,Value> c = joinSpine(t.child(dir), isRed(t) ? ht : ht-1, m, s, hs, dir);
+        t.setChild(dir, c);
+        t.size = size(t.left) + size(t.right) + 1;
+        if (!isRed(t) && isRed(c) && isRed(c.child(dir))) {
+            // Two red nodes below a black one : the middle one goes up, red, above two black nodes
+            c.child(dir).color = BLACK;
+            t = rotate(t, dir^1);
+            t.color = RED;
+            t.child(dir^1).color = BLACK;
+        }
+        return t;
+    }
+    
+    /**
+     * Split x, a black root of black height h, at k : the keys lower than k go in low,
+     * the greater ones in high. The subtrees left aside on the way down are joined
+     * back on the way up, which costs O(log N) in total as their heights increase.
+     * Returns the node of k, detached, null if k is absent
+     */
+    private Node<Key,Value> split(Node<Key,Value> x, int h, Key k) {
+        if (x == null) {
+            low = high = null;
+            lowHeight = highHeight = 0;
+            return null;
+        }
+        Node<Key,Value> l = asRoot(x.left, h-1);
+        int hl = height;
+        Node<Key,Value> r = asRoot(x.right, h-1);
+        int hr = height;
+        int cmp = k.compareTo(x.key);
+        if (cmp == 0) {
+            low = l;
+            lowHeight = hl;
+            high = r;
+            highHeight = hr;
+            return x;
+        }
+        Node<Key,Value> found;
+        if (cmp < 0) {
+            found = split(l, hl, k);
+            high = join(high, highHeight, x, r, hr);
+            highHeight = height;
+        } else {
+            found = split(r, hr, k);
+            low = join(l, hl, x, low, lowHeight);
+            lowHeight = height;
+        }
+        return found;
+    }
+    
+    /**
+     * Union of a and b, the values of b winning : b is split around
+     * its root, a around the key of this root. Sets height
+     */
+    private Node<Key,Value> union(Node<Key,Value> a, int ha, Node<Key,Value> b, int hb) {
+        if (a == null) return asRoot(b, hb);
+        if (b == null) return asRoot(a, ha);
+        Node<Key,Value> bl = asRoot(b.left, hb-1);
+        int hbl = height;
+        Node<Key,Value> br = asRoot(b.right, hb-1);
+        int hbr = height;
+        split(a, ha, b.key);
+        Node<Key,Value> ar = high;
+        int har = highHeight;
+        Node<Key,Value> l = union(low, lowHeight, bl, hbl);
+        int hl = height;
+        Node<Key,Value> r = union(ar, har, br, hbr);
+        return join(l, hl, b, r, height);
+    }
+    
+    /**
+     * Intersection of a and b, with the values of a. Sets height
+     */
+    private Node<Key,Value> intersection(Node<Key,Value> a, int ha, Node<Key,Value> b, int hb) {
+        if (a == null || b == null) return asRoot(null, 0);
+        Node<Key,Value> bl = asRoot(b.left, hb-1);
+        int hbl = height;
+        Node<Key,Value> br = asRoot(b.right, hb-1);
+        int hbr = height;
+        Node<Key,Value> x = split(a, ha, b.key);
+        Node<Key,Value> ar = high;
+        int har = highHeight;
+        Node<Key,Value> l = intersection(low, lowHeight, bl, hbl);
+        int hl = height;
+        Node<Key,Value> r = intersection(ar, har, br, hbr);
+        if (x == null) return join(l, hl, r, height);
+        return join(l, hl, x, r, height);
+    }
+    
+    /**
+     * Keys of a absent from b. Sets height
+     */
+    private Node<Key,Value> difference(Node<Key,Value> a, int ha, Node<Key,Value> b, int hb) {
+        if (a == null || b == null) return asRoot(a, ha);
+        Node<Key,Value> bl = asRoot(b.left, hb-1);
+        int hbl = height;
+        Node<Key,Value> br = asRoot(b.right, hb-1);
+        int hbr = height;
+        split(a, ha, b.key);
+        Node<Key,Value> ar = high;
+        int har = highHeight;
+        Node<Key,Value> l = difference(low, lowHeight, bl, hbl);
+        int hl = height;
+        Node<Key,Value> r = difference(ar, har, br, hbr);
+        return join(l, hl, r, height);
+    }
+    
     /********************
      * Common helpers
      *******************/
@@ -291,11 +867,13 @@ public class RedBlackBST<Key extends Comparable<Key>, Value> {
      * Rotates a child around his father
      */
     private Node<Key,Value> rotate(Node<Key,Value> x, int dir) {
-        Node<Key,Value> y = x.childs[dir^1];
-        x.childs[dir^1] = y.childs[dir];
-        y.childs[dir] = x;
+        Node<Key,Value> y = x.child(dir^1);
+        x.setChild(dir^1, y.child(dir));
+        y.setChild(dir, x);
         y.color = x.color;
         x.color = RED;
+        y.size = x.size;
+        x.size = size(x.left) + size(x.right) + 1;
         return y;
     }
     
@@ -304,14 +882,44 @@ public class RedBlackBST<Key extends Comparable<Key>, Value> {
      */
     private void flipColors(Node<Key,Value> x) {
         x.color = !x.color;
-        x.childs[0].color = !x.childs[0].color;
-        x.childs[1].color = !x.childs[1].color;
+        x.left.color = !x.left.color;
+        x.right.color = !x.right.color;
     }
     
     /*******************************************
      * General helper functions
      ******************************************/
 
+    /**
+     * Make x the child of parent in the direction dir,
+     * or the root if parent is null
+     */
+    private void link(Node<Key,Value> parent, int dir, Node<Key,Value> x) {
+        if (parent == null) root = x;
+        else parent.setChild(dir, x);
+    }
+
+    /**
+     * Number of nodes in the subtree
+     */
+    private int size(Node<Key,Value> x) {
+        return x == null ? 0 : x.size;
+    }
+    
+    /**
+     * Add delta to the size of the subtrees on the path
+     * from the root to k, k included if present
+     */
+    private void recount(Key k, int delta) {
+        Node<Key,Value> x = root;
+        while (x != null) {
+            x.size += delta;
+            int cmp = k.compareTo(x.key);
+            if (cmp == 0) return;
+            x = x.child(cmpToDir(cmp));
+        }
+    }
+    
     /**
      * Check the color of the node
      */